@@ -0,0 +1,115 @@
+package env;
+
+import ai.djl.modality.rl.ActionSpace;
+import ai.djl.modality.rl.env.RlEnv;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The environment calls the agent makes for every move. step plays through random games, starting a new one when
+ * one is won. The other two are measured on a half full board.
+ *
+ * Everything the environment creates lives until its manager is closed, so the game and its manager are made again
+ * for every iteration to keep native memory from piling up across the run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HexGameBenchmark {
+	@Param({"8", "11", "19"})
+	int size;
+
+	private NDManager manager;
+	private HexGame game;				// for step
+	private HexGame halfFull;			// for getActionSpace and getObservation
+	private NDList[] actions;			// one action list for every location
+	private int[] order;
+	private int next;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		manager = NDManager.newBaseManager();
+		actions = new NDList[size * size];
+		for (int i = 0; i < actions.length; i++) {
+			actions[i] = new NDList(manager.create(i));
+		}
+		order = randomOrder(size * size, new Random(size));
+
+		game = new HexGame(manager.newSubManager(), size * size, size * size, size, size);
+		game.reset();
+		next = 0;
+
+		halfFull = new HexGame(manager.newSubManager(), size * size, size * size, size, size);
+		halfFull.reset();
+		for (int i = 0; i < order.length / 2; i++) {
+			halfFull.move(order[i]);
+			if (halfFull.getWinner() != 0) {
+				break;
+			}
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		game.close();
+		halfFull.close();
+		manager.close();
+	}
+
+	@Benchmark
+	public RlEnv.Step step() {
+		if (next == order.length) {
+			game.reset();
+			next = 0;
+		}
+		RlEnv.Step step = game.step(actions[order[next++]], true);
+		if (step.isDone()) {
+			game.reset();
+			next = 0;
+		}
+		return step;
+	}
+
+	@Benchmark
+	public ActionSpace getActionSpace() {
+		return halfFull.getActionSpace();
+	}
+
+	@Benchmark
+	public NDList getObservation() {
+		return halfFull.getObservation();
+	}
+
+	private static int[] randomOrder(int cells, Random rnd) {
+		int[] order = new int[cells];
+		for (int i = 0; i < cells; i++) {
+			order[i] = i;
+		}
+		for (int i = cells - 1; i > 0; i--) {
+			int j = rnd.nextInt(i + 1);
+			int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
+		}
+		return order;
+	}
+}
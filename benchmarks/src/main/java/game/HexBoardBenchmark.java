@@ -0,0 +1,81 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * setBoard on the union find HexBoard and on the backend PlayHex picks for the size: one operation plays a whole random game move by move until somebody wins, then undoes
+ * it so that the next operation starts from an empty board without allocating a new one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HexBoardBenchmark {
+    @Param({"8", "11", "19"})
+    int size;
+
+    @Param({"unionFind", "picked"})
+    String backend;
+
+    private AbstractHexBoard board;
+    private int[] order;        // the random game, every location once
+
+    @Setup(Level.Trial)
+    public void setup(){
+        HexGeometry geometry = HexGeometry.of(size, size);
+        if (backend.equals("unionFind")){
+            board = new HexBoard(geometry, 0);
+        } else {
+            board = PlayHex.newBoard(geometry, 0);
+        }
+        order = randomOrder(geometry.getCells(), new Random(size));
+    }
+
+    @Benchmark
+    public int playGame(){
+        int player = 1;
+        int result = 0;
+        for (int loc : order){
+            result = board.setBoard(loc, player);
+            if (result != 0) break;
+            player = -player;
+        }
+        while (board.getMoveCount() > 0){
+            board.undo();
+        }
+        return result;
+    }
+
+    /**
+     * @return the locations 1 to cells in random order
+     */
+    static int[] randomOrder(int cells, Random rnd){
+        int[] order = new int[cells];
+        for (int i = 0; i < cells; i++){
+            order[i] = i + 1;
+        }
+        for (int i = cells - 1; i > 0; i--){
+            int j = rnd.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+}
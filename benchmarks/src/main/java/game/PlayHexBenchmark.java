@@ -0,0 +1,52 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getBoardList on a half full board, which HexGame calls several times for every move.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayHexBenchmark {
+    @Param({"8", "11", "19"})
+    int size;
+
+    private PlayHex game;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        game = new PlayHex(size, size);
+        int[] order = HexBoardBenchmark.randomOrder(size * size, new Random(size));
+        int player = 1;
+        for (int i = 0; i < order.length / 2; i++){
+            if (game.setMove(order[i] - 1, player) != 0){
+                game.undoMove();        // keep the game going, only the pieces matter here
+                continue;
+            }
+            player = -player;
+        }
+    }
+
+    @Benchmark
+    public int[] getBoardList(){
+        return game.getBoardList();
+    }
+}
@@ -0,0 +1,100 @@
+package game;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * union and find the way a board uses them: every location of a random game is joined with its neighbors that were
+ * played before it, with a find of both borders after each move like refreshForest does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnionFindBenchmark {
+    @Param({"8", "11", "19"})
+    int size;
+
+    private HexGeometry geometry;
+    private int[] order;
+    private int[] playedAt;         // the move number each location is played at
+    private IntUnionFind intForest;
+    private RollbackUnionFind rollbackForest;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        geometry = HexGeometry.of(size, size);
+        order = HexBoardBenchmark.randomOrder(geometry.getCells(), new Random(size));
+        playedAt = new int[geometry.getCells() + 1];
+        for (int i = 0; i < order.length; i++){
+            playedAt[order[i]] = i;
+        }
+        intForest = new IntUnionFind(geometry.getCells() + 1);
+        rollbackForest = new RollbackUnionFind(geometry.getCells() + 1);
+    }
+
+    @Benchmark
+    public int unionFindForest(){
+        UnionFindForest<Integer> forest = new UnionFindForest<>();
+        int connected = 0;
+        for (int i = 0; i < order.length; i++){
+            int loc = order[i];
+            forest.create(loc);
+            for (int direction = 0; direction < 6; direction++){
+                int neighbor = geometry.neighbor(loc, direction);
+                if (neighbor != 0 && playedAt[neighbor] < i){
+                    forest.union(loc, neighbor);
+                }
+            }
+            if (forest.find(-2) != null && forest.find(-2).equals(forest.find(-3))){
+                connected++;
+            }
+        }
+        return connected;
+    }
+
+    @Benchmark
+    public int intUnionFind(){
+        return play(intForest);
+    }
+
+    @Benchmark
+    public int rollbackUnionFind(){
+        int connected = play(rollbackForest);
+        rollbackForest.rollback(0);
+        return connected;
+    }
+
+    private int play(IntUnionFind forest){
+        forest.reset();
+        int connected = 0;
+        for (int i = 0; i < order.length; i++){
+            int loc = order[i];
+            for (int direction = 0; direction < 6; direction++){
+                int neighbor = geometry.neighbor(loc, direction);
+                if (neighbor != 0 && playedAt[neighbor] < i){
+                    forest.union(loc, neighbor);
+                }
+            }
+            if (forest.connected(IntUnionFind.FIRST_BORDER, IntUnionFind.SECOND_BORDER)){
+                connected++;
+            }
+        }
+        return connected;
+    }
+}
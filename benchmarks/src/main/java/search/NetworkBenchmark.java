@@ -0,0 +1,84 @@
+package search;
+
+import ai.djl.Model;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.DataType;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.nn.Block;
+import ai.djl.training.ParameterStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One forward pass of the TrainHexGame.getBlock() network with freshly initialized weights, including making the
+ * input arrays and reading the output back, which is what QAgent pays for every evaluation.
+ *
+ * getBlock() is built for the 8x8 board TrainHexGame trains on, so unlike the engine benchmarks this one is not
+ * parameterized by size. The batch sizes show how much of a pass is call overhead.
+ *
+ * JMH doesn't allow benchmarks in the default package where TrainHexGame lives, so the block is made by reflection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetworkBenchmark {
+	private static final int CELLS = 8 * 8;
+
+	@Param({"1", "64", "256"})
+	int batch;
+
+	private Model model;
+	private Block block;
+	private int[] boards;
+	private int[] turns;
+	private int[] actions;
+
+	@Setup(Level.Trial)
+	public void setup() throws ReflectiveOperationException {
+		model = Model.newInstance("Hex-Game-benchmark");
+		block = (Block) Class.forName("TrainHexGame").getMethod("getBlock").invoke(null);
+		model.setBlock(block);
+		block.initialize(model.getNDManager(), DataType.FLOAT32,
+				new Shape(batch, CELLS), new Shape(batch), new Shape(batch));
+		boards = new int[batch * CELLS];
+		turns = new int[batch];
+		actions = new int[batch];
+		for (int i = 0; i < batch; i++) {
+			turns[i] = i % 2 == 0 ? 1 : -1;
+			actions[i] = i % CELLS;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		model.close();
+	}
+
+	@Benchmark
+	public float[] forward() {
+		try (NDManager manager = model.getNDManager().newSubManager()) {
+			NDList inputs = new NDList(
+					manager.create(boards, new Shape(batch, CELLS)),
+					manager.create(turns),
+					manager.create(actions));
+			return block.forward(new ParameterStore(manager, false), inputs, false).singletonOrThrow().toFloatArray();
+		}
+	}
+}
@@ -0,0 +1,67 @@
+import ai.djl.MalformedModelException;
+import ai.djl.Model;
+import arena.Bot;
+import arena.SearchBot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import search.NeuralEvaluationQueue;
+import server.BatchedNetworkBot;
+import server.HtpServer;
+import util.Arguments;
+
+import java.io.IOException;
+import java.util.function.BiFunction;
+
+/**
+ * Runs the engine for HexGUI and tournament controllers over the Hex Text Protocol, see HtpSession.
+ *
+ * With --port it serves every controller that connects to the port on localhost at the same time, otherwise one game
+ * on standard input and output. The newest checkpoint is loaded once and every session's genmove on an 8x8 board
+ * goes through one NeuralEvaluationQueue, so the moves asked for at the same time share forward passes. Other board
+ * sizes, or a missing model, are played by a tree search with --playouts playouts.
+ */
+public final class HexServer {
+	private static final Logger logger = LoggerFactory.getLogger(HexServer.class);
+	private static final int MAX_BATCH = 1024;
+	private static final long MAX_WAIT_MICROS = 200;
+
+	private HexServer() {}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Arguments arguments = new Arguments().parseArgs(args);
+		if (arguments == null) {
+			return;
+		}
+		boolean allActions = arguments.isAllActions();
+		int playouts = arguments.getPlayouts();
+		Model model = TrainHexGame.newModel(allActions);
+		NeuralEvaluationQueue queue = null;
+		try {
+			TrainHexGame.loadModel(model);
+			queue = new NeuralEvaluationQueue(model, TrainHexGame.rows * TrainHexGame.columns, MAX_BATCH,
+					MAX_WAIT_MICROS);
+		} catch (MalformedModelException | IOException e) {
+			logger.warn("No model to load, every board is played by the tree search: {}", e.getMessage());
+		}
+		NeuralEvaluationQueue network = queue;
+		BiFunction<Integer, Integer, Bot> bots = (rows, columns) ->
+				network != null && rows == TrainHexGame.rows && columns == TrainHexGame.columns
+						? new BatchedNetworkBot(network, allActions)
+						: new SearchBot(playouts);
+
+		try (HtpServer server = new HtpServer(bots)) {
+			if (arguments.getPort() > 0) {
+				server.listen(arguments.getPort());
+				Thread.currentThread().join();			// the sessions run until the process is stopped
+			} else {
+				server.serve(System.in, System.out);
+			}
+		} finally {
+			if (queue != null) {
+				logger.info("{} positions per forward pass on average", queue.getAverageBatchSize());
+				queue.close();
+			}
+			model.close();
+		}
+	}
+}
@@ -1,6 +1,7 @@
+import agent.CachedQAgent;
+import agent.QValueCache;
 import ai.djl.Model;
 import ai.djl.modality.rl.agent.EpsilonGreedy;
-import ai.djl.modality.rl.agent.QAgent;
 import ai.djl.modality.rl.agent.RlAgent;
 import ai.djl.ndarray.NDList;
 import ai.djl.ndarray.NDManager;
@@ -18,9 +19,14 @@ import java.util.Scanner;
 
 /*
 Test the agent with the might of human meat-brain!
+Given any arguments it plays a headless match instead, see PlayMatch.
  */
 public class PlayAgent {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0){
+            PlayMatch.main(args);
+            return;
+        }
         play();
     }
     public static void play() {
@@ -38,7 +44,9 @@ public class PlayAgent {
         Trainer trainer = model.newTrainer(config);
         trainer.initialize(new Shape(1, 8*8), new Shape(1), new Shape(1));
 
-        RlAgent agent = new QAgent(trainer, .5f);
+        // positions the agent has seen before are looked up instead of run through the network again
+        QValueCache cache = new QValueCache(10000);
+        RlAgent agent = new CachedQAgent(trainer, .5f, cache);
         Tracker exploreRate =
                 LinearTracker.builder()						// this sets a declining ramp rate for the exploring
                         .setBaseValue(0.5f)
@@ -55,7 +63,7 @@ public class PlayAgent {
             //float result = game.runEnvironment(agent, false);
             NDList action = agent.chooseAction(game, false);
             game.step(action, false);
-            System.out.println("agent moved");
+            System.out.println("agent moved, cache hit rate " + cache.getHitRate());
             System.out.println(game.toString());
             isOver(game);
 
@@ -0,0 +1,87 @@
+import arena.Arena;
+import arena.Contestant;
+import arena.EloTable;
+import arena.HeuristicBot;
+import arena.MatchStats;
+import arena.NetworkBot;
+import arena.RandomBot;
+import arena.SearchBot;
+import ai.djl.nn.Block;
+import util.Arguments;
+import util.CheckpointManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Plays a match between two players without anyone at the keyboard, and prints how it went: the score, the wins by
+ * color, the length of the games, and the moves per second with the latency percentiles of both players.
+ *
+ * A player is latest for the newest checkpoint, a checkpoint number, random, heuristic for HeuristicBot, mcts
+ * for a tree search with --arenaPlayouts playouts, or mcts-vc for the same search narrowed by virtual connections.
+ * The networks play greedily, there is no exploring and no trainer. The match is 2*--arenaPairs games over
+ * --arenaThreads threads, every core by default, with colors and openings swapped like in the arena, so the same
+ * command gives comparable numbers from run to run.
+ *
+ * For example: PlayMatch --player latest --opponent heuristic --arenaPairs 500
+ */
+public final class PlayMatch {
+	private PlayMatch() {}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Arguments arguments = new Arguments().parseArgs(args);
+		if (arguments == null) {
+			return;
+		}
+		int threads = arguments.getArenaThreads() > 0
+				? arguments.getArenaThreads()
+				: Runtime.getRuntime().availableProcessors();
+		Contestant player = contestant(arguments.getPlayer(), arguments);
+		Contestant opponent = contestant(arguments.getOpponent(), arguments);
+		if (player.getName().equals(opponent.getName())) {
+			// the same player on both sides, the table needs two names
+			opponent = new Contestant(opponent.getName() + "'", opponent::newBot);
+		}
+		try (Arena arena = new Arena(TrainHexGame.rows, TrainHexGame.columns, new EloTable(RandomBot.contestant().getName()),
+				threads, System.nanoTime())) {
+			MatchStats stats = arena.playMatch(player, opponent, arguments.getArenaPairs());
+			System.out.print(stats);
+		}
+	}
+
+	static Contestant contestant(String name, Arguments arguments) throws IOException {
+		switch (name) {
+			case "random":
+				return RandomBot.contestant();
+			case "heuristic":
+				return HeuristicBot.contestant();
+			case "mcts":
+				return SearchBot.contestant(arguments.getArenaPlayouts());
+			case "mcts-vc":
+				return SearchBot.contestant(arguments.getArenaPlayouts(), true);
+			default:
+				boolean allActions = arguments.isAllActions();
+				String model = TrainHexGame.modelName(allActions);
+				Path directory = Paths.get(TrainHexGame.MODEL_PATH);
+				Supplier<Block> blocks = allActions ? TrainHexGame::getAllActionsBlock : TrainHexGame::getBlock;
+				int checkpoint;
+				if (name.equals("latest")) {
+					List<Integer> checkpoints = CheckpointManager.list(directory, model);
+					if (checkpoints.isEmpty()) {
+						throw new IOException("No checkpoint of " + model + " in " + directory);
+					}
+					checkpoint = checkpoints.get(checkpoints.size() - 1);
+				} else {
+					try {
+						checkpoint = Integer.parseInt(name);
+					} catch (NumberFormatException e) {
+						throw new IllegalArgumentException("Not a player: " + name);
+					}
+				}
+				return NetworkBot.contestant(blocks, directory, model, checkpoint, allActions);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+import ai.djl.MalformedModelException;
+import ai.djl.Model;
+import ai.djl.training.EasyTrain;
+import ai.djl.training.Trainer;
+import ai.djl.translate.TranslateException;
+import env.ArchiveDataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.Arguments;
+import util.CheckpointManager;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Trains the one action network on the games of an archive, without playing any. Every archived move is a sample
+ * labelled with the winner of its game, see ArchiveDataset. The batches are made by a pool of threads, one per
+ * core, a few batches ahead of the trainer.
+ *
+ * Run it with --archive pointing at the games and the usual --epoch and --batch, the model is loaded from and saved
+ * to the same place as TrainHexGame, so self play can carry on from the pretrained network.
+ */
+public final class PretrainHexGame {
+	private static final Logger logger = LoggerFactory.getLogger(PretrainHexGame.class);
+	private static final int PREFETCH_BATCHES = 4;
+
+	private PretrainHexGame() {}
+
+	public static void main(String[] args) throws IOException, TranslateException {
+		Arguments arguments = new Arguments().parseArgs(args);
+		if (arguments == null) {
+			return;
+		}
+		if (arguments.getArchivePath() == null) {
+			logger.error("Pretraining needs the games of an archive, pass --archive");
+			return;
+		}
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		ArchiveDataset dataset = ArchiveDataset.builder()
+				.setArchive(Paths.get(arguments.getArchivePath()))
+				.setSampling(arguments.getBatchSize(), true)
+				.optExecutor(executor, threads * PREFETCH_BATCHES)
+				.build();
+		Model model = TrainHexGame.newModel(false);
+		try {
+			dataset.prepare();
+			logger.info("{} positions in the archive", dataset.size());
+			try {
+				TrainHexGame.loadModel(model);
+			} catch (MalformedModelException | IOException e) {
+				logger.info("No model to load, starting from scratch: {}", e.getMessage());
+			}
+			try (Trainer trainer = model.newTrainer(TrainHexGame.setupTrainingConfig())) {
+				TrainHexGame.initializeTrainer(trainer, arguments.getBatchSize(), false);
+				EasyTrain.fit(trainer, arguments.getEpoch(), dataset, null);
+			}
+			try (CheckpointManager checkpoints = TrainHexGame.newCheckpoints(arguments, false)) {
+				checkpoints.save(model, Float.NaN);
+			}
+		} finally {
+			model.close();
+			dataset.close();
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,143 @@
+import arena.Arena;
+import arena.Contestant;
+import arena.EloTable;
+import arena.NetworkBot;
+import arena.RandomBot;
+import arena.SearchBot;
+import ai.djl.nn.Block;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.Arguments;
+import util.CheckpointManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Rates every checkpoint training saves, instead of the one validation game of an epoch. It watches the model path,
+ * and every new checkpoint plays --arenaPairs pairs of games against the random bot, a tree search bot and the two
+ * rated checkpoints before it. The results go to name-elo.tsv next to the checkpoints, so a restarted arena picks
+ * up where it stopped, and the ratings are logged after every checkpoint.
+ *
+ * Run it as a process of its own next to TrainHexGame, with the same --allActions, or pass --arena to TrainHexGame
+ * to run it on a background thread. Either way its games are played on threads of the lowest priority.
+ */
+public final class RunArena implements Runnable {
+	private static final Logger logger = LoggerFactory.getLogger(RunArena.class);
+	private static final long POLL_MILLIS = 30_000;
+	private static final int PREVIOUS_OPPONENTS = 2;
+	private static final long OPENING_SEED = 20210315;
+
+	private final Path directory = Paths.get(TrainHexGame.MODEL_PATH);
+	private final String name;
+	private final boolean allActions;
+	private final Supplier<Block> blocks;
+	private final Path tablePath;
+	private final Arena arena;
+	private final int pairs;
+	private final Contestant random = RandomBot.contestant();
+	private final Contestant search;
+
+	RunArena(Arguments arguments, int threads) throws IOException {
+		allActions = arguments.isAllActions();
+		name = TrainHexGame.modelName(allActions);
+		blocks = allActions ? TrainHexGame::getAllActionsBlock : TrainHexGame::getBlock;
+		tablePath = directory.resolve(name + "-elo.tsv");
+		pairs = arguments.getArenaPairs();
+		search = SearchBot.contestant(arguments.getArenaPlayouts());
+		EloTable table = EloTable.load(tablePath, random.getName());
+		arena = new Arena(TrainHexGame.rows, TrainHexGame.columns, table, threads, OPENING_SEED);
+	}
+
+	public static void main(String[] args) throws IOException {
+		Arguments arguments = new Arguments().parseArgs(args);
+		if (arguments == null) {
+			return;
+		}
+		int threads = arguments.getArenaThreads() > 0
+				? arguments.getArenaThreads()
+				: Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		new RunArena(arguments, threads).run();
+	}
+
+	/**
+	 * Rates the checkpoints on a daemon thread while the caller trains
+	 */
+	static Thread start(Arguments arguments) throws IOException {
+		Thread thread = new Thread(new RunArena(arguments, arguments.getArenaThreads()), "arena-watcher");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+		return thread;
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				rateNewCheckpoints();
+				Thread.sleep(POLL_MILLIS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			logger.error("The arena stopped", e);
+		} finally {
+			arena.close();
+		}
+	}
+
+	private void rateNewCheckpoints() throws IOException, InterruptedException {
+		EloTable table = arena.getTable();
+		if (!played(table, search, random)) {
+			arena.playMatch(search, random, pairs);
+			table.save(tablePath);
+		}
+		List<Integer> rated = new ArrayList<>();
+		for (int checkpoint : CheckpointManager.list(directory, name)) {
+			Contestant contestant = NetworkBot.contestant(blocks, directory, name, checkpoint, allActions);
+			List<Contestant> opponents = new ArrayList<>();
+			opponents.add(random);
+			opponents.add(search);
+			for (int i = Math.max(0, rated.size() - PREVIOUS_OPPONENTS); i < rated.size(); i++) {
+				opponents.add(NetworkBot.contestant(blocks, directory, name, rated.get(i), allActions));
+			}
+			// a checkpoint is only rated once it played every opponent, one whose rating was cut short by a failed
+			// match plays the ones it is missing on the next poll
+			List<Contestant> missing = new ArrayList<>();
+			for (Contestant opponent : opponents) {
+				if (!played(table, contestant, opponent)) {
+					missing.add(opponent);
+				}
+			}
+			if (missing.isEmpty()) {
+				rated.add(checkpoint);
+				continue;
+			}
+			try {
+				for (Contestant opponent : missing) {
+					arena.playMatch(contestant, opponent, pairs);
+				}
+			} catch (IllegalStateException e) {
+				// training deleted the checkpoint or an opponent before all the games were played
+				logger.warn("Could not finish rating {}: {}", contestant, e.getMessage());
+				continue;
+			} finally {
+				table.save(tablePath);
+			}
+			rated.add(checkpoint);
+			logger.info("Ratings after {}:\n{}", contestant, table);
+		}
+	}
+
+	/**
+	 * @return true if the table has a match of a and b, a match only goes into the table once all its games are played
+	 */
+	private static boolean played(EloTable table, Contestant a, Contestant b) {
+		return table.getWins(a.getName(), b.getName()) + table.getWins(b.getName(), a.getName()) > 0;
+	}
+}
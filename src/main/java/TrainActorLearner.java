@@ -0,0 +1,369 @@
+import agent.CachedQAgent;
+import agent.MaskedQAgent;
+import agent.PrioritizedQAgent;
+import agent.QValueCache;
+import ai.djl.MalformedModelException;
+import ai.djl.Model;
+import ai.djl.modality.rl.agent.EpsilonGreedy;
+import ai.djl.modality.rl.agent.QAgent;
+import ai.djl.modality.rl.agent.RlAgent;
+import ai.djl.modality.rl.env.RlEnv.Step;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.training.DefaultTrainingConfig;
+import ai.djl.training.Trainer;
+import ai.djl.training.tracker.Tracker;
+import env.HexGame;
+import env.PackedReplayBuffer;
+import env.PrioritizedReplayBuffer;
+import game.GameArchiveWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import util.Arguments;
+import util.CheckpointManager;
+import util.TrainingMetrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Trains with several actor threads playing self play games while one learner thread trains on what they played.
+ *
+ * TrainHexGame plays a game, trains one batch and steps the trainer, all on one thread, so most cores sit idle.
+ * Here every actor has its own copy of the network with its own manager, and only reads from it. Its moves go into
+ * a bounded queue as plain int arrays. The learner moves them into its replay buffer, trains batch after batch, and
+ * every publishEveryX batches serializes its parameters for the actors to load before their next game.
+ *
+ * The learner trains gamesPerEpoch batches per epoch like TrainHexGame, and checkpoints the model every saveEveryX
+ * epochs.
+ *
+ * With a cache size above 0 every actor keeps the Q-values of the positions it has seen in a QValueCache, which it
+ * empties whenever it loads new parameters.
+ */
+public final class TrainActorLearner {
+	private static final Logger logger = LoggerFactory.getLogger(TrainActorLearner.class);
+	private static final float rewardDiscount = 0.3f;
+
+	private final Arguments arguments;
+	private final boolean allActions;
+	private final int cells = TrainHexGame.rows * TrainHexGame.columns;
+	private final BlockingQueue<Move> queue;
+	private final AtomicReference<Snapshot> published = new AtomicReference<>();
+	private volatile boolean running = true;
+
+	private final AtomicLong gamesPlayed = new AtomicLong();
+	private final AtomicLong movesPlayed = new AtomicLong();
+	private final AtomicLong blueWins = new AtomicLong();
+	private final List<QValueCache> caches = new CopyOnWriteArrayList<>();
+	private GameArchiveWriter archive;		// shared by the actors, if games are archived
+
+	private TrainActorLearner(Arguments arguments) {
+		this.arguments = arguments;
+		this.allActions = arguments.isAllActions();
+		this.queue = new ArrayBlockingQueue<>(arguments.getQueueDepth());
+	}
+
+	public static void run(Arguments arguments) throws IOException {
+		new TrainActorLearner(arguments).learn();
+	}
+
+	/**
+	 * The learner, it runs on the calling thread and starts and stops the actors
+	 */
+	private void learn() throws IOException {
+		int batchSize = arguments.getBatchSize();
+		PackedReplayBuffer replayBuffer = arguments.getReplayCapacity() > 0
+				? new PrioritizedReplayBuffer(cells, batchSize, arguments.getReplayCapacity(),
+						arguments.getPriorityAlpha(), arguments.getPriorityBeta())
+				: new PackedReplayBuffer(cells, batchSize, cells * arguments.getActors());
+		PrioritizedReplayBuffer prioritized = replayBuffer instanceof PrioritizedReplayBuffer
+				? (PrioritizedReplayBuffer) replayBuffer : null;
+
+		TrainingMetrics metrics = TrainingMetrics.get();
+		Model model = TrainHexGame.newModel(allActions);
+		metrics.watch(model.getNDManager());
+		try {
+			TrainHexGame.loadModel(model);
+		} catch (MalformedModelException | IOException e) {
+			logger.info("No model to load, starting from scratch: {}", e.getMessage());
+		}
+		Trainer trainer = model.newTrainer(TrainHexGame.setupTrainingConfig());
+		TrainHexGame.initializeTrainer(trainer, batchSize, allActions);
+		archive = TrainHexGame.newArchive(arguments);
+		CheckpointManager checkpoints = TrainHexGame.newCheckpoints(arguments, allActions);
+
+		RlAgent agent;
+		if (allActions) {
+			agent = new MaskedQAgent(trainer, rewardDiscount, Tracker.fixed(0), prioritized);
+		} else if (prioritized != null) {
+			agent = new PrioritizedQAgent(trainer, rewardDiscount, prioritized);
+		} else {
+			agent = new QAgent(trainer, rewardDiscount);
+		}
+
+		publish(model, 1);
+		List<Thread> actors = new ArrayList<>();
+		for (int i = 0; i < arguments.getActors(); i++) {
+			Thread actor = new Thread(this::act, "actor-" + (i + 1));
+			actor.setDaemon(true);
+			actor.start();
+			actors.add(actor);
+		}
+
+		int epochs = arguments.getEpoch();
+		int batchesPerEpoch = arguments.getGamesPerEpoch();
+		long trained = 0;
+		List<Move> drained = new ArrayList<>(arguments.getQueueDepth());
+		try {
+			for (int epoch = 0; epoch < epochs; epoch++) {
+				long epochStart = System.currentTimeMillis();
+				long gamesBefore = gamesPlayed.get();
+				long movesBefore = movesPlayed.get();
+				if (prioritized != null) {
+					float beta = arguments.getPriorityBeta();
+					prioritized.setBeta(beta + (1 - beta) * epoch / epochs);
+				}
+
+				for (int j = 0; j < batchesPerEpoch; j++) {
+					// waits for the actors only while there isn't a batch worth of moves yet
+					if (replayBuffer.size() < batchSize) {
+						Move first;
+						while ((first = queue.poll(1, TimeUnit.SECONDS)) == null) {
+							if (actors.stream().noneMatch(Thread::isAlive)) {
+								throw new IllegalStateException("Every actor failed, see the errors above");
+							}
+						}
+						replayBuffer.addStep(first.preBoard, first.preTurn, first.action, first.reward, first.done);
+					}
+					queue.drainTo(drained);
+					for (Move move : drained) {
+						replayBuffer.addStep(move.preBoard, move.preTurn, move.action, move.reward, move.done);
+					}
+					drained.clear();
+
+					long start = System.nanoTime();
+					Step[] batch = replayBuffer.getBatch();
+					metrics.record(TrainingMetrics.Phase.GET_BATCH, start);
+					start = System.nanoTime();
+					agent.trainBatch(batch);
+					metrics.record(TrainingMetrics.Phase.TRAIN_BATCH, start);
+					start = System.nanoTime();
+					trainer.step();
+					metrics.record(TrainingMetrics.Phase.TRAINER_STEP, start);
+					if (++trained % arguments.getPublishEveryX() == 0) {
+						publish(model, trained / arguments.getPublishEveryX() + 1);
+					}
+				}
+
+				float seconds = (System.currentTimeMillis() - epochStart) / 1000f;
+				long games = gamesPlayed.get() - gamesBefore;
+				logger.info("Epoch {}: {} batches/s, {} games/s, {} moves/s, queue {}, buffer {}, blue wins {}, " +
+								"cache hits {}",
+						epoch + 1, batchesPerEpoch / seconds, games / seconds,
+						(movesPlayed.get() - movesBefore) / seconds, queue.size(), replayBuffer.size(),
+						gamesPlayed.get() == 0 ? 0 : blueWins.get() / (float) gamesPlayed.get(),
+						cacheHitRate());
+				checkpoints.epochEnd(model, Float.NaN);
+			}
+			checkpoints.save(model, Float.NaN);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			running = false;
+			for (Thread actor : actors) {
+				actor.interrupt();
+			}
+			for (Thread actor : actors) {
+				try {
+					actor.join(10000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			checkpoints.close();
+			replayBuffer.close();
+			trainer.close();
+			model.close();
+			if (archive != null) {
+				archive.close();
+			}
+		}
+	}
+
+	/**
+	 * Serializes the parameters of the learner for the actors
+	 */
+	private void publish(Model model, long version) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream os = new DataOutputStream(bytes)) {
+			model.getBlock().saveParameters(os);
+		}
+		published.set(new Snapshot(version, bytes.toByteArray()));
+	}
+
+	/**
+	 * @return the share of the lookups of all actors that hit their cache
+	 */
+	private float cacheHitRate() {
+		long hits = 0, lookups = 0;
+		for (QValueCache cache : caches) {
+			hits += cache.getHits();
+			lookups += cache.getHits() + cache.getMisses();
+		}
+		return lookups == 0 ? 0 : hits / (float) lookups;
+	}
+
+	/**
+	 * An actor, it plays self play games with the latest published parameters until the learner is done
+	 */
+	private void act() {
+		DefaultTrainingConfig config = TrainHexGame.setupTrainingConfig();
+		// every snapshot gets a new agent, which would start the schedule over, so the actor counts the moves itself
+		Tracker exploreRate = new ActorExploreRate(TrainHexGame.newExploreRate(arguments.getGamesPerEpoch()));
+		Model model = null;
+		HexGame game = new HexGame(NDManager.newBaseManager(), 1, 1, TrainHexGame.rows, TrainHexGame.columns);
+		game.setArchive(archive);
+		TrainHexGame.setSolver(game, arguments.getSolveBelow());
+		game.setVirtualConnections(arguments.isConnections());
+		QValueCache cache = arguments.getCacheSize() > 0 ? new QValueCache(arguments.getCacheSize()) : null;
+		if (cache != null) {
+			caches.add(cache);
+		}
+		Trainer trainer = null;
+		RlAgent agent = null;
+		long version = 0;
+		try {
+			while (running) {
+				Snapshot snapshot = published.get();
+				if (snapshot.version != version) {
+					// loading parameters makes new arrays in the manager without closing the old ones, so every
+					// snapshot goes into a new model and the last one is closed with its trainer
+					if (trainer != null) {
+						trainer.close();
+						trainer = null;
+					}
+					if (model != null) {
+						model.close();
+					}
+					model = TrainHexGame.newModel(allActions);
+					TrainingMetrics.get().watch(model.getNDManager());
+					model.getBlock().loadParameters(model.getNDManager(),
+							new DataInputStream(new ByteArrayInputStream(snapshot.parameters)));
+					trainer = model.newTrainer(config);
+					TrainHexGame.initializeTrainer(trainer, 1, allActions);
+					if (cache != null) {
+						cache.invalidate();
+					}
+					if (allActions) {
+						agent = new MaskedQAgent(trainer, rewardDiscount, exploreRate, null, cache);
+					} else {
+						agent = new EpsilonGreedy(cache != null
+								? new CachedQAgent(trainer, rewardDiscount, cache)
+								: new QAgent(trainer, rewardDiscount), exploreRate);
+					}
+					version = snapshot.version;
+				}
+				playGame(game, agent);
+			}
+		} catch (InterruptedException e) {
+			// the learner is done
+		} catch (IOException | MalformedModelException | RuntimeException e) {
+			logger.error("Actor failed", e);
+		} finally {
+			if (trainer != null) {
+				trainer.close();
+			}
+			if (model != null) {
+				model.close();
+			}
+			game.close();
+		}
+	}
+
+	private void playGame(HexGame game, RlAgent agent) throws InterruptedException {
+		game.reset();
+		while (running) {
+			long start = System.nanoTime();
+			NDList action = agent.chooseAction(game, true);
+			TrainingMetrics.get().record(TrainingMetrics.Phase.CHOOSE_ACTION, start);
+			start = System.nanoTime();
+			HexGame.HexGameStep step = (HexGame.HexGameStep) game.step(action, false);
+			TrainingMetrics.get().record(TrainingMetrics.Phase.ENV_STEP, start);
+			Move move = new Move(step.getPreBoard(), step.getPreTurn(), step.getMove(), step.getWinner(),
+					step.isDone());
+			while (!queue.offer(move, 100, TimeUnit.MILLISECONDS)) {
+				if (!running) {
+					return;
+				}
+			}
+			movesPlayed.incrementAndGet();
+			if (step.isDone()) {
+				gamesPlayed.incrementAndGet();
+				if (step.getWinner() == 1) {
+					blueWins.incrementAndGet();
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * One move of an actor, on its way to the learner
+	 */
+	private static final class Move {
+		private final int[] preBoard;
+		private final int preTurn;
+		private final int action;
+		private final float reward;
+		private final boolean done;
+
+		private Move(int[] preBoard, int preTurn, int action, float reward, boolean done) {
+			this.preBoard = preBoard;
+			this.preTurn = preTurn;
+			this.action = action;
+			this.reward = reward;
+			this.done = done;
+		}
+	}
+
+	/**
+	 * The explore rate of one actor by the moves it chose with any of its agents, instead of the count of the agent
+	 */
+	private static final class ActorExploreRate implements Tracker {
+		private final Tracker schedule;
+		private int moves;
+
+		private ActorExploreRate(Tracker schedule) {
+			this.schedule = schedule;
+		}
+
+		@Override
+		public float getNewValue(int numUpdate) {
+			return schedule.getNewValue(moves++);
+		}
+	}
+
+	/**
+	 * Published parameters of the learner
+	 */
+	private static final class Snapshot {
+		private final long version;
+		private final byte[] parameters;
+
+		private Snapshot(long version, byte[] parameters) {
+			this.version = version;
+			this.parameters = parameters;
+		}
+	}
+}
@@ -33,18 +33,27 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 import java.lang.System;
 
+import agent.MaskedQAgent;
+import agent.PrioritizedQAgent;
 import ai.djl.training.util.ProgressBar;
 import env.HexGame;
+import env.PrioritizedReplayBuffer;
+import game.GameArchiveWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import solver.HexSolver;
 import util.Arguments;
+import util.CheckpointManager;
+import util.TrainingMetrics;
 
 public final class TrainHexGame {
 	private static final Logger logger =LoggerFactory.getLogger(TrainHexGame.class);
 	private static final boolean DEBUG_MODE = false;
-	private static final String MODEL_PATH = "src/main/resources/model/";
-	private static final int rows =8;
-	private static final int columns =8;
+	private static final int SOLVER_TABLE_BITS = 18;
+	private static final long SOLVE_MILLIS = 20;
+	static final String MODEL_PATH = "src/main/resources/model/";
+	static final int rows =8;
+	static final int columns =8;
 
 	public TrainHexGame() {}
 
@@ -57,11 +66,35 @@ public final class TrainHexGame {
 		if (arguments == null) {
 			return;
 		}
+		startMetrics(arguments);
+		if (arguments.getArenaThreads() > 0){
+			RunArena.start(arguments);
+		}
+		try {
+			if (arguments.getActors() > 0){
+				TrainActorLearner.run(arguments);
+			} else {
+				train(arguments);
+			}
+		} finally {
+			TrainingMetrics.get().stop();
+		}
+	}
+
+	/**
+	 * Shows the training metrics over JMX, and writes them to a CSV file if --metrics names one
+	 */
+	static void startMetrics(Arguments arguments) throws IOException {
+		TrainingMetrics metrics = TrainingMetrics.get();
+		String csv = arguments.getMetricsPath();
+		metrics.start(csv == null ? null : Paths.get(csv), arguments.getMetricsEveryX());
+	}
+
+	private static void train(Arguments arguments) throws IOException {
 		int closeMgnEveryXEpochs = arguments.getCloseEveryX();            // this is a flimsy hack
 
 		int epoch = arguments.getEpoch();
 		int validationGamesPerEpoch = 1;
-		int saveEveryXEpochs = arguments.getSaveEveryX();
 		int batchSize = arguments.getBatchSize();
 		float rewardDiscount = 0.3f;
 		int replayBufferSize = rows * columns;    // It is impossible to tie the game of Hex, so the maximum buffer size is the size of the board
@@ -70,30 +103,157 @@ public final class TrainHexGame {
 
 		boolean shouldLoad = true;
 
+		// kept across the manager refreshes, so old games keep being trained on
+		PrioritizedReplayBuffer replayBuffer = arguments.getReplayCapacity() > 0
+				? new PrioritizedReplayBuffer(rows * columns, batchSize, arguments.getReplayCapacity(),
+						arguments.getPriorityAlpha(), arguments.getPriorityBeta())
+				: null;
+		GameArchiveWriter archive = newArchive(arguments);
+		CheckpointManager checkpoints = newCheckpoints(arguments, arguments.isAllActions());
+
 		long startTime = System.currentTimeMillis();
-		for (int i =0; i < epoch; i++){
-			runXEpochs(closeMgnEveryXEpochs, validationGamesPerEpoch, saveEveryXEpochs, batchSize,
-					rewardDiscount, replayBufferSize, gamesPerEpoch, modelPath, shouldLoad);
-			logger.info("Average total training time of one move {}", (System.currentTimeMillis() - startTime) /
-					((float)(i+1)*gamesPerEpoch*batchSize));
+		try {
+			if (closeMgnEveryXEpochs <= 0){
+				trainLongLived(arguments, rewardDiscount, replayBufferSize, replayBuffer, archive, checkpoints);
+				return;
+			}
+			for (int i =0; i < epoch; i++){
+				if (replayBuffer != null){
+					float beta = arguments.getPriorityBeta();
+					replayBuffer.setBeta(beta + (1 - beta) * i / epoch);
+				}
+				runXEpochs(closeMgnEveryXEpochs, validationGamesPerEpoch, checkpoints, batchSize,
+						rewardDiscount, replayBufferSize, gamesPerEpoch, modelPath, shouldLoad, replayBuffer,
+						arguments.isAllActions(), archive, arguments.getSolveBelow(), arguments.isConnections());
+				logger.info("Average total training time of one move {}", (System.currentTimeMillis() - startTime) /
+						((float)(i+1)*gamesPerEpoch*batchSize));
+			}
+		} finally {
+			checkpoints.close();
+			if (archive != null){
+				archive.close();
+			}
 		}
 
 	}
 
-	private static TrainingResult runXEpochs(int epoch, int validationGamesPerEpoch, int saveEveryXEpochs,
+	/**
+	 * Trains with one model, trainer, game and agent for the whole run, for --close 0. Nothing is rebuilt or
+	 * reloaded between epochs, so the explore rate keeps falling and Adam keeps its moments. Native memory is kept
+	 * flat by arenas instead: the arrays of a game live in the game's own manager, which the next reset closes, and
+	 * every batch is sampled into a sub manager of its own that is closed as soon as the trainer has stepped.
+	 */
+	private static void trainLongLived(Arguments arguments, float rewardDiscount, int replayBufferSize,
+									   PrioritizedReplayBuffer replayBuffer, GameArchiveWriter archive,
+									   CheckpointManager checkpoints) throws IOException {
+		int epochs = arguments.getEpoch();
+		int gamesPerEpoch = arguments.getGamesPerEpoch();
+		int batchSize = arguments.getBatchSize();
+		boolean allActions = arguments.isAllActions();
+		TrainingMetrics metrics = TrainingMetrics.get();
+
+		HexGame game = replayBuffer == null
+				? new HexGame(NDManager.newBaseManager(), batchSize, replayBufferSize, rows, columns)
+				: new HexGame(NDManager.newBaseManager(), replayBuffer, rows, columns);
+		game.setArchive(archive);
+		setSolver(game, arguments.getSolveBelow());
+		game.setVirtualConnections(arguments.isConnections());
+		NDManager arenas = NDManager.newBaseManager();
+		metrics.watch(arenas);
+		Model model = newModel(allActions);
+		metrics.watch(model.getNDManager());
+		try {
+			checkpoints.load(model);
+		} catch (MalformedModelException | IOException e) {
+			logger.info("No model to load, starting from scratch: {}", e.getMessage());
+		}
+		Trainer trainer = model.newTrainer(setupTrainingConfig());
+		initializeTrainer(trainer, batchSize, allActions);
+		RlAgent agent = newAgent(trainer, rewardDiscount, newExploreRate(gamesPerEpoch), replayBuffer, allActions);
+
+		long startTime = System.currentTimeMillis();
+		try {
+			for (int i = 0; i < epochs; i++) {
+				if (replayBuffer != null){
+					float beta = arguments.getPriorityBeta();
+					replayBuffer.setBeta(beta + (1 - beta) * i / epochs);
+				}
+				int trainingWins = 0;
+				for (int j = 0; j < gamesPerEpoch; j++) {
+					if (game.runEnvironment(agent, true) > 0) {
+						trainingWins++;
+					}
+					try (NDManager arena = arenas.newSubManager()) {
+						long start = System.nanoTime();
+						Step[] batchSteps = game.getBatch(arena);
+						metrics.record(TrainingMetrics.Phase.GET_BATCH, start);
+						start = System.nanoTime();
+						agent.trainBatch(batchSteps);
+						metrics.record(TrainingMetrics.Phase.TRAIN_BATCH, start);
+						start = System.nanoTime();
+						trainer.step();
+						metrics.record(TrainingMetrics.Phase.TRAINER_STEP, start);
+					}
+				}
+				float validationWin = game.runEnvironment(agent, false) > 0 ? 1 : 0;
+				logger.info("Epoch {}: training wins {}, validation wins {}, {} ms per move", i + 1,
+						(float) trainingWins / gamesPerEpoch, validationWin,
+						(System.currentTimeMillis() - startTime) / ((float) (i + 1) * gamesPerEpoch * batchSize));
+				checkpoints.epochEnd(model, validationWin);
+			}
+			checkpoints.save(model, Float.NaN);
+		} finally {
+			trainer.close();
+			model.close();
+			game.close();
+			arenas.close();
+		}
+	}
+
+	static RlAgent newAgent(Trainer trainer, float rewardDiscount, Tracker exploreRate,
+							PrioritizedReplayBuffer replayBuffer, boolean allActions) {
+		if (allActions){
+			return new MaskedQAgent(trainer, rewardDiscount, exploreRate, replayBuffer);
+		}
+		RlAgent agent = replayBuffer == null
+				? new QAgent(trainer, rewardDiscount)
+				: new PrioritizedQAgent(trainer, rewardDiscount, replayBuffer);
+		return new EpsilonGreedy(agent, exploreRate);
+	}
+
+	/**
+	 * @return a writer for the self play games, or null if no archive was asked for
+	 */
+	static GameArchiveWriter newArchive(Arguments arguments) throws IOException {
+		if (arguments.getArchivePath() == null){
+			return null;
+		}
+		GameArchiveWriter archive = new GameArchiveWriter(Paths.get(arguments.getArchivePath()));
+		logger.info("Archiving games to {}, {} games in it already", arguments.getArchivePath(), archive.size());
+		return archive;
+	}
+
+	private static TrainingResult runXEpochs(int epoch, int validationGamesPerEpoch, CheckpointManager checkpoints,
 											 int batchSize, float rewardDiscount, int replayBufferSize,
-											 int gamesPerEpoch, String modelPath, boolean shouldLoad) throws IOException
+											 int gamesPerEpoch, String modelPath, boolean shouldLoad,
+											 PrioritizedReplayBuffer replayBuffer, boolean allActions,
+											 GameArchiveWriter archive, int solveBelow, boolean connections) throws IOException
 	{
-		HexGame game = new HexGame(NDManager.newBaseManager(), batchSize, replayBufferSize, rows, columns);
+		HexGame game = replayBuffer == null
+				? new HexGame(NDManager.newBaseManager(), batchSize, replayBufferSize, rows, columns)
+				: new HexGame(NDManager.newBaseManager(), replayBuffer, rows, columns);
+		game.setArchive(archive);
+		setSolver(game, solveBelow);
+		game.setVirtualConnections(connections);
+		TrainingMetrics metrics = TrainingMetrics.get();
 
-		Block  block = getBlock();
-		Model model = Model.newInstance("Hex-Game!");
-		model.setBlock(block);
+		Model model = newModel(allActions);
+		metrics.watch(model.getNDManager());
 
 		// Loads the saved parameters
 		if (shouldLoad){
 			try {
-				loadModel(model);
+				checkpoints.load(model);
 			} catch (MalformedModelException | IOException e) {
 				System.out.println(Arrays.toString(e.getStackTrace()));
 			}
@@ -103,16 +263,10 @@ public final class TrainHexGame {
 
 		// this part looks important but I really don't know
 		Trainer trainer = model.newTrainer(config);
-		trainer.initialize(new Shape(batchSize, rows*columns), new Shape(batchSize), new Shape(batchSize));
+		initializeTrainer(trainer, batchSize, allActions);
 
-		RlAgent agent = new QAgent(trainer, rewardDiscount);
-		Tracker exploreRate =
-				LinearTracker.builder()						// this sets a declining ramp rate for the exploring
-						.setBaseValue(0.5f)
-						.optSlope(-.8f / (100 * gamesPerEpoch * 7))
-						.optMinValue(0.02f)
-						.build();
-		agent = new EpsilonGreedy(agent, exploreRate);
+		Tracker exploreRate = newExploreRate(gamesPerEpoch);
+		RlAgent agent = newAgent(trainer, rewardDiscount, exploreRate, replayBuffer, allActions);
 
 		float validationWinRate = 0;
 		float trainWinRate = 0;
@@ -140,9 +294,15 @@ public final class TrainHexGame {
 
 				// Runs the simulation
 				float result = game.runEnvironment(agent, true);
+				long start = System.nanoTime();
 				Step[] batchSteps = game.getBatch();
+				metrics.record(TrainingMetrics.Phase.GET_BATCH, start);
+				start = System.nanoTime();
 				agent.trainBatch(batchSteps);
+				metrics.record(TrainingMetrics.Phase.TRAIN_BATCH, start);
+				start = System.nanoTime();
 				trainer.step();
+				metrics.record(TrainingMetrics.Phase.TRAINER_STEP, start);
 
 				// Record if the game was won
 				if (result > 0) {
@@ -166,9 +326,11 @@ public final class TrainHexGame {
 			validationWinRate = (float) validationWins / validationGamesPerEpoch;
 			logger.info("Validation wins: {}", validationWinRate);
 
-			saveModel(model);
+			checkpoints.epochEnd(model, validationWinRate);
 
 		}
+		// the next call starts from what is on disk, so the epochs since the last checkpoint are saved too
+		checkpoints.save(model, validationWinRate);
 
 		TrainingResult trainingResult = trainer.getTrainingResult();
 		trainingResult.getEvaluations().put("validate_winRate", validationWinRate);
@@ -181,13 +343,58 @@ public final class TrainHexGame {
 		return trainingResult;
 	}
 
-	private static void saveModel(Model model) throws IOException {
-		logger.info("Saving model...");
-		model.save(Paths.get(MODEL_PATH), "Hex-Game!");
+	/**
+	 * The two networks take different inputs, so they are saved under different names
+	 */
+	static Model newModel(boolean allActions) {
+		Model model = Model.newInstance(modelName(allActions));
+		model.setBlock(allActions ? getAllActionsBlock() : getBlock());
+		return model;
+	}
+
+	static String modelName(boolean allActions) {
+		return allActions ? "Hex-Game-all-actions" : "Hex-Game!";
+	}
+
+	static void initializeTrainer(Trainer trainer, int batchSize, boolean allActions) {
+		if (allActions){
+			trainer.initialize(new Shape(batchSize, rows*columns), new Shape(batchSize));
+		} else {
+			trainer.initialize(new Shape(batchSize, rows*columns), new Shape(batchSize), new Shape(batchSize));
+		}
+	}
+
+	static Tracker newExploreRate(int gamesPerEpoch) {
+		return LinearTracker.builder()						// this sets a declining ramp rate for the exploring
+				.setBaseValue(0.5f)
+				.optSlope(-.8f / (100 * gamesPerEpoch * 7))
+				.optMinValue(0.02f)
+				.build();
 	}
 
-	private static void loadModel(Model model) throws MalformedModelException, IOException {
-		model.load(Paths.get(MODEL_PATH), "Hex-Game!");
+	/**
+	 * Lets the game end as soon as its winner is proven, once at most maxEmpty cells are left
+	 * @param maxEmpty 0 to play every game out
+	 */
+	static void setSolver(HexGame game, int maxEmpty) {
+		if (maxEmpty > 0) {
+			game.setSolver(new HexSolver(rows, columns, SOLVER_TABLE_BITS), maxEmpty, SOLVE_MILLIS);
+		}
+	}
+
+	/**
+	 * @return the checkpoints of the model, saved every --save epochs and keeping the last --keep
+	 */
+	static CheckpointManager newCheckpoints(Arguments arguments, boolean allActions) throws IOException {
+		return new CheckpointManager(Paths.get(MODEL_PATH), modelName(allActions), arguments.getSaveEveryX(),
+				arguments.getKeepLast());
+	}
+
+	/**
+	 * Loads the newest checkpoint that isn't damaged
+	 */
+	static void loadModel(Model model) throws MalformedModelException, IOException {
+		CheckpointManager.loadLatest(model, Paths.get(MODEL_PATH));
 		logger.info("Loaded model "+ model.getModelPath()+"/"+model.getName());
 	}
 
@@ -219,6 +426,23 @@ public final class TrainHexGame {
 		return outBlock;
 	}
 
+	/**
+	 * The network MaskedQAgent plays with: it takes the board and the turn, and gives a Q-value for every cell in one
+	 * forward pass instead of one pass per action.
+	 */
+	public static Block getAllActionsBlock() {
+		return new SequentialBlock()
+				.add(
+						arrays -> {
+							NDArray board = arrays.get(0); // Shape(N, rows*columns)
+							NDArray turn = arrays.get(1).reshape(-1, 1); // Shape(N, 1)
+							NDArray combined = NDArrays.concat(new NDList(
+									board.toType(DataType.FLOAT32, false), turn.toType(DataType.FLOAT32, false)), 1);
+							return new NDList(combined);
+						})
+				.add(new Mlp(rows*columns +1, rows*columns, new int[] {64, 64, 64, 64}));
+	}
+
 	/**
 	 * I also do not know what this does. Taken from the tic tac toe training example
 	 */
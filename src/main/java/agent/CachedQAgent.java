@@ -0,0 +1,70 @@
+package agent;
+
+import ai.djl.modality.rl.ActionSpace;
+import ai.djl.modality.rl.agent.QAgent;
+import ai.djl.modality.rl.agent.RlAgent;
+import ai.djl.modality.rl.env.RlEnv;
+import ai.djl.ndarray.NDList;
+import ai.djl.training.Trainer;
+import ai.djl.translate.Batchifier;
+import env.HexGame;
+
+import java.util.Arrays;
+
+/**
+ * A QAgent for the one action network of TrainHexGame.getBlock() that looks positions up in a QValueCache before
+ * running the network. On a miss it scores every legal move in one batch, like QAgent does, and keeps the scores
+ * as a Q-vector with the occupied cells at negative infinity.
+ *
+ * Training is left to QAgent. The cache isn't cleared by training, so only use it where the parameters stay put
+ * between invalidate calls, like for an actor or for playing.
+ */
+public class CachedQAgent implements RlAgent {
+	private final Trainer trainer;
+	private final QAgent learner;
+	private final QValueCache cache;
+
+	public CachedQAgent(Trainer trainer, float rewardDiscount, QValueCache cache) {
+		this.trainer = trainer;
+		this.learner = new QAgent(trainer, rewardDiscount);
+		this.cache = cache;
+	}
+
+	@Override
+	public NDList chooseAction(RlEnv env, boolean training) {
+		if (!(env instanceof HexGame)) {
+			return learner.chooseAction(env, training);
+		}
+		HexGame game = (HexGame) env;
+		NDList observation = env.getObservation();
+		float[] q = cache.get(game);
+		if (q == null) {
+			ActionSpace actionSpace = env.getActionSpace();
+			NDList[] inputs = new NDList[actionSpace.size()];
+			for (int i = 0; i < inputs.length; i++) {
+				NDList input = new NDList(observation.size() + 1);
+				input.addAll(observation);
+				input.addAll(actionSpace.get(i));
+				inputs[i] = input;
+			}
+			float[] scores = trainer.evaluate(Batchifier.STACK.batchify(inputs)).singletonOrThrow().toFloatArray();
+			q = new float[game.getGeometry().getCells()];
+			Arrays.fill(q, Float.NEGATIVE_INFINITY);
+			for (int i = 0; i < inputs.length; i++) {
+				q[actionSpace.get(i).singletonOrThrow().getInt()] = scores[i];
+			}
+			cache.put(game, q);
+		}
+		int best = MaskedQAgent.bestEmpty(q, observation.get(0).toIntArray());
+		return new NDList(observation.get(0).getManager().create(best));
+	}
+
+	@Override
+	public void trainBatch(RlEnv.Step[] batchSteps) {
+		learner.trainBatch(batchSteps);
+	}
+
+	public QValueCache getCache() {
+		return cache;
+	}
+}
@@ -0,0 +1,201 @@
+package agent;
+
+import ai.djl.modality.rl.agent.RlAgent;
+import ai.djl.modality.rl.env.RlEnv;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDArrays;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.DataType;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.training.GradientCollector;
+import ai.djl.training.Trainer;
+import ai.djl.training.listener.TrainingListener.BatchData;
+import ai.djl.training.tracker.Tracker;
+import env.HexGame;
+import env.PackedReplayBuffer;
+import env.PrioritizedReplayBuffer;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A Q learning agent for a network that scores every cell at once, like TrainHexGame.getAllActionsBlock(). The
+ * network takes the board (N, rows*columns) and the turn (N) and gives a Q-value for every cell (N, rows*columns).
+ *
+ * Choosing a move is one forward pass: the occupied cells are masked out of the output and the best one is taken,
+ * or with the chance of the explore rate a random empty cell without any forward pass at all. Training runs the
+ * whole batch of steps through the network together rather than one step at a time. The target of a step is the
+ * same as for QAgent, its reward plus the discounted best Q of the next position, but the best Q only looks at the
+ * empty cells of the next position.
+ *
+ * With a PrioritizedReplayBuffer the loss of every step is scaled by its importance sampling weight and the TD
+ * errors go back to the buffer as priorities, like PrioritizedQAgent does.
+ */
+public class MaskedQAgent implements RlAgent {
+	private static final float ILLEGAL = -1e9f;			// added to the Q of occupied cells
+
+	private final Trainer trainer;
+	private final float rewardDiscount;
+	private final Tracker exploreRate;
+	private final PrioritizedReplayBuffer replayBuffer;
+	private final QValueCache cache;
+	private final Random rnd = new Random();
+	private int counter;
+
+	/**
+	 * @param trainer the trainer of an all actions network
+	 * @param rewardDiscount how much the Q of the next position counts towards the target
+	 * @param exploreRate the chance of a random move while training, by the number of moves chosen
+	 * @param replayBuffer the buffer to update the priorities of, or null if the batches aren't prioritized
+	 */
+	public MaskedQAgent(Trainer trainer, float rewardDiscount, Tracker exploreRate,
+						PrioritizedReplayBuffer replayBuffer) {
+		this(trainer, rewardDiscount, exploreRate, replayBuffer, null);
+	}
+
+	/**
+	 * @param cache where the greedy moves look positions up before the forward pass, or null to always run it
+	 */
+	public MaskedQAgent(Trainer trainer, float rewardDiscount, Tracker exploreRate,
+						PrioritizedReplayBuffer replayBuffer, QValueCache cache) {
+		this.trainer = trainer;
+		this.rewardDiscount = rewardDiscount;
+		this.exploreRate = exploreRate;
+		this.replayBuffer = replayBuffer;
+		this.cache = cache;
+	}
+
+	@Override
+	public NDList chooseAction(RlEnv env, boolean training) {
+		NDList observation = env.getObservation();
+		NDArray board = observation.get(0);
+		NDManager manager = board.getManager();
+		int[] cells = board.toIntArray();
+
+		int action;
+		if (training && rnd.nextFloat() < exploreRate.getNewValue(counter++)) {
+			action = randomEmpty(cells);
+		} else {
+			HexGame game = cache != null && env instanceof HexGame ? (HexGame) env : null;
+			float[] q = game != null ? cache.get(game) : null;
+			if (q == null) {
+				q = trainer.evaluate(new NDList(board.reshape(1, -1), observation.get(1).reshape(1)))
+						.singletonOrThrow().reshape(-1).toFloatArray();
+				if (game != null) {
+					cache.put(game, q);
+				}
+			}
+			action = bestEmpty(q, cells);
+		}
+		return new NDList(manager.create(action));
+	}
+
+	/**
+	 * @return the empty cell with the highest Q, or -1 if the board is full
+	 */
+	public static int bestEmpty(float[] q, int[] board) {
+		int best = -1;
+		for (int i = 0; i < board.length; i++) {
+			if (board[i] == 0 && (best == -1 || q[i] > q[best])) {
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	private int randomEmpty(int[] board) {
+		int empty = 0;
+		for (int cell : board) {
+			if (cell == 0) empty++;
+		}
+		int pick = rnd.nextInt(empty);
+		for (int i = 0; i < board.length; i++) {
+			if (board[i] == 0 && pick-- == 0) {
+				return i;
+			}
+		}
+		throw new IllegalStateException("Unreachable");
+	}
+
+	@Override
+	public void trainBatch(RlEnv.Step[] batchSteps) {
+		int n = batchSteps.length;
+		if (n == 0) {
+			return;
+		}
+		NDList[] pre = new NDList[n];
+		NDList[] post = new NDList[n];
+		NDArray[] rewards = new NDArray[n];
+		NDArray[] actions = new NDArray[n];
+		float[] notDone = new float[n];
+		float[] weights = new float[n];
+		for (int i = 0; i < n; i++) {
+			RlEnv.Step step = batchSteps[i];
+			pre[i] = step.getPreObservation();
+			post[i] = step.getPostObservation();
+			rewards[i] = step.getReward().reshape(1);
+			actions[i] = step.getAction().singletonOrThrow().reshape(1);
+			notDone[i] = step.isDone() ? 0 : 1;
+			// both sides of the squared error get the root, so the loss of the step is scaled by the weight
+			weights[i] = step instanceof PackedReplayBuffer.PackedStep
+					? (float) Math.sqrt(((PackedReplayBuffer.PackedStep) step).getWeight()) : 1;
+		}
+		NDManager manager = rewards[0].getManager();
+		NDArray preBoards = NDArrays.stack(boards(pre));
+		NDArray postBoards = NDArrays.stack(boards(post));
+		int cells = (int) preBoards.getShape().get(1);
+
+		int[] taken = NDArrays.concat(new NDList(actions)).toType(DataType.INT32, false).toIntArray();
+		float[] oneHot = new float[n * cells];
+		for (int i = 0; i < n; i++) {
+			oneHot[i * cells + taken[i]] = 1;
+		}
+
+		BatchData batchData = new BatchData(null, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+		float[] errors;
+		try (GradientCollector collector = trainer.newGradientCollector()) {
+			NDArray preQ = trainer.forward(new NDList(preBoards, NDArrays.stack(turns(pre))))
+					.singletonOrThrow()
+					.mul(manager.create(oneHot, new Shape(n, cells)))
+					.sum(new int[]{1});
+
+			NDArray postQ = trainer.forward(new NDList(postBoards, NDArrays.stack(turns(post))))
+					.singletonOrThrow()
+					.stopGradient();
+			NDArray illegal = postBoards.eq(0).logicalNot().toType(DataType.FLOAT32, false).mul(ILLEGAL);
+			NDArray bestNext = postQ.add(illegal).max(new int[]{1});
+			NDArray target = bestNext.mul(manager.create(notDone)).mul(rewardDiscount)
+					.add(NDArrays.concat(new NDList(rewards)).toType(DataType.FLOAT32, false));
+
+			NDList label = new NDList(target);
+			NDList prediction = new NDList(preQ);
+			NDArray loss = trainer.getLoss().evaluate(
+					new NDList(target.mul(manager.create(weights))), new NDList(preQ.mul(manager.create(weights))));
+			collector.backward(loss);
+			errors = target.sub(preQ).toFloatArray();
+			batchData.getLabels().put(label.get(0).getDevice(), label);
+			batchData.getPredictions().put(prediction.get(0).getDevice(), prediction);
+		}
+		if (replayBuffer != null) {
+			replayBuffer.updatePriorities(batchSteps, errors);
+		}
+		trainer.notifyListeners(listener -> listener.onTrainingBatch(trainer, batchData));
+	}
+
+	private static NDList boards(NDList[] observations) {
+		NDList boards = new NDList(observations.length);
+		for (NDList observation : observations) {
+			boards.add(observation.get(0).toType(DataType.FLOAT32, false));
+		}
+		return boards;
+	}
+
+	private static NDList turns(NDList[] observations) {
+		NDList turns = new NDList(observations.length);
+		for (NDList observation : observations) {
+			turns.add(observation.get(1).toType(DataType.FLOAT32, false));
+		}
+		return turns;
+	}
+}
@@ -0,0 +1,92 @@
+package agent;
+
+import ai.djl.modality.rl.ActionSpace;
+import ai.djl.modality.rl.agent.QAgent;
+import ai.djl.modality.rl.agent.RlAgent;
+import ai.djl.modality.rl.env.RlEnv;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.training.GradientCollector;
+import ai.djl.training.Trainer;
+import ai.djl.training.listener.TrainingListener.BatchData;
+import ai.djl.translate.Batchifier;
+import env.PackedReplayBuffer;
+import env.PrioritizedReplayBuffer;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A QAgent that trains from a PrioritizedReplayBuffer. It learns the same way as DJL's QAgent, the target of a step
+ * is its reward plus the discounted best Q of the next position, but it scales the loss of every step by its
+ * importance sampling weight and hands the TD errors back to the buffer as the new priorities.
+ *
+ * Moves are chosen exactly like QAgent does.
+ */
+public class PrioritizedQAgent implements RlAgent {
+	private final Trainer trainer;
+	private final float rewardDiscount;
+	private final PrioritizedReplayBuffer replayBuffer;
+	private final QAgent chooser;
+
+	/**
+	 * @param trainer the trainer of the Q network
+	 * @param rewardDiscount how much the Q of the next position counts towards the target
+	 * @param replayBuffer the buffer the batches come from, its priorities are updated after every batch
+	 */
+	public PrioritizedQAgent(Trainer trainer, float rewardDiscount, PrioritizedReplayBuffer replayBuffer) {
+		this.trainer = trainer;
+		this.rewardDiscount = rewardDiscount;
+		this.replayBuffer = replayBuffer;
+		this.chooser = new QAgent(trainer, rewardDiscount);
+	}
+
+	@Override
+	public NDList chooseAction(RlEnv env, boolean training) {
+		return chooser.chooseAction(env, training);
+	}
+
+	@Override
+	public void trainBatch(RlEnv.Step[] batchSteps) {
+		BatchData batchData = new BatchData(null, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+		float[] errors = new float[batchSteps.length];
+		for (int i = 0; i < batchSteps.length; i++) {
+			RlEnv.Step step = batchSteps[i];
+			float weight = step instanceof PackedReplayBuffer.PackedStep
+					? ((PackedReplayBuffer.PackedStep) step).getWeight() : 1;
+
+			ActionSpace postActions = step.getPostActionSpace();
+			NDList[] inputs = new NDList[1 + postActions.size()];
+			inputs[0] = withAction(step.getPreObservation(), step.getAction());
+			for (int j = 0; j < postActions.size(); j++) {
+				inputs[j + 1] = withAction(step.getPostObservation(), postActions.get(j));
+			}
+
+			try (GradientCollector collector = trainer.newGradientCollector()) {
+				NDArray results = trainer.forward(Batchifier.STACK.batchify(inputs)).singletonOrThrow().squeeze(-1);
+				NDArray preQ = results.get(0);
+				NDArray target;
+				if (step.isDone() || postActions.isEmpty()) {
+					target = step.getReward();
+				} else {
+					target = results.get("1:").max().mul(rewardDiscount).add(step.getReward());
+				}
+				NDList label = new NDList(target);
+				NDList prediction = new NDList(preQ);
+				NDArray loss = trainer.getLoss().evaluate(label, prediction).mul(weight);
+				collector.backward(loss);
+				errors[i] = target.sub(preQ).getFloat();
+				batchData.getLabels().put(label.get(0).getDevice(), label);
+				batchData.getPredictions().put(prediction.get(0).getDevice(), prediction);
+			}
+		}
+		replayBuffer.updatePriorities(batchSteps, errors);
+		trainer.notifyListeners(listener -> listener.onTrainingBatch(trainer, batchData));
+	}
+
+	private static NDList withAction(NDList observation, NDList action) {
+		NDList input = new NDList(observation.size() + action.size());
+		input.addAll(observation);
+		input.addAll(action);
+		return input;
+	}
+}
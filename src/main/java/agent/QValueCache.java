@@ -0,0 +1,130 @@
+package agent;
+
+import env.HexGame;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the Q-value of every cell of a position, so that positions that come up again and again, the
+ * openings most of all, don't need another forward pass.
+ *
+ * Positions are keyed by HexGame.getCanonicalKey, which is the same for a board and the board turned 180 degrees.
+ * Turning the board moves the 0 based cell i to rows*columns-1-i, so a Q-vector from a turned board is stored
+ * reversed and reversed again on the way out, and both ways round hit the same entry.
+ *
+ * Entries are evicted with the CLOCK algorithm: a hit marks the entry, and the hand looking for room takes the
+ * first entry it finds unmarked, clearing the marks it passes. Parameters that change make every entry stale, so
+ * call invalidate after loading new ones.
+ */
+public class QValueCache {
+	private final int capacity;
+	private final long[] keys;
+	private final float[][] values;
+	private final boolean[] referenced;
+	private final Map<Long, Integer> slots;
+	private int hand;
+	private int size;
+
+	private long hits;
+	private long misses;
+
+	/**
+	 * @param capacity the most positions to keep
+	 */
+	public QValueCache(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("A cache needs room for at least one position");
+		}
+		this.capacity = capacity;
+		keys = new long[capacity];
+		values = new float[capacity][];
+		referenced = new boolean[capacity];
+		slots = new HashMap<>(capacity * 2);
+	}
+
+	/**
+	 * @return the Q-vector of the position the way round the game has it, or null if it isn't cached
+	 */
+	public float[] get(HexGame game) {
+		return get(game.getCanonicalKey(), game.isCanonicalRotated());
+	}
+
+	public void put(HexGame game, float[] q) {
+		put(game.getCanonicalKey(), game.isCanonicalRotated(), q);
+	}
+
+	/**
+	 * @param rotated if the position is the turned round version of the canonical one
+	 */
+	public synchronized float[] get(long key, boolean rotated) {
+		Integer slot = slots.get(key);
+		if (slot == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		referenced[slot] = true;
+		return rotated ? reversed(values[slot]) : values[slot].clone();
+	}
+
+	public synchronized void put(long key, boolean rotated, float[] q) {
+		float[] value = rotated ? reversed(q) : q.clone();
+		Integer slot = slots.get(key);
+		if (slot == null) {
+			slot = size < capacity ? size++ : evict();
+			slots.put(key, slot);
+			keys[slot] = key;
+		}
+		values[slot] = value;
+		referenced[slot] = false;
+	}
+
+	/**
+	 * Runs the clock hand to the first unmarked entry and frees it
+	 */
+	private int evict() {
+		while (referenced[hand]) {
+			referenced[hand] = false;
+			hand = (hand + 1) % capacity;
+		}
+		int slot = hand;
+		hand = (hand + 1) % capacity;
+		slots.remove(keys[slot]);
+		return slot;
+	}
+
+	/**
+	 * Drops every entry, for when the network changes
+	 */
+	public synchronized void invalidate() {
+		slots.clear();
+		Arrays.fill(values, null);
+		Arrays.fill(referenced, false);
+		size = 0;
+		hand = 0;
+	}
+
+	public synchronized long getHits() { return hits; }
+
+	public synchronized long getMisses() { return misses; }
+
+	/**
+	 * @return the share of lookups that were served from the cache
+	 */
+	public synchronized float getHitRate() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : hits / (float) lookups;
+	}
+
+	public synchronized int size() { return size; }
+
+	private static float[] reversed(float[] q) {
+		float[] out = new float[q.length];
+		for (int i = 0; i < q.length; i++) {
+			out[i] = q[q.length - 1 - i];
+		}
+		return out;
+	}
+}
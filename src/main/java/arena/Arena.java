@@ -0,0 +1,143 @@
+package arena;
+
+import game.PlayHex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays many games between two contestants at once and adds the results to an Elo table.
+ *
+ * The games come in pairs from the same opening: blue's first move is forced to a cell of a shuffled list, and the
+ * two contestants take blue in turn, so neither gets more of the first move advantage or of the better openings.
+ * The openings come from a fixed seed, so every pairing is played from the same ones.
+ *
+ * The games are spread over a pool of daemon threads at the lowest priority, so the arena only gets the cores
+ * training leaves over. Every thread makes its own bots for its share of the games and closes them afterwards.
+ */
+public class Arena implements AutoCloseable {
+	private static final Logger logger = LoggerFactory.getLogger(Arena.class);
+	private static final int PAIRS_PER_TASK = 8;
+
+	private final int rows;
+	private final int columns;
+	private final EloTable table;
+	private final ExecutorService pool;
+	private final long seed;
+
+	/**
+	 * @param threads the number of games played at once
+	 * @param seed the seed of the openings
+	 */
+	public Arena(int rows, int columns, EloTable table, int threads, long seed) {
+		this.rows = rows;
+		this.columns = columns;
+		this.table = table;
+		this.seed = seed;
+		AtomicInteger count = new AtomicInteger();
+		pool = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "arena-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+	}
+
+	public EloTable getTable() { return table; }
+
+	/**
+	 * Plays 2*pairs games between a and b, each taking blue in one game of every pair, and adds them to the table
+	 * @return the wins of a and of b, with what else the match measured
+	 */
+	public MatchStats playMatch(Contestant a, Contestant b, int pairs) throws InterruptedException {
+		int[] openings = openings();
+		MatchStats stats = new MatchStats(a.getName(), b.getName());
+		List<Future<?>> tasks = new ArrayList<>();
+		for (int first = 0; first < pairs; first += PAIRS_PER_TASK) {
+			int from = first;
+			int to = Math.min(pairs, first + PAIRS_PER_TASK);
+			tasks.add(pool.submit(() -> playPairs(a, b, openings, from, to, stats)));
+		}
+		try {
+			for (Future<?> task : tasks) {
+				task.get();
+			}
+		} catch (ExecutionException e) {
+			tasks.forEach(task -> task.cancel(true));
+			throw new IllegalStateException("The match of " + a + " and " + b + " failed", e.getCause());
+		} catch (InterruptedException e) {
+			tasks.forEach(task -> task.cancel(true));
+			throw e;
+		}
+		stats.finish();
+		table.add(a.getName(), b.getName(), stats.getWinsOfA(), stats.getWinsOfB());
+		logger.info("{} {} - {} {}", a, stats.getWinsOfA(), stats.getWinsOfB(), b);
+		return stats;
+	}
+
+	/**
+	 * @return every cell once in an order fixed by the seed, the first moves of blue
+	 */
+	private int[] openings() {
+		List<Integer> cells = new ArrayList<>();
+		for (int i = 0; i < rows * columns; i++) {
+			cells.add(i);
+		}
+		Collections.shuffle(cells, new Random(seed));
+		return cells.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	private void playPairs(Contestant a, Contestant b, int[] openings, int from, int to, MatchStats stats) {
+		try (Bot botA = a.newBot(); Bot botB = b.newBot()) {
+			for (int pair = from; pair < to; pair++) {
+				int opening = openings[pair % openings.length];
+				playGame(botA, botB, opening, stats, true);
+				playGame(botB, botA, opening, stats, false);
+			}
+		}
+	}
+
+	/**
+	 * Plays one game, a move that isn't legal loses it
+	 * @param opening the first move of blue
+	 * @param blueIsA true if blue is the first contestant of the stats
+	 * @return 1 if blue won, -1 if red did
+	 */
+	int playGame(Bot blue, Bot red, int opening, MatchStats stats, boolean blueIsA) {
+		PlayHex game = new PlayHex(rows, columns);
+		int winner = game.setMove(opening, 1);
+		int player = -1;
+		boolean forfeit = false;
+		while (winner == 0) {
+			long start = System.nanoTime();
+			int location = (player == 1 ? blue : red).chooseMove(game, player);
+			stats.recordMove(blueIsA == (player == 1), System.nanoTime() - start);
+			if (location < 0 || location >= game.maxMoves || game.getCell(location) != 0) {
+				winner = -player;
+				forfeit = true;
+				break;
+			}
+			winner = game.setMove(location, player);
+			player = -player;
+		}
+		stats.recordGame(blueIsA, winner, game.getMoveCount(), forfeit);
+		return winner;
+	}
+
+	/**
+	 * Stops the games still being played, their match is not added to the table
+	 */
+	@Override
+	public void close() {
+		pool.shutdownNow();
+	}
+}
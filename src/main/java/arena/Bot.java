@@ -0,0 +1,20 @@
+package arena;
+
+import game.PlayHex;
+
+/**
+ * Something that plays Hex in the arena. A bot is only ever used by one thread at a time, the arena makes one for
+ * every batch of games it plays, so it can keep whatever state it likes.
+ */
+public interface Bot extends AutoCloseable {
+
+	/**
+	 * @param game the position, it has to be left the way it was found
+	 * @param player the player to move, 1 for blue and -1 for red
+	 * @return the 0 based location to take, an occupied one loses the game
+	 */
+	int chooseMove(PlayHex game, int player);
+
+	@Override
+	default void close() {}
+}
@@ -0,0 +1,27 @@
+package arena;
+
+import java.util.function.Supplier;
+
+/**
+ * A named entry of the Elo table, and how to make a bot that plays for it
+ */
+public final class Contestant {
+	private final String name;
+	private final Supplier<Bot> bots;
+
+	/**
+	 * @param name the name in the Elo table, a checkpoint keeps its name across runs so its games keep counting
+	 * @param bots makes a new bot every time it is called, they are used by one thread each
+	 */
+	public Contestant(String name, Supplier<Bot> bots) {
+		this.name = name;
+		this.bots = bots;
+	}
+
+	public String getName() { return name; }
+
+	public Bot newBot() { return bots.get(); }
+
+	@Override
+	public String toString() { return name; }
+}
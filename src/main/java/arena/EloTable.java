@@ -0,0 +1,164 @@
+package arena;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The results of every pairing played in the arena, and the Elo ratings they add up to.
+ *
+ * Only the wins are kept, the ratings are worked out from all of them at once rather than updated game by game, so
+ * the order the arena threads finish their games in doesn't matter. They are the maximum likelihood ratings of the
+ * Bradley-Terry model, where a player rated d points above another wins with the chance 1/(1+10^(-d/400)), found
+ * with the minorization maximization iterations of Hunter (2004). Like BayesElo, every player gets a prior of one
+ * virtual win and one virtual loss against a player rated 0, which keeps a player that won or lost everything at a
+ * finite rating. The anchor, the random bot by default, is shifted to 0.
+ *
+ * On disk the table is a tab separated file with a line per pairing: the two names and the wins of each. It is
+ * written to a temporary file and renamed over the old one.
+ */
+public class EloTable {
+	private static final int ITERATIONS = 500;
+
+	private final Map<String, Map<String, Integer>> wins = new LinkedHashMap<>();	// wins.get(a).get(b), a beat b
+	private final String anchor;
+
+	public EloTable(String anchor) {
+		this.anchor = anchor;
+	}
+
+	/**
+	 * @return the table saved at path, or an empty one if there is no file yet
+	 */
+	public static EloTable load(Path path, String anchor) throws IOException {
+		EloTable table = new EloTable(anchor);
+		if (!Files.exists(path)) {
+			return table;
+		}
+		for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] fields = line.split("\t");
+			if (fields.length != 4) {
+				throw new IOException("Not a line of an Elo table: " + line);
+			}
+			table.add(fields[0], fields[1], Integer.parseInt(fields[2]), Integer.parseInt(fields[3]));
+		}
+		return table;
+	}
+
+	public synchronized void save(Path path) throws IOException {
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+			writer.write("# player\topponent\tplayer wins\topponent wins");
+			writer.newLine();
+			for (Map.Entry<String, Map<String, Integer>> player : wins.entrySet()) {
+				for (Map.Entry<String, Integer> opponent : player.getValue().entrySet()) {
+					String a = player.getKey();
+					String b = opponent.getKey();
+					if (a.compareTo(b) < 0) {			// each pairing once
+						writer.write(a + "\t" + b + "\t" + opponent.getValue() + "\t" + getWins(b, a));
+						writer.newLine();
+					}
+				}
+			}
+		}
+		Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Adds the results of games between a and b
+	 */
+	public synchronized void add(String a, String b, int winsOfA, int winsOfB) {
+		if (a.equals(b)) {
+			throw new IllegalArgumentException("A player can't play itself in the table: " + a);
+		}
+		wins.computeIfAbsent(a, k -> new LinkedHashMap<>()).merge(b, winsOfA, Integer::sum);
+		wins.computeIfAbsent(b, k -> new LinkedHashMap<>()).merge(a, winsOfB, Integer::sum);
+	}
+
+	public synchronized int getWins(String a, String b) {
+		return wins.getOrDefault(a, Map.of()).getOrDefault(b, 0);
+	}
+
+	public synchronized int getGames(String player) {
+		int games = 0;
+		for (Map.Entry<String, Integer> opponent : wins.getOrDefault(player, Map.of()).entrySet()) {
+			games += opponent.getValue() + getWins(opponent.getKey(), player);
+		}
+		return games;
+	}
+
+	/**
+	 * @return the rating of every player, by name
+	 */
+	public synchronized Map<String, Double> ratings() {
+		List<String> players = new ArrayList<>(wins.keySet());
+		int n = players.size();
+		Map<String, Integer> index = new HashMap<>();
+		for (int i = 0; i < n; i++) {
+			index.put(players.get(i), i);
+		}
+		double[][] games = new double[n][n];
+		double[] won = new double[n];
+		for (int i = 0; i < n; i++) {
+			for (Map.Entry<String, Integer> opponent : wins.get(players.get(i)).entrySet()) {
+				int j = index.get(opponent.getKey());
+				games[i][j] += opponent.getValue();
+				games[j][i] += opponent.getValue();
+				won[i] += opponent.getValue();
+			}
+		}
+
+		// gamma is 10^(rating/400), the virtual opponent of the prior has gamma 1
+		double[] gamma = new double[n];
+		java.util.Arrays.fill(gamma, 1);
+		for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+			double[] next = new double[n];
+			for (int i = 0; i < n; i++) {
+				double denominator = 2 / (gamma[i] + 1);
+				for (int j = 0; j < n; j++) {
+					if (games[i][j] > 0) {
+						denominator += games[i][j] / (gamma[i] + gamma[j]);
+					}
+				}
+				next[i] = (won[i] + 1) / denominator;
+			}
+			gamma = next;
+		}
+
+		double shift = index.containsKey(anchor) ? 400 * Math.log10(gamma[index.get(anchor)]) : 0;
+		Map<String, Double> ratings = new LinkedHashMap<>();
+		for (int i = 0; i < n; i++) {
+			ratings.put(players.get(i), 400 * Math.log10(gamma[i]) - shift);
+		}
+		return ratings;
+	}
+
+	/**
+	 * @return the players from the highest rated down, a line each with the rating and the number of games
+	 */
+	public synchronized String toString() {
+		Map<String, Double> ratings = ratings();
+		List<String> players = new ArrayList<>(ratings.keySet());
+		players.sort(Comparator.comparing(ratings::get).reversed());
+		StringBuilder table = new StringBuilder();
+		int rank = 1;
+		for (String player : players) {
+			table.append(String.format(Locale.ROOT, "%3d %-28s %7.1f %7d%n", rank++, player, ratings.get(player),
+					getGames(player)));
+		}
+		return table.toString();
+	}
+}
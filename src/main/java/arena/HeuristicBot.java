@@ -0,0 +1,96 @@
+package arena;
+
+import game.HexGeometry;
+import game.PlayHex;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Plays the cell that does the most for its own shortest path and the least for the opponent's. The distance of a
+ * player is the number of empty cells it still needs to join its two edges, its own stones are free and the
+ * opponent's are walls. Every empty cell is tried, and the one with the largest opponent distance minus own distance
+ * afterwards is taken, ties broken at random.
+ *
+ * It is a lot stronger than random and a lot cheaper than a tree search, a middle step for the Elo table and for
+ * match benchmarks.
+ */
+public class HeuristicBot implements Bot {
+	private static final int FAR = Integer.MAX_VALUE / 2;
+
+	public static Contestant contestant() {
+		return new Contestant("shortest-path", HeuristicBot::new);
+	}
+
+	@Override
+	public int chooseMove(PlayHex game, int player) {
+		HexGeometry geometry = game.getGeometry();
+		int[] board = game.getBoardList();
+		int[] distance = new int[board.length + 1];
+		ArrayDeque<Integer> deque = new ArrayDeque<>();
+		int best = -1;
+		int bestScore = Integer.MIN_VALUE;
+		int ties = 0;
+		for (int location = 0; location < board.length; location++) {
+			if (board[location] != 0) {
+				continue;
+			}
+			board[location] = player;
+			int score = distance(geometry, board, -player, distance, deque) - distance(geometry, board, player, distance, deque);
+			board[location] = 0;
+			if (score > bestScore) {
+				best = location;
+				bestScore = score;
+				ties = 1;
+			} else if (score == bestScore && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+				best = location;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * A 0-1 breadth first search from the first edge of the player to its second
+	 * @return the number of empty cells on the shortest path, or FAR if the opponent has cut the player off
+	 */
+	static int distance(HexGeometry geometry, int[] board, int player, int[] distance, ArrayDeque<Integer> deque) {
+		int from = player == 1 ? HexGeometry.LEFT_BORDER : HexGeometry.TOP_BORDER;
+		int to = player == 1 ? HexGeometry.RIGHT_BORDER : HexGeometry.LOW_BORDER;
+		Arrays.fill(distance, FAR);
+		deque.clear();
+		for (int loc = 1; loc <= board.length; loc++) {
+			if (geometry.isOnBorder(loc, from) && board[loc - 1] != -player) {
+				int cost = board[loc - 1] == player ? 0 : 1;
+				distance[loc] = cost;
+				if (cost == 0) {
+					deque.addFirst(loc);
+				} else {
+					deque.addLast(loc);
+				}
+			}
+		}
+		while (!deque.isEmpty()) {
+			int loc = deque.pollFirst();
+			if (geometry.isOnBorder(loc, to)) {
+				return distance[loc];		// the first edge cell taken off a 0-1 deque is the closest
+			}
+			for (int direction = 0; direction < 6; direction++) {
+				int next = geometry.neighbor(loc, direction);
+				if (next == 0 || board[next - 1] == -player) {
+					continue;
+				}
+				int cost = board[next - 1] == player ? 0 : 1;
+				if (distance[loc] + cost < distance[next]) {
+					distance[next] = distance[loc] + cost;
+					if (cost == 0) {
+						deque.addFirst(next);
+					} else {
+						deque.addLast(next);
+					}
+				}
+			}
+		}
+		return FAR;
+	}
+}
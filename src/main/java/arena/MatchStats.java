@@ -0,0 +1,121 @@
+package arena;
+
+import util.LatencyHistogram;
+
+import java.util.Locale;
+
+/**
+ * What a match between two contestants measured beyond the score: the wins of each with either color, the length of
+ * the games, and how long every move took. Any number of arena threads record into it at once.
+ */
+public class MatchStats {
+	private final String a;
+	private final String b;
+	private final LatencyHistogram latencyOfA = new LatencyHistogram();
+	private final LatencyHistogram latencyOfB = new LatencyHistogram();
+	private final long start = System.nanoTime();
+	private long end;
+	private int gamesAsBlueOfA;
+	private int winsAsBlueOfA;
+	private int gamesAsBlueOfB;
+	private int winsAsBlueOfB;
+	private long moves;
+	private int forfeits;
+
+	MatchStats(String a, String b) {
+		this.a = a;
+		this.b = b;
+	}
+
+	void recordMove(boolean ofA, long nanos) {
+		(ofA ? latencyOfA : latencyOfB).record(nanos);
+	}
+
+	/**
+	 * @param blueIsA true if a played blue
+	 * @param winner 1 if blue won, -1 if red did
+	 * @param length the number of stones on the board at the end, the opening included
+	 * @param forfeit true if the game was lost by an illegal move
+	 */
+	synchronized void recordGame(boolean blueIsA, int winner, int length, boolean forfeit) {
+		if (blueIsA) {
+			gamesAsBlueOfA++;
+			winsAsBlueOfA += winner == 1 ? 1 : 0;
+		} else {
+			gamesAsBlueOfB++;
+			winsAsBlueOfB += winner == 1 ? 1 : 0;
+		}
+		moves += length;
+		forfeits += forfeit ? 1 : 0;
+	}
+
+	synchronized void finish() {
+		end = System.nanoTime();
+	}
+
+	public synchronized int getGames() { return gamesAsBlueOfA + gamesAsBlueOfB; }
+
+	/**
+	 * @return the wins of a, as blue and as red
+	 */
+	public synchronized int getWinsOfA() {
+		return winsAsBlueOfA + gamesAsBlueOfB - winsAsBlueOfB;
+	}
+
+	public synchronized int getWinsOfB() {
+		return getGames() - getWinsOfA();
+	}
+
+	/**
+	 * @return the share of the games blue won, whoever played it
+	 */
+	public synchronized double getBlueWinRate() {
+		return getGames() == 0 ? 0 : (winsAsBlueOfA + winsAsBlueOfB) / (double) getGames();
+	}
+
+	public synchronized double getAverageLength() {
+		return getGames() == 0 ? 0 : moves / (double) getGames();
+	}
+
+	/**
+	 * @return the moves the bots chose per second of the match, over all the arena threads
+	 */
+	public synchronized double getMovesPerSecond() {
+		long elapsed = (end == 0 ? System.nanoTime() : end) - start;
+		long chosen = latencyOfA.snapshot().getCount() + latencyOfB.snapshot().getCount();
+		return elapsed == 0 ? 0 : chosen * 1e9 / elapsed;
+	}
+
+	public LatencyHistogram.Snapshot getLatencyOfA() { return latencyOfA.snapshot(); }
+
+	public LatencyHistogram.Snapshot getLatencyOfB() { return latencyOfB.snapshot(); }
+
+	/**
+	 * @return a few lines with everything measured
+	 */
+	@Override
+	public synchronized String toString() {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format(Locale.ROOT, "%s %d - %d %s in %d games, %.1f%% for %s%n", a, getWinsOfA(),
+				getWinsOfB(), b, getGames(), percent(getWinsOfA(), getGames()), a));
+		report.append(String.format(Locale.ROOT, "  %s won %.1f%% as blue and %.1f%% as red%n", a,
+				percent(winsAsBlueOfA, gamesAsBlueOfA), percent(gamesAsBlueOfB - winsAsBlueOfB, gamesAsBlueOfB)));
+		report.append(String.format(Locale.ROOT, "  blue won %.1f%%, %.1f moves a game, %d lost by an illegal move%n",
+				100 * getBlueWinRate(), getAverageLength(), forfeits));
+		report.append(String.format(Locale.ROOT, "  %.0f moves per second%n", getMovesPerSecond()));
+		report.append(latency(a, latencyOfA.snapshot()));
+		report.append(latency(b, latencyOfB.snapshot()));
+		return report.toString();
+	}
+
+	private static String latency(String name, LatencyHistogram.Snapshot latency) {
+		return String.format(Locale.ROOT, "  %s move latency ms: mean %.3f p50 %.3f p90 %.3f p99 %.3f max %.3f%n",
+				name, latency.getMeanNanos() / 1e6, latency.getPercentileNanos(0.5) / 1e6,
+				latency.getPercentileNanos(0.9) / 1e6, latency.getPercentileNanos(0.99) / 1e6,
+				latency.getMaxNanos() / 1e6);
+	}
+
+	private static double percent(int part, int whole) {
+		return whole == 0 ? 0 : 100.0 * part / whole;
+	}
+}
@@ -0,0 +1,108 @@
+package arena;
+
+import agent.MaskedQAgent;
+import ai.djl.MalformedModelException;
+import ai.djl.Model;
+import ai.djl.inference.Predictor;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.nn.Block;
+import ai.djl.translate.NoopTranslator;
+import ai.djl.translate.TranslateException;
+import game.PlayHex;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+/**
+ * Plays a saved checkpoint greedily, the way the agents play it without exploring. The one action network scores
+ * every empty cell in one batch, the all actions network scores the whole board in one pass, and the empty cell
+ * with the highest Q is taken.
+ *
+ * Every bot loads its own copy of the parameters, so the bots of different arena threads don't share a predictor.
+ * The arrays of a move are made in a manager of their own that is closed as soon as the move is chosen.
+ */
+public class NetworkBot implements Bot {
+	private final Model model;
+	private final Predictor<NDList, NDList> predictor;
+	private final boolean allActions;
+
+	/**
+	 * @param block a new block of the network the checkpoint is of
+	 * @param directory the model path the checkpoints are in
+	 * @param name the name of the model
+	 * @param checkpoint the number of the checkpoint, the NNNN of name-NNNN.params
+	 * @param allActions true for the network of TrainHexGame.getAllActionsBlock()
+	 */
+	public NetworkBot(Block block, Path directory, String name, int checkpoint, boolean allActions)
+			throws IOException, MalformedModelException {
+		this.allActions = allActions;
+		model = Model.newInstance(name);
+		model.setBlock(block);
+		try {
+			model.load(directory, name, Collections.singletonMap("epoch", checkpoint));
+		} catch (IOException | MalformedModelException | RuntimeException e) {
+			model.close();
+			throw e;
+		}
+		predictor = model.newPredictor(new NoopTranslator(null));
+	}
+
+	/**
+	 * @param blocks makes a new block of the network for every bot
+	 */
+	public static Contestant contestant(Supplier<Block> blocks, Path directory, String name, int checkpoint,
+										boolean allActions) {
+		return new Contestant(name + "-" + checkpoint, () -> {
+			try {
+				return new NetworkBot(blocks.get(), directory, name, checkpoint, allActions);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (MalformedModelException e) {
+				throw new IllegalStateException("Checkpoint " + checkpoint + " of " + name + " is damaged", e);
+			}
+		});
+	}
+
+	@Override
+	public int chooseMove(PlayHex game, int player) {
+		int[] board = game.getBoardList();
+		try (NDManager manager = model.getNDManager().newSubManager()) {
+			NDArray boardArray = manager.create(board);
+			NDArray turn = manager.create(-player);			// the networks are given the player who moved last
+			float[] q;
+			if (allActions) {
+				q = predictor.predict(new NDList(boardArray.reshape(1, -1), turn.reshape(1)))
+						.singletonOrThrow().toFloatArray();
+			} else {
+				int[] empty = new int[board.length - game.getMoveCount()];
+				for (int location = 0, count = 0; location < board.length; location++) {
+					if (board[location] == 0) {
+						empty[count++] = location;
+					}
+				}
+				int n = empty.length;
+				float[] scores = predictor.predict(new NDList(
+						boardArray.reshape(1, -1).repeat(0, n), turn.reshape(1).repeat(0, n), manager.create(empty)))
+						.singletonOrThrow().toFloatArray();
+				q = new float[board.length];
+				for (int i = 0; i < n; i++) {
+					q[empty[i]] = scores[i];
+				}
+			}
+			return MaskedQAgent.bestEmpty(q, board);
+		} catch (TranslateException e) {
+			throw new IllegalStateException("The network failed to choose a move", e);
+		}
+	}
+
+	@Override
+	public void close() {
+		predictor.close();
+		model.close();
+	}
+}
@@ -0,0 +1,26 @@
+package arena;
+
+import game.PlayHex;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Takes a random empty cell, the floor of the Elo table
+ */
+public class RandomBot implements Bot {
+
+	public static Contestant contestant() {
+		return new Contestant("random", RandomBot::new);
+	}
+
+	@Override
+	public int chooseMove(PlayHex game, int player) {
+		int pick = ThreadLocalRandom.current().nextInt(game.maxMoves - game.getMoveCount());
+		for (int location = 0; location < game.maxMoves; location++) {
+			if (game.getCell(location) == 0 && pick-- == 0) {
+				return location;
+			}
+		}
+		throw new IllegalStateException("The board is full");
+	}
+}
@@ -0,0 +1,53 @@
+package arena;
+
+import game.PlayHex;
+import search.MonteCarloTreeSearch;
+import search.RandomRollout;
+
+/**
+ * Plays the most visited move of a Monte Carlo Tree Search with random rollouts and a fixed number of playouts. It
+ * searches on one thread, the arena already plays many games at once, and a fixed playout count keeps its strength
+ * the same on any machine.
+ *
+ * With virtual connections the search only tries the moves that don't lose to a bridge or edge template of the
+ * opponent, and stops at positions they already decide.
+ */
+public class SearchBot implements Bot {
+	private final MonteCarloTreeSearch search = new MonteCarloTreeSearch(new RandomRollout(), 1);
+	private final int playouts;
+	private final boolean connections;
+
+	public SearchBot(int playouts) {
+		this(playouts, false);
+	}
+
+	public SearchBot(int playouts, boolean connections) {
+		this.playouts = playouts;
+		this.connections = connections;
+	}
+
+	public static Contestant contestant(int playouts) {
+		return new Contestant("mcts-" + playouts, () -> new SearchBot(playouts));
+	}
+
+	public static Contestant contestant(int playouts, boolean connections) {
+		if (!connections) {
+			return contestant(playouts);
+		}
+		return new Contestant("mcts-vc-" + playouts, () -> new SearchBot(playouts, true));
+	}
+
+	@Override
+	public int chooseMove(PlayHex game, int player) {
+		if (connections && game.getVirtualConnections() == null) {
+			game = game.copy();			// the search copies it again for every thread, and the copies track them too
+			game.trackVirtualConnections();
+		}
+		return search.search(game, player, playouts, 0).getBestMove();
+	}
+
+	@Override
+	public void close() {
+		search.close();
+	}
+}
@@ -0,0 +1,174 @@
+package env;
+
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.training.dataset.RandomAccessDataset;
+import ai.djl.training.dataset.Record;
+import ai.djl.util.Progress;
+import game.GameArchive;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The positions of a GameArchive as a dataset for supervised training of the one action network of
+ * TrainHexGame.getBlock(). Every move of every game is a sample: the data is the board before the move, the turn
+ * (the player who moved last, like HexGame has it) and the move, the label is the winner of the game, 1 for blue
+ * and -1 for red. That is the reward a finished game gives QAgent, so the network learns to predict it directly.
+ *
+ * Only the move counts are read up front, in prepare, to number the samples. A sample's board is made when it is
+ * asked for by playing the moves before it onto an empty board. The pieces don't need the win checks of PlayHex,
+ * so they are put straight into a board list of the same layout.
+ *
+ * Shuffling, batching and prefetching are the ones of RandomAccessDataset: setSampling(batchSize, true) shuffles,
+ * and optExecutor(executor, prefetch) has the executor threads make the batches ahead of the trainer. optShard
+ * splits the games between several trainers, each takes its own contiguous part.
+ */
+public class ArchiveDataset extends RandomAccessDataset implements AutoCloseable {
+	private final Path path;
+	private final int shard;
+	private final int shards;
+	private GameArchive archive;
+	private long firstGame;
+	private long[] firstSample;		// the number of the first sample of every game of the shard, and the total last
+
+	private ArchiveDataset(Builder builder) {
+		super(builder);
+		this.path = builder.path;
+		this.shard = builder.shard;
+		this.shards = builder.shards;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	@Override
+	public void prepare(Progress progress) throws IOException {
+		if (archive != null) {
+			return;
+		}
+		archive = GameArchive.open(path);
+		long games = archive.size();
+		firstGame = games * shard / shards;
+		long lastGame = games * (shard + 1) / shards;
+		if (lastGame - firstGame >= Integer.MAX_VALUE) {
+			throw new IOException("Too many games in one shard, use more shards");
+		}
+		firstSample = new long[(int) (lastGame - firstGame) + 1];
+		if (progress != null) {
+			progress.reset("Indexing games", firstSample.length - 1);
+		}
+		for (int i = 0; i < firstSample.length - 1; i++) {
+			firstSample[i + 1] = firstSample[i] + archive.getMoveCount(firstGame + i);
+			if (progress != null) {
+				progress.increment(1);
+			}
+		}
+		if (progress != null) {
+			progress.end();
+		}
+	}
+
+	@Override
+	public Record get(NDManager manager, long index) throws IOException {
+		Sample sample = getSample(index);
+		NDList data = new NDList(manager.create(sample.board), manager.create(sample.turn), manager.create(sample.move));
+		NDList label = new NDList(manager.create(new float[]{sample.winner}));
+		return new Record(data, label);
+	}
+
+	/**
+	 * @return sample number index of the shard, without any NDArrays
+	 */
+	Sample getSample(long index) {
+		// the last game that starts at or before the sample
+		int i = Arrays.binarySearch(firstSample, index);
+		if (i < 0) {
+			i = -i - 2;
+		}
+		while (firstSample[i + 1] == index) {		// skips games without moves
+			i++;
+		}
+		GameArchive.Game game = archive.get(firstGame + i);
+		int ply = (int) (index - firstSample[i]);
+
+		int[] board = new int[game.getRows() * game.getColumns()];
+		int[] moves = game.getMoves();
+		int player = game.getFirstPlayer();
+		for (int j = 0; j < ply; j++) {
+			board[moves[j]] = player;
+			player = -player;
+		}
+		return new Sample(board, -player, moves[ply], game.getWinner());
+	}
+
+	@Override
+	protected long availableSize() {
+		return firstSample[firstSample.length - 1];
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (archive != null) {
+			archive.close();
+		}
+	}
+
+	/**
+	 * The data and the label of a sample before they become NDArrays
+	 */
+	static final class Sample {
+		final int[] board;
+		final int turn;			// the player who moved last
+		final int move;
+		final int winner;
+
+		private Sample(int[] board, int turn, int move, int winner) {
+			this.board = board;
+			this.turn = turn;
+			this.move = move;
+			this.winner = winner;
+		}
+	}
+
+	public static final class Builder extends BaseBuilder<Builder> {
+		private Path path;
+		private int shard = 0;
+		private int shards = 1;
+
+		@Override
+		protected Builder self() {
+			return this;
+		}
+
+		/**
+		 * @param path the data file of the archive
+		 */
+		public Builder setArchive(Path path) {
+			this.path = path;
+			return this;
+		}
+
+		/**
+		 * @param shard which part of the games to take, from 0 to shards-1
+		 * @param shards the number of parts to split the games into
+		 */
+		public Builder optShard(int shard, int shards) {
+			if (shard < 0 || shard >= shards) {
+				throw new IllegalArgumentException("Shard " + shard + " of " + shards);
+			}
+			this.shard = shard;
+			this.shards = shards;
+			return this;
+		}
+
+		public ArchiveDataset build() {
+			if (path == null) {
+				throw new IllegalArgumentException("The archive to read is missing");
+			}
+			return new ArchiveDataset(this);
+		}
+	}
+}
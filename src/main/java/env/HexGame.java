@@ -1,15 +1,19 @@
 package env;
 
 import ai.djl.modality.rl.ActionSpace;
-import ai.djl.modality.rl.LruReplayBuffer;
-import ai.djl.modality.rl.ReplayBuffer;
+import ai.djl.modality.rl.agent.RlAgent;
 import ai.djl.modality.rl.env.RlEnv;
 import ai.djl.ndarray.NDArray;
 import ai.djl.ndarray.NDList;
 import ai.djl.ndarray.NDManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import game.GameArchiveWriter;
+import game.HexGeometry;
 import game.PlayHex;
+import solver.HexSolver;
+import solver.Proof;
+import util.TrainingMetrics;
 
 import javax.sound.midi.Soundbank;
 import java.util.Arrays;
@@ -20,15 +24,18 @@ public class HexGame implements RlEnv {
 	private static final boolean DEBUG_STEP_MODE = false;			// prints debug info for every move that is made
 
 	private NDManager manager;
-	private ReplayBuffer replayBuffer;
+	private final PackedReplayBuffer replayBuffer;
+	private final boolean sharedReplay;		// a shared buffer is kept across batches and games
 	private State state;
 
 	public int stepCount;
-	private static int batchSize;
-	private static int bufferSize;
 
-	private final int rows;
-	private final int columns;
+	private final HexGeometry geometry;		// shared by every game of the same size
+	private GameArchiveWriter archive;		// where finished games go, if anywhere
+	private HexSolver solver;				// ends games whose winner is proven, if set
+	private int solveBelow;
+	private long solveMillis;
+	private boolean connections;			// ends games that bridges and edge templates already decide
 
 	/**
 	 * @param manager the manager for creating the game in
@@ -36,21 +43,39 @@ public class HexGame implements RlEnv {
 	 * @param replayBufferSize the number of steps to hold in the buffer
 	 */
 	public HexGame(NDManager manager, int batchSize, int replayBufferSize, int rows, int columns){
+		this(manager, new PackedReplayBuffer(rows * columns, batchSize, replayBufferSize), false, rows, columns);
+	}
+
+	/**
+	 * @param manager the manager for creating the game in
+	 * @param replayBuffer a buffer that outlives the game, getBatch samples from it without emptying it
+	 */
+	public HexGame(NDManager manager, PackedReplayBuffer replayBuffer, int rows, int columns){
+		this(manager, replayBuffer, true, rows, columns);
+	}
+
+	private HexGame(NDManager manager, PackedReplayBuffer replayBuffer, boolean sharedReplay, int rows, int columns){
 		this.manager = manager;
 		manager.setName("HexGame Manager");
-		this.state = new State(manager.newSubManager(), rows, columns);
-		this.rows = rows;
-		this.columns = columns;
-		HexGame.batchSize = batchSize;
-		HexGame.bufferSize = replayBufferSize;
-		this.replayBuffer = new LruReplayBuffer(HexGame.batchSize, bufferSize);
+		TrainingMetrics.get().watch(manager);
+		this.geometry = HexGeometry.of(rows, columns);
+		this.state = new State(manager.newSubManager(), geometry);
+		this.replayBuffer = replayBuffer;
+		this.sharedReplay = sharedReplay;
 	}
 
 	@Override
 	public void reset() {
-		state = new State(manager.newSubManager(), rows, columns);		// makes a new PlayHex object
+		if (state != null){
+			state.subMgr.close();			// the arrays of the last game and of its steps
+		}
+		state = new State(manager.newSubManager(), geometry);		// makes a new PlayHex object
+		if (connections){
+			state.boardGame.trackVirtualConnections();
+		}
 		Random rnd = new Random();
 		state.turn = -1 + 2*rnd.nextInt(2);		// sets state to a random -1 or 1
+		state.firstPlayer = -state.turn;
 		stepCount = 0;
 	}
 
@@ -80,6 +105,91 @@ public class HexGame implements RlEnv {
 		return state.getWinner();
 	}
 
+	public HexGeometry getGeometry(){
+		return geometry;
+	}
+
+	/**
+	 * @param archive where every game finished through step is written, or null to not keep them
+	 */
+	public void setArchive(GameArchiveWriter archive){
+		this.archive = archive;
+	}
+
+	/**
+	 * Ends a game as soon as the solver proves who wins, instead of playing on until one side is joined up. The
+	 * proven winner is the reward of the last step, so the step is labelled with the exact result of the position.
+	 * @param solver the solver of this game only, a solver isn't thread safe
+	 * @param maxEmpty solve after every move that leaves at most this many empty cells
+	 * @param maxMillis how long a solve may take, the game goes on if the winner isn't proven by then
+	 */
+	public void setSolver(HexSolver solver, int maxEmpty, long maxMillis){
+		this.solver = solver;
+		this.solveBelow = maxEmpty;
+		this.solveMillis = maxMillis;
+	}
+
+	/**
+	 * Ends a game as soon as one player is joined from border to border by stones, bridges and edge templates,
+	 * which the opponent can't cut any more. Like with the solver, that player is the reward of the last step.
+	 */
+	public void setVirtualConnections(boolean connections){
+		this.connections = connections;
+		if (connections){
+			state.boardGame.trackVirtualConnections();
+		}
+	}
+
+	/**
+	 * @return 1 if blue made the first move of the game, -1 if red did
+	 */
+	public int getFirstPlayer(){
+		return state.firstPlayer;
+	}
+
+	/**
+	 * @return the 0 based locations taken so far, in order
+	 */
+	public int[] getMoves(){
+		return Arrays.copyOf(state.moves, state.moveCount);
+	}
+
+	/**
+	 * @return a hash of the position and the turn that is the same for the board turned 180 degrees
+	 */
+	public long getCanonicalKey(){
+		long key = state.boardGame.getCanonicalHash();
+		return state.turn == -1 ? key ^ geometry.getTurnKey() : key;
+	}
+
+	/**
+	 * @return true if the canonical key is the hash of the turned board, not this one
+	 */
+	public boolean isCanonicalRotated(){
+		return state.boardGame.isCanonicalRotated();
+	}
+
+
+	/**
+	 * Plays a game like the default of RlEnv, timing the agent and the environment for TrainingMetrics. The reward
+	 * of the game is the winner, read straight from the state rather than through an NDArray per move.
+	 */
+	@Override
+	public float runEnvironment(RlAgent agent, boolean training) {
+		TrainingMetrics metrics = TrainingMetrics.get();
+		reset();
+		while (true) {
+			long start = System.nanoTime();
+			NDList action = agent.chooseAction(this, training);
+			metrics.record(TrainingMetrics.Phase.CHOOSE_ACTION, start);
+			start = System.nanoTime();
+			Step step = step(action, training);
+			metrics.record(TrainingMetrics.Phase.ENV_STEP, start);
+			if (step.isDone()) {
+				return state.getWinner();
+			}
+		}
+	}
 
 	/**
 	 * A single step in the training or implementation of the agent.
@@ -96,25 +206,43 @@ public class HexGame implements RlEnv {
 			System.out.println(Arrays.toString(state.boardGame.getBoardList()));
 		}
 
-		if (state.boardGame.getBoardList()[move]!=0){
+		int[] preBoard = state.boardGame.getBoardList();
+		if (preBoard[move]!=0){
 			throw new IllegalArgumentException("Attempted move is on an occupied space!");
 		}
-		State preState = new State(manager.newSubManager(), state.boardGame.getBoardList());
+		int preTurn = state.turn;
 
 		state.move(move);
+		if (connections && state.winner == 0){
+			state.winner = state.boardGame.getVirtualConnections().getWinner();
+		}
+		if (solver != null && state.winner == 0 && geometry.getCells() - state.moveCount <= solveBelow){
+			Proof proof = solver.solve(state.boardGame, -state.turn, solveMillis);
+			if (proof.isProven()){
+				state.winner = proof.getWinner();
+			}
+		}
 
 		if (DEBUG_STEP_MODE){
 			System.out.println("Moved. Now:");
 			System.out.println("board["+move+"]"+"="+ state.boardGame.getBoardList()[move]);
-			System.out.println("prestate["+move+"]"+"="+ preState.board[move]);
+			System.out.println("prestate["+move+"]"+"="+ preBoard[move]);
 		}
 
-		HexGameStep step = new HexGameStep(manager.newSubManager(), preState, state, action);
+		HexGameStep step = new HexGameStep(state.subMgr, preBoard, preTurn, move, state, action);
 		if (isTraining){
-			replayBuffer.addStep(step);
+			replayBuffer.addStep(preBoard, preTurn, move, state.getWinner(), step.isDone());
+		}
+		if (archive != null && step.isDone()){
+			archive.append(geometry.getRows(), geometry.getColumns(), state.firstPlayer, state.moves,
+					state.moveCount, state.getWinner());
 		}
 
 		stepCount++;
+		TrainingMetrics.get().countMove();
+		if (step.isDone()){
+			TrainingMetrics.get().countGame();
+		}
 		return step;
 	}
 
@@ -122,7 +250,20 @@ public class HexGame implements RlEnv {
 	@Override
 	public Step[] getBatch() {
 		Step[] tmp = replayBuffer.getBatch();
-		replayBuffer = new LruReplayBuffer(batchSize, bufferSize);
+		if (!sharedReplay){
+			replayBuffer.clear();
+		}
+		return tmp;
+	}
+
+	/**
+	 * Like getBatch, but the arrays of the steps are made in the arena, which the caller closes after training on them
+	 */
+	public Step[] getBatch(NDManager arena) {
+		Step[] tmp = replayBuffer.getBatch(arena);
+		if (!sharedReplay){
+			replayBuffer.clear();
+		}
 		return tmp;
 	}
 
@@ -131,10 +272,14 @@ public class HexGame implements RlEnv {
 		state = null;
 		if (DEBUG_GAME_MODE)
 			System.out.println("closing and resetting "+manager.getName());
-		replayBuffer = new LruReplayBuffer(batchSize, bufferSize);
+		if (!sharedReplay){
+			replayBuffer.close();
+			replayBuffer.clear();
+		}
 		manager.close();
 		manager = NDManager.newBaseManager();
 		manager.setName("HexGame Manager");
+		TrainingMetrics.get().watch(manager);
 	}
 
 	@Override
@@ -143,53 +288,87 @@ public class HexGame implements RlEnv {
 	}
 
 	/**
-	 * Two states for the neural net to compare.
+	 * Two states for the neural net to compare. The board before the move is kept as a plain list and the state
+	 * after the move is frozen at construction, so a step doesn't change as the game goes on. Its NDArrays are made
+	 * in the manager of the game, which is closed on the next reset.
 	 */
 	public class HexGameStep implements RlEnv.Step {
 		private final NDManager manager;
-		private final State preState;
-		private final State postState;
+		private final int[] preBoard;
+		private final int preTurn;
+		private final int move;
+		private final int[] postBoard;
+		private final int postTurn;
+		private final int winner;
 		private final NDList action;
 
-		private HexGameStep(NDManager manager, State preState, State postState, NDList action){
+		private HexGameStep(NDManager manager, int[] preBoard, int preTurn, int move, State postState, NDList action){
 			if (!manager.isOpen()){
 				throw new IllegalArgumentException("Hey! You're meant to be an opened manager. I want to speak with your manager.");
 			}
 			this.manager = manager;
-			this.manager.setName("HexGameStep Manager");
-			this.preState = preState;
-			this.postState = postState;
+			this.preBoard = preBoard;
+			this.preTurn = preTurn;
+			this.move = move;
+			this.postBoard = postState.boardGame.getBoardList();
+			this.postTurn = postState.turn;
+			this.winner = postState.getWinner();
 			this.action = action;
 		}
 
+		/**
+		 * @return the board list before the move
+		 */
+		public int[] getPreBoard() { return preBoard.clone(); }
+
+		/**
+		 * @return the player who moved last before the move, the move was made by the other one
+		 */
+		public int getPreTurn() { return preTurn; }
+
+		/**
+		 * @return the location that was taken
+		 */
+		public int getMove() { return move; }
+
+		/**
+		 * @return 1 if blue won with the move, -1 if red did, otherwise 0
+		 */
+		public int getWinner() { return winner; }
+
 		@Override
-		public NDList getPreObservation() { return preState.getObservation();}
+		public NDList getPreObservation() { return new NDList(manager.create(preBoard), manager.create(preTurn));}
 
 		@Override
 		public NDList getAction() { return action; }
 
 		@Override
-		public NDList getPostObservation() { return postState.getObservation();}
+		public NDList getPostObservation() { return new NDList(manager.create(postBoard), manager.create(postTurn));}
 
 		@Override
-		public ActionSpace getPostActionSpace() { return postState.getActionSpace();}
+		public ActionSpace getPostActionSpace() {
+			ActionSpace actionSpace = new ActionSpace();
+			for (int i = 0; i < postBoard.length; i++){
+				if (postBoard[i]==0){
+					actionSpace.add(new NDList(manager.create(i)));
+				}
+			}
+			return actionSpace;
+		}
 
 		@Override
 		public NDArray getReward() {
-			return manager.create((float) postState.getWinner()); } // reward is always 1 or 0
+			return manager.create((float) winner); } // reward is always 1 or 0
 
 		@Override
 		public boolean isDone() {
-			return postState.getWinner() != 0;
+			return winner != 0;
 		}
 
 		@Override
 		public void close() {
-			if (DEBUG_STEP_MODE)
-				System.out.println("closing! "+manager.getName());
-			preState.subMgr.close();
-			postState.subMgr.close();
-			manager.close(); }
+			// the arrays belong to the game's manager, which reset closes
+		}
 	}
 
 	private static final class State{
@@ -197,17 +376,15 @@ public class HexGame implements RlEnv {
 		private final PlayHex boardGame;
 		int turn;					// blue always starts
 		int winner;					// is set to either 1 or 2 if blue or red wins
-		private int[] board;		// the board list. Only exists for the preState State in the step.
+		int firstPlayer;			// the player who made the first move
+		private final int[] moves;	// the valid moves so far, for the archive
+		private int moveCount;
 		private NDManager subMgr;	// the sub manager for the State. Close after use!
 
-		private State(NDManager subMgr, int[] board){		// This constructor is only used for the preState
-			this.subMgr = subMgr;
-			this.board = board;
-			boardGame = null;
-		}
-		private State(NDManager subMgr, int rows, int columns) {
+		private State(NDManager subMgr, HexGeometry geometry) {
 			this.subMgr = subMgr;
-			this.boardGame = new PlayHex(rows, columns);
+			this.boardGame = new PlayHex(geometry);
+			this.moves = new int[geometry.getCells()];
 		}
 
 		/**
@@ -216,21 +393,22 @@ public class HexGame implements RlEnv {
 		private boolean move(int loc){
 			turn   = -turn;
 			this.winner = boardGame.setMove(loc, turn);
+			if (boardGame.wasValid()){
+				moves[moveCount++] = loc;
+			}
 			return boardGame.wasValid();
 		}
 
 		private NDList getObservation(){
-			if (board==null){
-				board = boardGame.getBoardList();
-			}
-			return new NDList(subMgr.create(board), subMgr.create(turn));
+			return new NDList(subMgr.create(boardGame.getBoardList()), subMgr.create(turn));
 		}
 
 		// memory leak is here? something with the manager not closing when called from HexGame getActionSpace?
 		private ActionSpace getActionSpace(){
 			ActionSpace actionSpace = new ActionSpace();
-			for (int i = 0; i < boardGame.getBoardList().length; i++) {
-				if (boardGame.getBoardList()[i]==0){
+			int[] board = boardGame.getBoardList();
+			for (int i = 0; i < board.length; i++) {
+				if (board[i]==0){
 					actionSpace.add(new NDList(subMgr.create(i)));
 				}
 			}
@@ -0,0 +1,285 @@
+package env;
+
+import ai.djl.modality.rl.ActionSpace;
+import ai.djl.modality.rl.ReplayBuffer;
+import ai.djl.modality.rl.env.RlEnv;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import util.TrainingMetrics;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * A replay buffer that keeps its steps packed in one block of direct memory instead of as NDArrays.
+ *
+ * A step of Hex is fully described by the board before the move, the player who moved last, the location taken,
+ * the reward and whether the game ended. The board after the move is the same board with the action filled in by
+ * the other player. Each cell takes 2 bits, so a step of an 8x8 game is 24 bytes.
+ *
+ * The buffer is a ring: once it is full the oldest step is overwritten. NDArrays are only made for the steps
+ * getBatch returns, in one manager that is closed by the next getBatch, or in a manager the caller passes in and
+ * closes itself. The buffer doesn't hang off any other manager, so it can outlive the games that fill it.
+ */
+public class PackedReplayBuffer implements ReplayBuffer, AutoCloseable {
+	// layout of a record after the packed board
+	private static final int ACTION = 0;		// short
+	private static final int TURN = 2;			// byte, the player who moved last before the step
+	private static final int REWARD = 3;		// float
+	private static final int DONE = 7;			// byte
+	private static final int TAIL = 8;
+
+	private final int cells;
+	private final int batchSize;
+	private final int capacity;
+	private final int boardBytes;
+	private final int recordBytes;
+	private final ByteBuffer store;
+	protected final Random rnd = new Random();
+
+	private int size;			// the number of steps held
+	private int next;			// the record the next step is written to
+	private NDManager batchManager;
+
+	/**
+	 * @param cells the number of cells of the board, rows*columns
+	 * @param batchSize the number of steps getBatch returns
+	 * @param capacity the most steps to hold
+	 */
+	public PackedReplayBuffer(int cells, int batchSize, int capacity) {
+		this.cells = cells;
+		this.batchSize = batchSize;
+		this.capacity = Math.max(1, capacity);
+		this.boardBytes = (cells + 3) / 4;
+		this.recordBytes = boardBytes + TAIL;
+		if ((long) this.capacity * recordBytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("A replay buffer of " + capacity + " steps doesn't fit in one buffer");
+		}
+		store = ByteBuffer.allocateDirect(this.capacity * recordBytes);
+	}
+
+	/**
+	 * Packs a step into the buffer
+	 * @param preBoard the board list before the move
+	 * @param preTurn the player who moved last before the move, the move was made by -preTurn
+	 * @param action the location taken
+	 */
+	public void addStep(int[] preBoard, int preTurn, int action, float reward, boolean done) {
+		write(preBoard, preTurn, action, reward, done);
+	}
+
+	/**
+	 * Packs a step over the oldest one once the buffer is full
+	 * @return the record the step was written to
+	 */
+	protected int write(int[] preBoard, int preTurn, int action, float reward, boolean done) {
+		if (preBoard.length != cells) {
+			throw new IllegalArgumentException("Expected a board of " + cells + " cells, not " + preBoard.length);
+		}
+		int record = next;
+		int base = record * recordBytes;
+		for (int i = 0; i < boardBytes; i++) {
+			int packed = 0;
+			for (int j = 0; j < 4 && i * 4 + j < cells; j++) {
+				packed |= encode(preBoard[i * 4 + j]) << (2 * j);
+			}
+			store.put(base + i, (byte) packed);
+		}
+		base += boardBytes;
+		store.putShort(base + ACTION, (short) action);
+		store.put(base + TURN, (byte) preTurn);
+		store.putFloat(base + REWARD, reward);
+		store.put(base + DONE, (byte) (done ? 1 : 0));
+
+		next = (next + 1) % capacity;
+		size = Math.min(size + 1, capacity);
+		return record;
+	}
+
+	/**
+	 * Packs any step with the observations of HexGame, reading its NDArrays once
+	 */
+	@Override
+	public void addStep(RlEnv.Step step) {
+		NDList pre = step.getPreObservation();
+		addStep(pre.get(0).toIntArray(), pre.get(1).getInt(), step.getAction().singletonOrThrow().getInt(),
+				step.getReward().getFloat(), step.isDone());
+	}
+
+	/**
+	 * @return batchSize steps picked at random, they can be used until the next call
+	 */
+	@Override
+	public RlEnv.Step[] getBatch() {
+		return getBatch(newBatchManager());
+	}
+
+	/**
+	 * @param manager the arena to make the arrays of the steps in, they can be used until the caller closes it
+	 * @return batchSize steps picked at random
+	 */
+	public RlEnv.Step[] getBatch(NDManager manager) {
+		if (size == 0) {
+			return new RlEnv.Step[0];
+		}
+		RlEnv.Step[] batch = new RlEnv.Step[batchSize];
+		for (int i = 0; i < batchSize; i++) {
+			batch[i] = readRecord(record(rnd.nextInt(size)), manager);
+		}
+		return batch;
+	}
+
+	/**
+	 * Closes the manager of the last batch and opens one for the next
+	 */
+	protected NDManager newBatchManager() {
+		if (batchManager != null) {
+			batchManager.close();
+		}
+		batchManager = NDManager.newBaseManager();
+		TrainingMetrics.get().watch(batchManager);
+		return batchManager;
+	}
+
+	/**
+	 * @param index 0 for the oldest step held, up to size()-1 for the newest
+	 * @return the record the step is stored in
+	 */
+	protected int record(int index) {
+		return size < capacity ? index : (next + index) % capacity;
+	}
+
+	/**
+	 * Unpacks the step stored in a record
+	 * @param stepManager the manager the step makes its NDArrays in
+	 */
+	protected PackedStep readRecord(int record, NDManager stepManager) {
+		int base = record * recordBytes;
+		int[] preBoard = new int[cells];
+		for (int i = 0; i < cells; i++) {
+			preBoard[i] = decode((store.get(base + i / 4) >>> (2 * (i % 4))) & 0x3);
+		}
+		base += boardBytes;
+		return new PackedStep(stepManager, record, preBoard, store.get(base + TURN), store.getShort(base + ACTION),
+				store.getFloat(base + REWARD), store.get(base + DONE) != 0);
+	}
+
+	/**
+	 * Drops every step, the memory is kept for the next ones
+	 */
+	public void clear() {
+		size = 0;
+		next = 0;
+	}
+
+	public int size() { return size; }
+
+	public int getCapacity() { return capacity; }
+
+	public int getBytesPerStep() { return recordBytes; }
+
+	@Override
+	public void close() {
+		if (batchManager != null) {
+			batchManager.close();
+			batchManager = null;
+		}
+	}
+
+	private static int encode(int cell) {
+		return cell == 1 ? 1 : cell == -1 ? 2 : 0;
+	}
+
+	private static int decode(int bits) {
+		return bits == 1 ? 1 : bits == 2 ? -1 : 0;
+	}
+
+	/**
+	 * A step unpacked from the buffer, its NDArrays are made on first use
+	 */
+	public static final class PackedStep implements RlEnv.Step {
+		private final NDManager manager;
+		private final int record;
+		float weight = 1;			// the importance sampling weight, only a prioritized buffer sets it
+		int serial;					// which write of the record this step came from, for a prioritized buffer
+		final int[] preBoard;
+		final int preTurn;
+		final int action;
+		final float reward;
+		final boolean done;
+
+		private PackedStep(NDManager manager, int record, int[] preBoard, int preTurn, int action, float reward,
+						   boolean done) {
+			this.manager = manager;
+			this.record = record;
+			this.preBoard = preBoard;
+			this.preTurn = preTurn;
+			this.action = action;
+			this.reward = reward;
+			this.done = done;
+		}
+
+		/**
+		 * @return the record of the buffer the step was read from
+		 */
+		public int getRecord() {
+			return record;
+		}
+
+		/**
+		 * @return how much the loss of this step should count, 1 unless the buffer samples by priority
+		 */
+		public float getWeight() {
+			return weight;
+		}
+
+		private int[] postBoard() {
+			int[] board = preBoard.clone();
+			board[action] = -preTurn;
+			return board;
+		}
+
+		@Override
+		public NDList getPreObservation() {
+			return new NDList(manager.create(preBoard), manager.create(preTurn));
+		}
+
+		@Override
+		public NDList getAction() {
+			return new NDList(manager.create(action));
+		}
+
+		@Override
+		public NDList getPostObservation() {
+			return new NDList(manager.create(postBoard()), manager.create(-preTurn));
+		}
+
+		@Override
+		public ActionSpace getPostActionSpace() {
+			int[] board = postBoard();
+			ActionSpace actionSpace = new ActionSpace();
+			for (int i = 0; i < board.length; i++) {
+				if (board[i] == 0) {
+					actionSpace.add(new NDList(manager.create(i)));
+				}
+			}
+			return actionSpace;
+		}
+
+		@Override
+		public NDArray getReward() {
+			return manager.create(reward);
+		}
+
+		@Override
+		public boolean isDone() {
+			return done;
+		}
+
+		@Override
+		public void close() {
+			// the arrays belong to the batch, which the buffer closes
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package env;
+
+import ai.djl.modality.rl.env.RlEnv;
+import ai.djl.ndarray.NDManager;
+
+/**
+ * A PackedReplayBuffer that samples steps in proportion to how badly the network predicted them last time, so the
+ * surprising moves of a game get trained on more than the hundreds of dull ones.
+ *
+ * A step is picked with probability p^alpha / sum(p^alpha), where p is its last absolute TD error plus a small
+ * epsilon. New steps get the highest priority seen so far, so every step is trained on at least about once. Because
+ * sampling by priority skews the data, every sampled step carries the importance sampling weight
+ * (size * P(step))^-beta, divided by the largest weight of the batch, to scale its loss with.
+ *
+ * Unlike the buffer HexGame makes for itself, this one is meant to be kept for the whole training run.
+ */
+public class PrioritizedReplayBuffer extends PackedReplayBuffer {
+	private static final double EPSILON = 1e-3;
+
+	private final int batchSize;
+	private final float alpha;
+	private volatile float beta;
+	private final SumTree tree;
+	private final int[] serials;		// how often every record has been written, to skip updates of overwritten steps
+	private double maxPriority = 1;
+
+	/**
+	 * @param cells the number of cells of the board, rows*columns
+	 * @param batchSize the number of steps getBatch returns
+	 * @param capacity the most steps to hold
+	 * @param alpha how much the priorities count, 0 samples uniformly
+	 * @param beta the importance sampling exponent, 1 fully undoes the skew of the sampling
+	 */
+	public PrioritizedReplayBuffer(int cells, int batchSize, int capacity, float alpha, float beta) {
+		super(cells, batchSize, capacity);
+		this.batchSize = batchSize;
+		this.alpha = alpha;
+		this.beta = beta;
+		tree = new SumTree(getCapacity());
+		serials = new int[getCapacity()];
+	}
+
+	@Override
+	protected int write(int[] preBoard, int preTurn, int action, float reward, boolean done) {
+		int record = super.write(preBoard, preTurn, action, reward, done);
+		serials[record]++;
+		tree.set(record, maxPriority);
+		return record;
+	}
+
+	@Override
+	protected PackedStep readRecord(int record, NDManager stepManager) {
+		PackedStep step = super.readRecord(record, stepManager);
+		step.serial = serials[record];
+		return step;
+	}
+
+	/**
+	 * @return batchSize steps picked by priority, one from each of batchSize equal slices of the total. They carry
+	 * their importance sampling weight and can be used until the manager is closed.
+	 */
+	@Override
+	public RlEnv.Step[] getBatch(NDManager manager) {
+		if (size() == 0) {
+			return new RlEnv.Step[0];
+		}
+		double total = tree.total();
+		double slice = total / batchSize;
+		PackedStep[] batch = new PackedStep[batchSize];
+		float maxWeight = 0;
+		for (int i = 0; i < batchSize; i++) {
+			int record = tree.find(slice * (i + rnd.nextDouble()));
+			if (tree.get(record) <= 0) {
+				record = record(rnd.nextInt(size()));			// only rounding at the very end of the tree gets here
+			}
+			PackedStep step = readRecord(record, manager);
+			step.weight = (float) Math.pow(size() * tree.get(record) / total, -beta);
+			maxWeight = Math.max(maxWeight, step.weight);
+			batch[i] = step;
+		}
+		for (PackedStep step : batch) {
+			step.weight /= maxWeight;
+		}
+		return batch;
+	}
+
+	/**
+	 * Sets the priorities of the steps of the last batch from their new TD errors
+	 * @param steps the batch getBatch returned
+	 * @param errors the TD error of every step, in the same order
+	 */
+	public void updatePriorities(RlEnv.Step[] steps, float[] errors) {
+		for (int i = 0; i < steps.length; i++) {
+			PackedStep step = (PackedStep) steps[i];
+			int record = step.getRecord();
+			if (serials[record] != step.serial) {
+				continue;				// the step was overwritten since it was sampled
+			}
+			double priority = Math.pow(Math.abs(errors[i]) + EPSILON, alpha);
+			maxPriority = Math.max(maxPriority, priority);
+			tree.set(record, priority);
+		}
+	}
+
+	/**
+	 * Lets the importance sampling exponent be raised towards 1 as training goes on
+	 */
+	public void setBeta(float beta) {
+		this.beta = beta;
+	}
+
+	public float getBeta() { return beta; }
+
+	double getPriority(int record) { return tree.get(record); }
+
+	public float getAlpha() { return alpha; }
+
+	@Override
+	public void clear() {
+		super.clear();
+		tree.clear();
+		maxPriority = 1;
+	}
+}
@@ -0,0 +1,63 @@
+package env;
+
+import java.util.Arrays;
+
+/**
+ * A binary tree over an array of priorities where every node holds the sum of its children, so that both changing a
+ * priority and finding the leaf a running sum falls in take O(log n).
+ *
+ * The leaves are rounded up to a power of two and kept at the back of one array, the root is node 1.
+ */
+final class SumTree {
+	private final double[] sums;
+	private final int leaves;
+	private final int size;
+
+	/**
+	 * @param size the number of priorities, they all start at 0
+	 */
+	SumTree(int size) {
+		this.size = size;
+		leaves = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+		sums = new double[2 * leaves];
+	}
+
+	void set(int index, double priority) {
+		int node = leaves + index;
+		double change = priority - sums[node];
+		while (node > 0) {
+			sums[node] += change;
+			node >>>= 1;
+		}
+	}
+
+	double get(int index) {
+		return sums[leaves + index];
+	}
+
+	double total() {
+		return sums[1];
+	}
+
+	/**
+	 * @param prefix a value from 0 to total()
+	 * @return the index whose priority covers prefix when the priorities are laid end to end
+	 */
+	int find(double prefix) {
+		int node = 1;
+		while (node < leaves) {
+			int left = 2 * node;
+			if (prefix < sums[left] || sums[left + 1] <= 0) {
+				node = left;
+			} else {
+				prefix -= sums[left];
+				node = left + 1;
+			}
+		}
+		return Math.min(node - leaves, size - 1);
+	}
+
+	void clear() {
+		Arrays.fill(sums, 0);
+	}
+}
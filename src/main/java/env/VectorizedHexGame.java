@@ -0,0 +1,304 @@
+package env;
+
+import ai.djl.modality.rl.env.RlEnv;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.training.Trainer;
+import game.HexGeometry;
+import game.PlayHex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * N independent games of Hex that move in lockstep, so that one forward pass picks the moves of all of them.
+ *
+ * HexGame is an RlEnv for one game, so an agent calls the network once per move. Here the observation is one
+ * (N, rows*columns) board batch and one (N) turn vector, step takes one action per game, and chooseActions scores
+ * every legal move of every game in a single forward pass. A game that is won is reset straight away with a random
+ * starting player, and the steps it took go to the replay buffer all at once.
+ *
+ * The games are kept as plain PlayHex boards and int arrays and the steps are packed into a PackedReplayBuffer, so
+ * the only NDArrays are the observation, which lives until the next step, the scores of chooseActions and the sampled
+ * batches. Stepping alone never touches the manager.
+ */
+public class VectorizedHexGame implements AutoCloseable {
+	private final NDManager manager;
+	private final HexGeometry geometry;
+	private final int games;
+	private final int cells;
+	private final PackedReplayBuffer replayBuffer;
+	private final Random rnd = new Random();
+
+	private final PlayHex[] boards;
+	private final int[] turns;						// the player who moved last in every game, like HexGame.State.turn
+	private final List<List<GameStep>> pending;		// the steps of the running game of every slot
+	private NDManager observationManager;			// made by the first getObservation after a step
+
+	private long stepCount;
+	private long finishedGames;
+	private long blueWins;
+
+	/**
+	 * @param manager the manager to make the observations and the sampled batches in
+	 * @param games the number of games to run side by side
+	 * @param batchSize the number of steps to train on per batch
+	 * @param replayBufferSize the number of steps to hold in the buffer
+	 */
+	public VectorizedHexGame(NDManager manager, int games, int batchSize, int replayBufferSize, int rows, int columns) {
+		if (games < 1) {
+			throw new IllegalArgumentException("Need at least one game");
+		}
+		this.manager = manager;
+		this.geometry = HexGeometry.of(rows, columns);
+		this.games = games;
+		this.cells = geometry.getCells();
+		this.replayBuffer = new PackedReplayBuffer(cells, batchSize, replayBufferSize);
+		boards = new PlayHex[games];
+		turns = new int[games];
+		pending = new ArrayList<>(games);
+		for (int i = 0; i < games; i++) {
+			pending.add(new ArrayList<>());
+			reset(i);
+		}
+	}
+
+	/**
+	 * Starts every game over, the steps of unfinished games are dropped
+	 */
+	public void reset() {
+		for (int i = 0; i < games; i++) {
+			pending.get(i).clear();
+			reset(i);
+		}
+	}
+
+	private void reset(int game) {
+		boards[game] = new PlayHex(geometry);
+		turns[game] = -1 + 2 * rnd.nextInt(2);		// a random -1 or 1, like HexGame.reset
+	}
+
+	/**
+	 * @return the boards (N, rows*columns) and the turns (N). They are closed by the next step.
+	 */
+	public NDList getObservation() {
+		if (observationManager == null) {
+			observationManager = manager.newSubManager();
+		}
+		return new NDList(
+				observationManager.create(getBoards(), new Shape(games, cells)),
+				observationManager.create(turns.clone()));
+	}
+
+	/**
+	 * @return every board one after the other, as given by PlayHex.getBoardList
+	 */
+	public int[] getBoards() {
+		int[] all = new int[games * cells];
+		for (int i = 0; i < games; i++) {
+			System.arraycopy(boards[i].getBoardList(), 0, all, i * cells, cells);
+		}
+		return all;
+	}
+
+	/**
+	 * @return the player who moved last in every game, the player to move is the other one
+	 */
+	public int[] getTurns() {
+		return turns.clone();
+	}
+
+	/**
+	 * @return the empty locations of one game
+	 */
+	public int[] getLegalMoves(int game) {
+		PlayHex board = boards[game];
+		int[] moves = new int[cells - board.getMoveCount()];
+		int count = 0;
+		for (int location = 0; location < cells; location++) {
+			if (board.getCell(location) == 0) {
+				moves[count++] = location;
+			}
+		}
+		return moves;
+	}
+
+	/**
+	 * Picks a move for every game the way an EpsilonGreedy QAgent would, but with one forward pass for all of them
+	 * @param trainer the trainer of a network with the inputs of TrainHexGame.getBlock()
+	 * @param exploreRate the chance of a random move instead of the best scored one
+	 */
+	public int[] chooseActions(Trainer trainer, float exploreRate) {
+		int[] actions = new int[games];
+		int[][] legal = new int[games][];
+		int rowCount = 0;
+		for (int i = 0; i < games; i++) {
+			legal[i] = getLegalMoves(i);
+			if (rnd.nextFloat() < exploreRate) {
+				actions[i] = legal[i][rnd.nextInt(legal[i].length)];
+				legal[i] = null;
+			} else {
+				rowCount += legal[i].length;
+			}
+		}
+		if (rowCount == 0) {
+			return actions;
+		}
+
+		int[] boardRows = new int[rowCount * cells];
+		int[] turnRows = new int[rowCount];
+		int[] actionRows = new int[rowCount];
+		int row = 0;
+		for (int i = 0; i < games; i++) {
+			if (legal[i] == null) continue;
+			int[] board = boards[i].getBoardList();
+			for (int action : legal[i]) {
+				System.arraycopy(board, 0, boardRows, row * cells, cells);
+				turnRows[row] = turns[i];
+				actionRows[row] = action;
+				row++;
+			}
+		}
+
+		float[] scores;
+		try (NDManager batchManager = manager.newSubManager()) {
+			NDList inputs = new NDList(
+					batchManager.create(boardRows, new Shape(rowCount, cells)),
+					batchManager.create(turnRows),
+					batchManager.create(actionRows));
+			scores = trainer.evaluate(inputs).singletonOrThrow().toFloatArray();
+		}
+
+		row = 0;
+		for (int i = 0; i < games; i++) {
+			if (legal[i] == null) continue;
+			int best = row;
+			for (int j = row; j < row + legal[i].length; j++) {
+				if (scores[j] > scores[best]) {
+					best = j;
+				}
+			}
+			actions[i] = actionRows[best];
+			row += legal[i].length;
+		}
+		return actions;
+	}
+
+	/**
+	 * Moves every game one step
+	 * @param actions the location to take in every game
+	 * @param isTraining if finished games should add their steps to the replay buffer
+	 * @return the winner of every game that ended on this step, 1 for blue, -1 for red and 0 if it goes on.
+	 * Those games have already been reset.
+	 */
+	public int[] step(int[] actions, boolean isTraining) {
+		if (actions.length != games) {
+			throw new IllegalArgumentException("Expected " + games + " actions, not " + actions.length);
+		}
+		if (observationManager != null) {
+			observationManager.close();
+			observationManager = null;
+		}
+
+		int[] winners = new int[games];
+		for (int i = 0; i < games; i++) {
+			PlayHex board = boards[i];
+			int move = actions[i];
+			if (board.getCell(move) != 0) {
+				throw new IllegalArgumentException("Attempted move of game " + i + " is on an occupied space!");
+			}
+			int[] preBoard = board.getBoardList();
+			int preTurn = turns[i];
+			turns[i] = -turns[i];
+			int winner = board.setMove(move, turns[i]);
+			pending.get(i).add(new GameStep(preBoard, preTurn, move, winner));
+
+			if (winner != 0) {
+				winners[i] = winner;
+				finish(i, isTraining);
+				finishedGames++;
+				if (winner == 1) {
+					blueWins++;
+				}
+			}
+		}
+		stepCount += games;
+		return winners;
+	}
+
+	/**
+	 * Moves every game one step, with the actions as an (N) array
+	 */
+	public int[] step(NDArray actions, boolean isTraining) {
+		return step(actions.toIntArray(), isTraining);
+	}
+
+	private void finish(int game, boolean isTraining) {
+		List<GameStep> steps = pending.get(game);
+		if (isTraining) {
+			for (GameStep step : steps) {
+				replayBuffer.addStep(step.preBoard, step.preTurn, step.action, step.winner, step.winner != 0);
+			}
+		}
+		steps.clear();
+		reset(game);
+	}
+
+	public RlEnv.Step[] getBatch() {
+		return replayBuffer.getBatch();
+	}
+
+	PackedReplayBuffer getReplayBuffer() {
+		return replayBuffer;
+	}
+
+	public int getGames() { return games; }
+
+	public HexGeometry getGeometry() { return geometry; }
+
+	/**
+	 * @return the moves made so far over all games
+	 */
+	public long getStepCount() { return stepCount; }
+
+	public long getFinishedGames() { return finishedGames; }
+
+	/**
+	 * @return the share of finished games blue won
+	 */
+	public float getBlueWinRate() {
+		return finishedGames == 0 ? 0 : blueWins / (float) finishedGames;
+	}
+
+	public String toString(int game) {
+		return boards[game].toString();
+	}
+
+	@Override
+	public void close() {
+		if (observationManager != null) {
+			observationManager.close();
+		}
+		replayBuffer.close();
+	}
+
+	/**
+	 * One move of one game, kept until the game ends
+	 */
+	private static final class GameStep {
+		private final int[] preBoard;
+		private final int preTurn;
+		private final int action;
+		private final int winner;
+
+		private GameStep(int[] preBoard, int preTurn, int action, int winner) {
+			this.preBoard = preBoard;
+			this.preTurn = preTurn;
+			this.action = action;
+			this.winner = winner;
+		}
+	}
+}
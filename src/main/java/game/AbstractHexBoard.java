@@ -0,0 +1,187 @@
+package game; /**
+ * Everything the different Hex board backends have in common. A backend only has to know how to store the pieces
+ * and how to tell if the player who just moved has connected their two borders.
+ *
+ * Locations are numbered from 1 to rows*columns, the same as in HexBoard.
+ */
+abstract class AbstractHexBoard {
+
+    public boolean wasValid;
+
+    protected final HexGeometry geometry;
+    protected final int rows;
+    protected final int columns;
+    protected final int punishRate;
+
+    private final int[] moves;      // every valid move in the order it was made, so that they can be undone
+    private int moveCount;
+    private long hash;              // zobrist hash of the pieces
+    private long rotatedHash;       // zobrist hash of the pieces with the board turned 180 degrees
+    private VirtualConnections connections;     // told about every move, if anything tracks them
+
+    protected AbstractHexBoard(HexGeometry geometry, int punishRate){
+        this.geometry = geometry;
+        this.rows = geometry.getRows();
+        this.columns = geometry.getColumns();
+        this.punishRate = punishRate;
+        moves = new int[geometry.getCells()];
+    }
+
+    /**
+     * Allows to set the board and refreshes the connectivity for the set tile
+     * @return returns 1 if blue won, -1 if red won, punishRate if the move was invalid,
+     * otherwise, returns 0 if the move was recorded and valid
+     */
+    public int setBoard(int loc, int player){
+        if (getCell(loc)!=0){
+            wasValid = false;
+            return punishRate;
+        }
+        wasValid = true;
+        moves[moveCount++] = loc;
+        hash ^= geometry.key(loc, player);
+        rotatedHash ^= geometry.key(geometry.rotate(loc), player);
+
+        if (connections != null){
+            connections.place(loc, player);
+        }
+        int winGameReward = 1;
+        if (place(loc, player)){
+            return player * winGameReward;
+        }
+        return 0;
+    }
+
+    /**
+     * Takes back the last valid move
+     * @return the location of the move that was taken back
+     */
+    public int undo(){
+        if (moveCount == 0){
+            throw new IllegalStateException("There is no move to undo");
+        }
+        int loc = moves[--moveCount];
+        int player = getCell(loc);
+        hash ^= geometry.key(loc, player);
+        rotatedHash ^= geometry.key(geometry.rotate(loc), player);
+        remove(loc, player);
+        if (connections != null){
+            connections.remove(loc);
+        }
+        return loc;
+    }
+
+    /**
+     * Starts telling connections about every move and undo, after it is told about the pieces already on the board
+     */
+    public void setConnections(VirtualConnections connections){
+        for (int loc = 1; loc <= rows * columns; loc++){
+            if (getCell(loc) != 0){
+                connections.place(loc, getCell(loc));
+            }
+        }
+        this.connections = connections;
+    }
+
+    public VirtualConnections getConnections(){
+        return connections;
+    }
+
+    /**
+     * @return the number of valid moves made so far
+     */
+    public int getMoveCount(){
+        return moveCount;
+    }
+
+    /**
+     * @return the location of valid move number i, counting from 0
+     */
+    public int getMove(int i){
+        if (i < 0 || i >= moveCount){
+            throw new IndexOutOfBoundsException("Move " + i + " of " + moveCount);
+        }
+        return moves[i];
+    }
+
+    /**
+     * @return the zobrist hash of the pieces on the board, kept up to date by setBoard and undo
+     */
+    public long getHash(){
+        return hash;
+    }
+
+    /**
+     * @return the hash of the board turned 180 degrees, this is the same position for both players
+     */
+    public long getRotatedHash(){
+        return rotatedHash;
+    }
+
+    public HexGeometry getGeometry(){
+        return geometry;
+    }
+
+    /**
+     * @return 0 if loc is empty, 1 if it is blue and -1 if it is red
+     */
+    public abstract int getCell(int loc);
+
+    /**
+     * Puts the piece of player on the empty location loc
+     * @return true if player has now connected their two borders
+     */
+    protected abstract boolean place(int loc, int player);
+
+    /**
+     * Takes the piece of player off loc, this is only ever called on the last piece that was placed
+     */
+    protected abstract void remove(int loc, int player);
+
+    /**
+     * @return a copy of the board, index 0 is location 1
+     */
+    public int[] getBoardList(){
+        int[] out = new int[rows * columns];
+        for (int i = 0; i < out.length; i++){
+            out[i] = getCell(i + 1);
+        }
+        return out;
+    }
+
+    /**
+     * Use this to print the board. Uses colors!
+     * @return The string representation of the board
+     */
+    public String toString(){
+        String outStr = "";
+        for (int j = 0; j < rows; j++){
+            for (int i = 0; i < columns; i++){
+                outStr += hexSquare(columns * j + i +1) + " ";
+            }
+            outStr+="\n";
+            for (int k = 0; k < j+1; k++){
+                outStr+=" ";
+            }
+        }
+        return outStr;
+    }
+
+    private String hexSquare(int location){
+        boolean shouldColor = true;
+        int cell = getCell(location);
+        if (cell==0){
+            return "" + 0;
+        }
+        else if (cell==1){
+            if (shouldColor)
+                return "\u001B[34m" + "B" + "\u001B[0m";
+            else return "B";
+        } else {
+            if (shouldColor)
+                return "\u001B[31m" + "R" + "\u001B[0m";
+            else
+                return "R";
+        }
+    }
+}
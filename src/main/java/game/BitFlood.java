@@ -0,0 +1,119 @@
+package game;
+
+/**
+ * A bit parallel flood fill over the long[] bitboards of one board size. Every step grows the flooded cells by all
+ * their neighbors at once using the shifts and column masks of HexGeometry, so a group is found in as many steps as
+ * it is long rather than one step per cell.
+ *
+ * It keeps its scratch arrays between calls, so use one per board or per thread.
+ */
+final class BitFlood {
+    private final HexGeometry geometry;
+    private final long[] flood;
+    private final long[] next;
+    private final long[] shifted;
+
+    BitFlood(HexGeometry geometry){
+        if (geometry.getColumns() < 2 || geometry.getColumns() > 63){
+            throw new IllegalArgumentException("The shifts need between 2 and 63 columns, not " + geometry.getColumns());
+        }
+        this.geometry = geometry;
+        flood = new long[geometry.words];
+        next = new long[geometry.words];
+        shifted = new long[geometry.words];
+    }
+
+    /**
+     * Floods from the whole first border of player through the pieces, and checks if it reaches the second border
+     */
+    boolean connectsBorders(long[] pieces, int player){
+        long[] firstBorder = geometry.firstBorder(player);
+        for (int i = 0; i < flood.length; i++){
+            flood[i] = pieces[i] & firstBorder[i];
+        }
+        fill(pieces);
+        return intersects(flood, geometry.secondBorder(player));
+    }
+
+    /**
+     * Grows flood through the pieces until it stops changing
+     */
+    private void fill(long[] pieces){
+        boolean changed = true;
+        while (changed){
+            neighbors(flood, next);
+            changed = false;
+            for (int i = 0; i < flood.length; i++){
+                long word = (flood[i] | next[i]) & pieces[i];
+                if (word != flood[i]){
+                    flood[i] = word;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every cell next to one of the cells in bits into out
+     */
+    private void neighbors(long[] bits, long[] out){
+        int columns = geometry.getColumns();
+        shiftUp(bits, 1, out);
+        and(out, geometry.notLeftColumn);                      // right
+        orShiftDown(bits, 1, geometry.notRightColumn, out);    // left
+        orShiftUp(bits, columns, null, out);                // down right
+        orShiftDown(bits, columns, null, out);              // up left
+        orShiftDown(bits, columns - 1, geometry.notLeftColumn, out);   // up right
+        orShiftUp(bits, columns - 1, geometry.notRightColumn, out);    // down left
+    }
+
+    private void orShiftUp(long[] bits, int n, long[] mask, long[] out){
+        shiftUp(bits, n, shifted);
+        orMasked(shifted, mask, out);
+    }
+
+    private void orShiftDown(long[] bits, int n, long[] mask, long[] out){
+        shiftDown(bits, n, shifted);
+        orMasked(shifted, mask, out);
+    }
+
+    /**
+     * Moves every bit n places towards the higher locations, 0 < n < 64
+     */
+    private static void shiftUp(long[] bits, int n, long[] out){
+        for (int i = bits.length - 1; i > 0; i--){
+            out[i] = (bits[i] << n) | (bits[i - 1] >>> (64 - n));
+        }
+        out[0] = bits[0] << n;
+    }
+
+    /**
+     * Moves every bit n places towards the lower locations, 0 < n < 64
+     */
+    private static void shiftDown(long[] bits, int n, long[] out){
+        int last = bits.length - 1;
+        for (int i = 0; i < last; i++){
+            out[i] = (bits[i] >>> n) | (bits[i + 1] << (64 - n));
+        }
+        out[last] = bits[last] >>> n;
+    }
+
+    private static void orMasked(long[] bits, long[] mask, long[] out){
+        for (int i = 0; i < out.length; i++){
+            out[i] |= mask == null ? bits[i] : bits[i] & mask[i];
+        }
+    }
+
+    private static void and(long[] bits, long[] mask){
+        for (int i = 0; i < bits.length; i++){
+            bits[i] &= mask[i];
+        }
+    }
+
+    private static boolean intersects(long[] one, long[] two){
+        for (int i = 0; i < one.length; i++){
+            if ((one[i] & two[i]) != 0) return true;
+        }
+        return false;
+    }
+}
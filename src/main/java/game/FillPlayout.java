@@ -0,0 +1,196 @@
+package game; /**
+ * Random playouts that fill the whole board at once.
+ *
+ * A full Hex board always has exactly one winner, so a random game doesn't have to be played move by move, checking
+ * for a win every time. Dealing the empty locations out at random, half to each player, gives the same final boards
+ * as playing random moves to the end. Then one flood fill from blue's left border tells who won: if blue doesn't
+ * reach the right border, red connected top to bottom.
+ *
+ * Each thread keeps its own worker with a random number generator and scratch bitboards, so a playout never
+ * allocates or locks.
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FillPlayout implements AutoCloseable {
+    private final int threads;
+    private final ExecutorService pool;
+    private final ThreadLocal<Worker> workers = new ThreadLocal<>();
+
+    /**
+     * @param threads the number of threads run splits its playouts over
+     */
+    public FillPlayout(int threads){
+        this.threads = threads;
+        AtomicInteger count = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "fill-playout-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs one playout on the calling thread, this is what a search rollout wants
+     * @param player the player to move
+     * @return the winner, 1 for blue and -1 for red
+     */
+    public int playout(PlayHex game, int player){
+        Worker worker = worker(game.getGeometry());
+        worker.load(game, player);
+        return worker.play(null) ? 1 : -1;
+    }
+
+    /**
+     * Runs the playouts split over all threads
+     * @param player the player to move
+     */
+    public PlayoutStats run(PlayHex game, int player, int playouts){
+        HexGeometry geometry = game.getGeometry();
+        int[] board = game.getBoardList();
+        List<Future<PlayoutStats>> parts = new ArrayList<>();
+        for (int i = 0; i < threads; i++){
+            int share = playouts / threads + (i < playouts % threads ? 1 : 0);
+            parts.add(pool.submit(() -> {
+                Worker worker = worker(geometry);
+                worker.load(game, player);          // the game isn't changed until every part is done
+                PlayoutStats stats = new PlayoutStats(board);
+                for (int j = 0; j < share; j++){
+                    worker.play(stats);
+                }
+                return stats;
+            }));
+        }
+
+        PlayoutStats total = new PlayoutStats(board);
+        for (Future<PlayoutStats> part : parts){
+            try {
+                total.add(part.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Playouts were interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Playout thread failed", e.getCause());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * A cheap opponent: the empty location that player won most often with in the playouts
+     * @return the location to play, or -1 if the board is full
+     */
+    public int bestMove(PlayHex game, int player, int playouts){
+        PlayoutStats stats = run(game, player, playouts);
+        int best = -1;
+        float bestRate = -1;
+        for (int location = 0; location < game.maxMoves; location++){
+            if (game.getCell(location) != 0) continue;
+            float rate = stats.getWinRateWhenOwned(location, player);
+            if (rate > bestRate){
+                bestRate = rate;
+                best = location;
+            }
+        }
+        return best;
+    }
+
+    private Worker worker(HexGeometry geometry){
+        Worker worker = workers.get();
+        if (worker == null || worker.geometry != geometry){
+            worker = new Worker(geometry);
+            workers.set(worker);
+        }
+        return worker;
+    }
+
+    @Override
+    public void close(){
+        pool.shutdownNow();
+    }
+
+    /**
+     * The per thread state of the playouts of one board size
+     */
+    private static final class Worker {
+        private final HexGeometry geometry;
+        private final BitFlood flood;
+        private final SplittableRandom rnd = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+        private final long[] startBlue;     // blue's pieces before the playout
+        private final long[] blue;          // blue's pieces after the board is filled
+        private final int[] empty;          // the empty locations, the first blueShare of them go to blue
+        private int emptyCount;
+        private int blueShare;
+
+        private Worker(HexGeometry geometry){
+            this.geometry = geometry;
+            flood = new BitFlood(geometry);
+            startBlue = new long[geometry.words];
+            blue = new long[geometry.words];
+            empty = new int[geometry.getCells()];
+        }
+
+        /**
+         * Reads the cells straight from the game, a rollout shouldn't allocate a copy of the board
+         */
+        private void load(PlayHex game, int player){
+            emptyCount = 0;
+            for (int i = 0; i < startBlue.length; i++){
+                startBlue[i] = 0;
+            }
+            for (int location = 0; location < empty.length; location++){
+                int cell = game.getCell(location);
+                if (cell == 1){
+                    startBlue[location >>> 6] |= 1L << location;
+                } else if (cell == 0){
+                    empty[emptyCount++] = location;
+                }
+            }
+            // the player to move gets the odd location out
+            blueShare = player == 1 ? (emptyCount + 1) / 2 : emptyCount / 2;
+        }
+
+        /**
+         * Deals the empty locations out and floods blue's pieces once
+         * @return true if blue won
+         */
+        private boolean play(PlayoutStats stats){
+            System.arraycopy(startBlue, 0, blue, 0, blue.length);
+            for (int i = 0; i < blueShare; i++){
+                int pick = i + rnd.nextInt(emptyCount - i);        // the first blueShare steps of a shuffle
+                int location = empty[pick];
+                empty[pick] = empty[i];
+                empty[i] = location;
+                blue[location >>> 6] |= 1L << location;
+            }
+            boolean blueWon = flood.connectsBorders(blue, 1);
+            if (stats != null){
+                stats.record(empty, blueShare, blueWon);
+            }
+            return blueWon;
+        }
+    }
+
+    /**
+     * Runs two million playouts on an empty 11x11 board with every core, to see how many per second this machine gets.
+     */
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        try (FillPlayout playout = new FillPlayout(threads)) {
+            PlayHex game = new PlayHex(11, 11);
+            playout.run(game, 1, 100000);
+            long start = System.nanoTime();
+            PlayoutStats stats = playout.run(game, 1, 2000000);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d threads: %.0f playouts per second, blue wins %.3f, best move %d%n",
+                    threads, stats.getPlayouts() / seconds, stats.getWinRate(1), playout.bestMove(game, 1, 100000));
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Reads an append only archive of finished games, written by GameArchiveWriter.
+ *
+ * The data file starts with a magic number and a version, followed by one record per game:
+ * <pre>
+ *     rows         unsigned byte
+ *     columns      unsigned byte
+ *     first player byte, 1 if blue made the first move, -1 if red did
+ *     winner       byte, 1 for blue, -1 for red, 0 for a game that was stopped
+ *     move count   unsigned short
+ *     moves        the 0 based locations in order, an unsigned byte each up to 256 cells, an unsigned short above
+ * </pre>
+ * An 8x8 game takes around 50 bytes. Next to it, the index file (the same path with .idx added) holds the offset of
+ * every record as a long, so a game can be read by its number without scanning.
+ *
+ * Both files are mapped rather than read, a mapping is limited to 2GB so the data is mapped in 1GB segments, each
+ * overlapping the next by the largest record so that no record is split. If the index is missing or behind the
+ * data, which happens when the writer is stopped between the two, the missing part is rebuilt by scanning the
+ * data. A torn record at the end of the data is ignored.
+ *
+ * The archive sees the games that were written when it was opened, open it again to see newer ones.
+ */
+public class GameArchive implements AutoCloseable {
+    static final int MAGIC = 0x48455841;                 // "HEXA"
+    static final int VERSION = 1;
+    static final int HEADER = 8;
+    static final int RECORD_HEADER = 6;
+    static final int MAX_RECORD = RECORD_HEADER + 2 * 0xFFFF;
+    private static final long SEGMENT = 1L << 30;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long dataSize;                         // the end of the last complete record
+    private final long[] tail;                           // offsets found by scanning past the index file
+    private final MappedByteBuffer index;
+    private final long indexed;
+    private final boolean stale;                         // if the index file doesn't match the data
+
+    private GameArchive(Path path) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        long fileSize = channel.size();
+        if (fileSize < HEADER) {
+            channel.close();
+            throw new IOException("Not a game archive, too short: " + path);
+        }
+        int segmentCount = (int) ((fileSize - 1) / SEGMENT + 1);
+        segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long start = i * SEGMENT;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT + MAX_RECORD, fileSize - start));
+        }
+        if (segments[0].getInt(0) != MAGIC || segments[0].getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not a version " + VERSION + " game archive: " + path);
+        }
+
+        // the index is trusted up to its last entry whose record fits in the data, only the records at the end are
+        // read, the writer writes a record before its entry so only the last few can be missing
+        Path indexPath = indexPath(path);
+        MappedByteBuffer mappedIndex = null;
+        long entries = 0;
+        long count = 0;
+        long end = HEADER;
+        if (Files.exists(indexPath)) {
+            try (FileChannel indexChannel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+                mappedIndex = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size() / 8 * 8);
+            }
+            entries = mappedIndex.capacity() / 8;
+            for (count = entries > 0 && mappedIndex.getLong(0) == HEADER ? entries : 0; count > 0; count--) {
+                long offset = mappedIndex.getLong((int) ((count - 1) * 8));
+                long next = offset >= HEADER ? recordEnd(offset, fileSize) : -1;
+                if (next >= 0) {
+                    end = next;
+                    break;
+                }
+            }
+        }
+        index = mappedIndex;
+        indexed = count;
+
+        // and the records after it are found by scanning
+        long[] found = new long[16];
+        int foundCount = 0;
+        for (long next = recordEnd(end, fileSize); next >= 0; next = recordEnd(end, fileSize)) {
+            if (foundCount == found.length) {
+                found = Arrays.copyOf(found, foundCount * 2);
+            }
+            found[foundCount++] = end;
+            end = next;
+        }
+        tail = Arrays.copyOf(found, foundCount);
+        dataSize = end;
+        stale = foundCount > 0 || entries != count;
+    }
+
+    /**
+     * Opens an archive and brings its index file up to date with the data if it is behind
+     */
+    public static GameArchive open(Path path) throws IOException {
+        GameArchive archive = new GameArchive(path);
+        if (archive.stale) {
+            archive.writeIndex();
+        }
+        return archive;
+    }
+
+    public static GameArchive open(String path) throws IOException {
+        return open(Paths.get(path));
+    }
+
+    static Path indexPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".idx");
+    }
+
+    /**
+     * @return the end of the record at offset, or -1 if there isn't a whole record there
+     */
+    private long recordEnd(long offset, long fileSize) {
+        if (offset + RECORD_HEADER > fileSize) {
+            return -1;
+        }
+        ByteBuffer segment = segments[(int) (offset / SEGMENT)];
+        int at = (int) (offset % SEGMENT);
+        int cells = (segment.get(at) & 0xFF) * (segment.get(at + 1) & 0xFF);
+        int moves = segment.getShort(at + 4) & 0xFFFF;
+        long end = offset + RECORD_HEADER + (long) moves * moveBytes(cells);
+        return cells > 0 && moves <= cells && end <= fileSize ? end : -1;
+    }
+
+    private void writeIndex() throws IOException {
+        ByteBuffer entries = ByteBuffer.allocate(tail.length * 8);
+        for (long offset : tail) {
+            entries.putLong(offset);
+        }
+        entries.flip();
+        try (FileChannel indexChannel = FileChannel.open(indexPath(path), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            indexChannel.truncate(indexed * 8);
+            indexChannel.write(entries, indexed * 8);
+        }
+    }
+
+    static int moveBytes(int cells) {
+        return cells <= 256 ? 1 : 2;
+    }
+
+    /**
+     * @return the number of games in the archive
+     */
+    public long size() {
+        return indexed + tail.length;
+    }
+
+    /**
+     * @return the end of the last whole record, where the next game goes
+     */
+    long getDataSize() {
+        return dataSize;
+    }
+
+    private long offset(long game) {
+        if (game < 0 || game >= size()) {
+            throw new IndexOutOfBoundsException("Game " + game + " of " + size());
+        }
+        return game < indexed ? index.getLong((int) (game * 8)) : tail[(int) (game - indexed)];
+    }
+
+    /**
+     * @return the number of moves of a game, without reading the moves
+     */
+    public int getMoveCount(long game) {
+        long offset = offset(game);
+        return segments[(int) (offset / SEGMENT)].getShort((int) (offset % SEGMENT) + 4) & 0xFFFF;
+    }
+
+    /**
+     * @param game the number of the game, 0 is the first one written
+     */
+    public Game get(long game) {
+        return read(offset(game));
+    }
+
+    private Game read(long offset) {
+        ByteBuffer segment = segments[(int) (offset / SEGMENT)];
+        int at = (int) (offset % SEGMENT);
+        int rows = segment.get(at) & 0xFF;
+        int columns = segment.get(at + 1) & 0xFF;
+        int[] moves = new int[segment.getShort(at + 4) & 0xFFFF];
+        int position = at + RECORD_HEADER;
+        if (moveBytes(rows * columns) == 1) {
+            for (int i = 0; i < moves.length; i++) {
+                moves[i] = segment.get(position + i) & 0xFF;
+            }
+        } else {
+            for (int i = 0; i < moves.length; i++) {
+                moves[i] = segment.getShort(position + 2 * i) & 0xFFFF;
+            }
+        }
+        return new Game(rows, columns, segment.get(at + 2), moves, segment.get(at + 3));
+    }
+
+    /**
+     * Reads every game in order, front to back through the mapping
+     */
+    public void forEach(Consumer<Game> action) {
+        for (long game = 0, size = size(); game < size; game++) {
+            action.accept(get(game));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Encodes a record of the format above
+     */
+    static ByteBuffer encode(int rows, int columns, int firstPlayer, int[] moves, int moveCount, int winner) {
+        if (rows < 1 || rows > 0xFF || columns < 1 || columns > 0xFF) {
+            throw new IllegalArgumentException("The archive holds boards of 1 to 255 rows and columns, not "
+                    + rows + "x" + columns);
+        }
+        int cells = rows * columns;
+        if (moveCount > cells) {
+            throw new IllegalArgumentException(moveCount + " moves don't fit on " + cells + " cells");
+        }
+        int moveBytes = moveBytes(cells);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + moveCount * moveBytes);
+        record.put((byte) rows).put((byte) columns).put((byte) firstPlayer).put((byte) winner)
+                .putShort((short) moveCount);
+        for (int i = 0; i < moveCount; i++) {
+            if (moveBytes == 1) {
+                record.put((byte) moves[i]);
+            } else {
+                record.putShort((short) moves[i]);
+            }
+        }
+        record.flip();
+        return record;
+    }
+
+    /**
+     * One archived game
+     */
+    public static final class Game {
+        private final int rows;
+        private final int columns;
+        private final int firstPlayer;
+        private final int[] moves;
+        private final int winner;
+
+        public Game(int rows, int columns, int firstPlayer, int[] moves, int winner) {
+            this.rows = rows;
+            this.columns = columns;
+            this.firstPlayer = firstPlayer;
+            this.moves = moves;
+            this.winner = winner;
+        }
+
+        public int getRows() { return rows; }
+
+        public int getColumns() { return columns; }
+
+        /**
+         * @return 1 if blue made the first move, -1 if red did
+         */
+        public int getFirstPlayer() { return firstPlayer; }
+
+        /**
+         * @return the 0 based locations taken, in order, the players alternate starting with the first player
+         */
+        public int[] getMoves() { return moves; }
+
+        /**
+         * @return 1 if blue won, -1 if red won, 0 if the game was stopped before anyone did
+         */
+        public int getWinner() { return winner; }
+
+        @Override
+        public String toString() {
+            return rows + "x" + columns + " first " + firstPlayer + " winner " + winner + " " + Arrays.toString(moves);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package game;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Appends finished games to a GameArchive. Encoding a game is cheap and happens on the calling thread, the writing
+ * happens on a background thread through buffered streams, so that the games being played don't wait for the disk.
+ * If the disk can't keep up the queue fills and append blocks until there is room again.
+ *
+ * The writer can be shared between threads. An existing archive is appended to, after dropping a torn record at its
+ * end if the last writer was stopped in the middle of one.
+ */
+public class GameArchiveWriter implements AutoCloseable {
+    private static final int QUEUE_DEPTH = 1 << 14;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final Object STOP = new Object();
+
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+    private final Thread thread;
+    private final OutputStream data;
+    private final DataOutputStream index;
+    private long games;                 // the number of the next game
+    private long offset;                // where the next game goes in the data file
+    private volatile IOException failure;
+    private boolean closed;
+
+    public GameArchiveWriter(Path path) throws IOException {
+        if (Files.exists(path) && Files.size(path) > 0) {
+            try (GameArchive archive = GameArchive.open(path)) {
+                games = archive.size();
+                offset = archive.getDataSize();
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(offset);
+            }
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(GameArchive.HEADER);
+            header.putInt(GameArchive.MAGIC).putInt(GameArchive.VERSION);
+            Files.write(path, header.array());
+            Files.deleteIfExists(GameArchive.indexPath(path));
+            offset = GameArchive.HEADER;
+        }
+        data = new BufferedOutputStream(Channels.newOutputStream(
+                FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)), BUFFER_SIZE);
+        index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(GameArchive.indexPath(path),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+
+        thread = new Thread(this::write, "game-archive-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a game to be written
+     * @param firstPlayer 1 if blue made the first move, -1 if red did
+     * @param moves the 0 based locations taken in order, only the first moveCount are used
+     * @param winner 1 for blue, -1 for red, 0 for a game that was stopped
+     * @return the number the game can be read back with
+     * @throws UncheckedIOException if the background thread failed to write an earlier game
+     */
+    public synchronized long append(int rows, int columns, int firstPlayer, int[] moves, int moveCount, int winner) {
+        if (closed) {
+            throw new IllegalStateException("The archive writer is closed");
+        }
+        checkFailure();
+        ByteBuffer record = GameArchive.encode(rows, columns, firstPlayer, moves, moveCount, winner);
+        put(record);
+        return games++;
+    }
+
+    /**
+     * Blocks until every game queued so far is in the files
+     */
+    public void flush() {
+        CountDownLatch written = new CountDownLatch(1);
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            put(written);
+        }
+        try {
+            written.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    /**
+     * @return the number of games in the archive, counting the ones still queued
+     */
+    public synchronized long size() {
+        return games;
+    }
+
+    private void put(Object item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing a game for the archive", e);
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("Writing the game archive failed", failure);
+        }
+    }
+
+    /**
+     * The background thread, the data of a game is written before its index entry
+     */
+    private void write() {
+        try {
+            while (true) {
+                Object item = queue.take();
+                if (item == STOP) {
+                    break;
+                }
+                if (item instanceof CountDownLatch) {
+                    flushStreams();
+                    ((CountDownLatch) item).countDown();
+                    continue;
+                }
+                if (failure != null) {
+                    continue;           // drain so that nobody blocks on a full queue
+                }
+                ByteBuffer record = (ByteBuffer) item;
+                try {
+                    data.write(record.array(), 0, record.limit());
+                    index.writeLong(offset);
+                    offset += record.limit();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushStreams() {
+        try {
+            data.flush();
+            index.flush();
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Writes the queued games and closes the files
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            put(STOP);
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
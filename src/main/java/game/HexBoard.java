@@ -12,79 +12,89 @@ package game; /**
  * neighbors are location -1 , location +1, location - width, location - width+1, location + width, location + width -1
  */
 import java.util.Arrays;
-import java.util.Hashtable;
-class HexBoard {
 
-    public boolean wasValid;
+class HexBoard extends AbstractHexBoard {
 
-    private static int rows;
-    private static int columns;
-    private static int punishRate;
     public int[] board;        // 0 is empty, 1 is blue and -1 is red
-    private UnionFindForest<Integer> redForest = new UnionFindForest<>(); // player 2
-    private UnionFindForest<Integer> blueForest = new UnionFindForest<>();// player 1
+    private final RollbackUnionFind redForest;      // player 2
+    private final RollbackUnionFind blueForest;     // player 1
+    private final int[] forestMarks;                // the forest mark from before every placed piece, used to undo it
+    private final int[] neighborBuffer = new int[6];       // reused by place so that a move never allocates
+    private final int[] pieceBuffer = new int[6];
 
     public HexBoard(int rows, int columns, int punishRate, int rewardRate, int winGameReward){
-        HexBoard.punishRate = punishRate;
-        HexBoard.rows = rows;
-        HexBoard.columns = columns;
+        this(HexGeometry.of(rows, columns), punishRate);
+    }
+
+    public HexBoard(HexGeometry geometry, int punishRate){
+        super(geometry, punishRate);
         board = new int[rows*columns +1];
+        redForest = new RollbackUnionFind(rows*columns +1);
+        blueForest = new RollbackUnionFind(rows*columns +1);
+        forestMarks = new int[rows*columns];
     }
 
-    /**
-     * Allows to set the board and refreshes the neighbor forests for the set tile
-     * @return returns -1 if the attempted move is invalid, returns 1 if blue won, -1 if red won
-     * otherwise, returns 0 if the move was recorded and valid
-     * returns punishRate if the move was invalid.
-     */
-    public int setBoard(int loc, int player){
-        int playerSpot = board[loc];
+    @Override
+    public int getCell(int loc){
+        return board[loc];
+    }
 
-        if (playerSpot!=0){
-            wasValid = false;
-            return punishRate;
-        }
+    @Override
+    public int[] getBoardList(){
+        return Arrays.copyOfRange(board, 1, board.length);          // index 0 is never used so it is removed.
+    }
 
-        int[] neighborPlayerPieces = getNeighborPlayerPieces(loc, player);
+    /**
+     * Sets the tile and refreshes the neighbor forests for it
+     */
+    @Override
+    protected boolean place(int loc, int player){
+        int[] neighborPlayerPieces = fillNeighborPlayerPieces(loc, player, pieceBuffer);
         board[loc] = player;
 
-        int winGameReward = 1;
-        if (player==1) {
-            if (refreshForest(blueForest, loc, neighborPlayerPieces)){
-                return winGameReward;
-            }
-        } else{
-            if (refreshForest(redForest, loc, neighborPlayerPieces)){
-                return -1 * winGameReward;
-            }
-        }
+        RollbackUnionFind forest = player==1 ? blueForest : redForest;
+        forestMarks[getMoveCount() - 1] = forest.mark();
+        return refreshForest(forest, loc, neighborPlayerPieces);
+    }
 
-        wasValid = true;
-        return 0;
+    /**
+     * Clears the tile and rolls its forest back to before the piece was placed
+     */
+    @Override
+    protected void remove(int loc, int player){
+        board[loc] = 0;
+        RollbackUnionFind forest = player==1 ? blueForest : redForest;
+        forest.rollback(forestMarks[getMoveCount()]);
     }
 
     /**
      * Refreshes the forest, and checks if a player has won
      * returns true if the game was won
      */
-    private boolean refreshForest(UnionFindForest<Integer> forest, int loc, int[] neighborPlayerPieces){
+    private boolean refreshForest(IntUnionFind forest, int loc, int[] neighborPlayerPieces){
         for (int i =0; i <6; i++){
             if (neighborPlayerPieces[i]==0)        // empty list location
                 continue;
             forest.union(loc, neighborPlayerPieces[i]);
         }
-        if (forest.find(-2) !=null && forest.find(-2)==forest.find(-3)){  // if the two borders are connected
-            return true;
-        }
-        return false;
+        return forest.connected(IntUnionFind.FIRST_BORDER, IntUnionFind.SECOND_BORDER);  // if the two borders are connected
     }
 
     /**
      * @return a list of valid neighbor locations of the same player as specified
      */
     public int[] getNeighborPlayerPieces(int loc, int player){
-        int[] out = new int[6];
-        int[] locs = getNeighbors(loc);
+        return fillNeighborPlayerPieces(loc, player, new int[6]);
+    }
+
+    /**
+     * Same as getNeighborPlayerPieces, but writes into out instead of allocating
+     */
+    private int[] fillNeighborPlayerPieces(int loc, int player, int[] out){
+        int[] locs = fillNeighbors(loc, neighborBuffer);
+        for (int i = 0; i < out.length; i++){
+            out[i] = 0;
+        }
 
 
         for (int i = 0; i < locs.length; i++){
@@ -100,14 +110,14 @@ class HexBoard {
     private int[] getBorders(int[] out, int loc, int player){
         if (player==1){
             if (isOnLeftBorder(loc))
-                out[0] = -2;                    // left border for blue pieces counts as a valid piece
+                out[0] = IntUnionFind.FIRST_BORDER;     // left border for blue pieces counts as a valid piece
             else if (isOnRightBorder(loc))
-                out[1] = -3;
+                out[1] = IntUnionFind.SECOND_BORDER;
         } else if (player==-1){
             if (isOnTopBorder(loc))
-                out[2] = -2;
+                out[2] = IntUnionFind.FIRST_BORDER;
             else if (isOnLowBorder(loc))
-                out[4] = -3;
+                out[4] = IntUnionFind.SECOND_BORDER;
         }
         return out;
     }
@@ -119,74 +129,30 @@ class HexBoard {
      *          empty slots are filled with 0
      */
     public int[] getNeighbors(int loc){
-        int[] neighborList= new int[6];
-
-        if (!isOnLeftBorder(loc)){
-            neighborList[0] = loc-1;
-        }
-        if (!isOnRightBorder(loc)){
-            neighborList[1] = loc+1;
-        }
-        if (!isOnTopBorder(loc)){
-            neighborList[2] = loc- columns;
-            if (!isOnRightBorder(neighborList[2])){
-                neighborList[3] = loc- columns +1;
-            }
-        }
-        if (!isOnLowBorder(loc)){
-            neighborList[5] = loc+ columns;
-            if (!isOnLeftBorder(neighborList[5])){
-                neighborList[4] = loc+ columns -1;
-            }
-        }
-
-        return neighborList;
+        return fillNeighbors(loc, new int[6]);
     }
 
     /**
-     * Use this to print the board. Uses colors!
-     * @return The string representation of the board
+     * Same as getNeighbors, but writes into neighborList instead of allocating
      */
-    public String toString(){
-        String outStr = "";
-        for (int j = 0; j < rows; j++){
-            for (int i = 0; i < columns; i++){
-                outStr += hexSquare(columns * j + i +1) + " ";
-            }
-            outStr+="\n";
-            for (int k = 0; k < j+1; k++){
-                outStr+=" ";
-            }
+    private int[] fillNeighbors(int loc, int[] neighborList){
+        for (int i = 0; i < neighborList.length; i++){
+            neighborList[i] = geometry.neighbor(loc, i);       // the geometry already did the border checks
         }
-        return outStr;
-    }
 
-    private String hexSquare(int location){
-        boolean shouldColor = true;
-        if (board[location]==0){
-            return "" + 0;
-        }
-        else if (board[location]==1){
-            if (shouldColor)
-                return "\u001B[34m" + "B" + "\u001B[0m";
-            else return "B";
-        } else {
-            if (shouldColor)
-                return "\u001B[31m" + "R" + "\u001B[0m";
-            else
-                return "R";
-        }
+        return neighborList;
     }
+
     private boolean isOnTopBorder(int loc){
-        return loc- columns <1;
+        return geometry.isOnBorder(loc, HexGeometry.TOP_BORDER);
     }
     private boolean isOnLowBorder(int loc){
-        return loc+ columns > columns * rows;
+        return geometry.isOnBorder(loc, HexGeometry.LOW_BORDER);
     }
     private boolean isOnRightBorder(int loc){
-        return loc% columns ==0;
+        return geometry.isOnBorder(loc, HexGeometry.RIGHT_BORDER);
     }
     private boolean isOnLeftBorder(int loc){
-        return loc% columns ==1;
+        return geometry.isOnBorder(loc, HexGeometry.LEFT_BORDER);
     }
 }
@@ -0,0 +1,193 @@
+package game; /**
+ * Everything that only depends on the size of the board: the neighbor table, which borders every cell is on,
+ * the cell indexing and the masks the bitboards use.
+ *
+ * A geometry is immutable and there is only one per (rows, columns), so any number of boards of any sizes can share
+ * them across threads. Get one with HexGeometry.of.
+ *
+ * Locations are numbered from 1 to rows*columns like in HexBoard, and bit loc-1 of a bitboard is location loc.
+ */
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class HexGeometry {
+    // neighbor directions, in the same order as HexBoard.getNeighbors
+    public static final int LEFT = 0;
+    public static final int RIGHT = 1;
+    public static final int UP_LEFT = 2;
+    public static final int UP_RIGHT = 3;
+    public static final int DOWN_LEFT = 4;
+    public static final int DOWN_RIGHT = 5;
+
+    // border flags
+    public static final int LEFT_BORDER = 1;
+    public static final int RIGHT_BORDER = 2;
+    public static final int TOP_BORDER = 4;
+    public static final int LOW_BORDER = 8;
+
+    private static final ConcurrentHashMap<Long, HexGeometry> cache = new ConcurrentHashMap<>();
+
+    private final int rows;
+    private final int columns;
+    private final int cells;
+    private final int[] neighbors;      // neighbors[loc*6 + direction], 0 if there is no neighbor that way
+    private final int[] borders;        // border flags of every location
+    private final long[] blueKeys;      // zobrist keys of a blue or red piece on every location
+    private final long[] redKeys;
+    private final long turnKey;         // zobrist key for red being the one to move
+
+    // bitboard masks, one long per 64 cells
+    final int words;
+    final long[] notLeftColumn;         // every cell except the left column
+    final long[] notRightColumn;        // every cell except the right column
+    final long[] leftColumn;            // blue's first border
+    final long[] rightColumn;           // blue's second border
+    final long[] topRow;                // red's first border
+    final long[] lowRow;                // red's second border
+
+    private HexGeometry(int rows, int columns){
+        this.rows = rows;
+        this.columns = columns;
+        cells = rows * columns;
+
+        borders = new int[cells + 1];
+        for (int loc = 1; loc <= cells; loc++){
+            if (loc % columns == 1) borders[loc] |= LEFT_BORDER;
+            if (loc % columns == 0) borders[loc] |= RIGHT_BORDER;
+            if (loc - columns < 1) borders[loc] |= TOP_BORDER;
+            if (loc + columns > cells) borders[loc] |= LOW_BORDER;
+        }
+
+        neighbors = new int[(cells + 1) * 6];
+        for (int loc = 1; loc <= cells; loc++){
+            int base = loc * 6;
+            if (!isOnBorder(loc, LEFT_BORDER)){
+                neighbors[base + LEFT] = loc - 1;
+            }
+            if (!isOnBorder(loc, RIGHT_BORDER)){
+                neighbors[base + RIGHT] = loc + 1;
+            }
+            if (!isOnBorder(loc, TOP_BORDER)){
+                neighbors[base + UP_LEFT] = loc - columns;
+                if (!isOnBorder(loc - columns, RIGHT_BORDER)){
+                    neighbors[base + UP_RIGHT] = loc - columns + 1;
+                }
+            }
+            if (!isOnBorder(loc, LOW_BORDER)){
+                neighbors[base + DOWN_RIGHT] = loc + columns;
+                if (!isOnBorder(loc + columns, LEFT_BORDER)){
+                    neighbors[base + DOWN_LEFT] = loc + columns - 1;
+                }
+            }
+        }
+
+        // seeded by the size, so that the hash of a position is the same in every run
+        SplittableRandom rnd = new SplittableRandom(((long) rows << 32) ^ columns ^ 0x9E3779B97F4A7C15L);
+        blueKeys = new long[cells + 1];
+        redKeys = new long[cells + 1];
+        for (int loc = 1; loc <= cells; loc++){
+            blueKeys[loc] = rnd.nextLong();
+            redKeys[loc] = rnd.nextLong();
+        }
+        turnKey = rnd.nextLong();
+
+        words = (cells + 63) / 64;
+        notLeftColumn = new long[words];
+        notRightColumn = new long[words];
+        leftColumn = new long[words];
+        rightColumn = new long[words];
+        topRow = new long[words];
+        lowRow = new long[words];
+        for (int i = 0; i < cells; i++){
+            int row = i / columns;
+            int column = i % columns;
+            setBit(column == 0 ? leftColumn : notLeftColumn, i);
+            setBit(column == columns - 1 ? rightColumn : notRightColumn, i);
+            if (row == 0) setBit(topRow, i);
+            if (row == rows - 1) setBit(lowRow, i);
+        }
+    }
+
+    /**
+     * @return the shared geometry of a board with the given size
+     */
+    public static HexGeometry of(int rows, int columns){
+        if (rows < 1 || columns < 1){
+            throw new IllegalArgumentException("A Hex board needs at least one row and column, not " + rows + "x" + columns);
+        }
+        return cache.computeIfAbsent(((long) rows << 32) | columns, key -> new HexGeometry(rows, columns));
+    }
+
+    public int getRows(){ return rows; }
+    public int getColumns(){ return columns; }
+    public int getCells(){ return cells; }
+
+    /**
+     * @return the location of the cell, rows and columns start from 0
+     */
+    public int location(int row, int column){
+        return row * columns + column + 1;
+    }
+
+    public int row(int loc){ return (loc - 1) / columns; }
+    public int column(int loc){ return (loc - 1) % columns; }
+
+    /**
+     * @param direction one of LEFT, RIGHT, UP_LEFT, UP_RIGHT, DOWN_LEFT or DOWN_RIGHT
+     * @return the neighbor of loc in that direction, or 0 if it is off the board
+     */
+    public int neighbor(int loc, int direction){
+        return neighbors[loc * 6 + direction];
+    }
+
+    /**
+     * @return the border flags of loc, any of LEFT_BORDER, RIGHT_BORDER, TOP_BORDER and LOW_BORDER
+     */
+    public int borders(int loc){
+        return borders[loc];
+    }
+
+    public boolean isOnBorder(int loc, int border){
+        return (borders[loc] & border) != 0;
+    }
+
+    /**
+     * @return the location loc ends up on when the board is turned 180 degrees. The turned board is the same game,
+     * blue still connects left to right and red top to bottom.
+     */
+    public int rotate(int loc){
+        return cells + 1 - loc;
+    }
+
+    /**
+     * @return the zobrist key of a piece of player on loc
+     */
+    public long key(int loc, int player){
+        return player == 1 ? blueKeys[loc] : redKeys[loc];
+    }
+
+    /**
+     * @return the key to xor into a position hash when it is red's turn, position hashes only hold the pieces
+     */
+    public long getTurnKey(){
+        return turnKey;
+    }
+
+    /**
+     * @return the first border of player, the left column for blue and the top row for red
+     */
+    long[] firstBorder(int player){
+        return player == 1 ? leftColumn : topRow;
+    }
+
+    /**
+     * @return the second border of player, the right column for blue and the low row for red
+     */
+    long[] secondBorder(int player){
+        return player == 1 ? rightColumn : lowRow;
+    }
+
+    private static void setBit(long[] bits, int i){
+        bits[i >>> 6] |= 1L << i;
+    }
+}
@@ -0,0 +1,97 @@
+package game; /**
+ * A union find over plain ints, made for the HexBoard connectivity. Every cell of the board gets a fixed slot in the
+ * parent array, and the two virtual border nodes (-2 and -3) get the two slots after the last cell.
+ *
+ * Unlike UnionFindForest this never boxes or allocates after construction, and uses path halving instead of
+ * collecting the path into a list.
+ */
+public class IntUnionFind {
+    public static final int FIRST_BORDER = -2;           // left border for blue, top border for red
+    public static final int SECOND_BORDER = -3;          // right border for blue, low border for red
+
+    protected final int[] parent;                        // parent slot of every slot, a root is its own parent
+    protected final int[] size;                          // size of the tree, only valid for roots
+    protected final int cells;                           // number of non virtual slots
+
+    /**
+     * @param cells the number of cells, values 0 to cells-1 are valid, along with FIRST_BORDER and SECOND_BORDER
+     */
+    public IntUnionFind(int cells){
+        this.cells = cells;
+        parent = new int[cells + 2];
+        size = new int[cells + 2];
+        reset();
+    }
+
+    /**
+     * Puts every value back into its own set
+     */
+    public void reset(){
+        for (int i = 0; i < parent.length; i++){
+            parent[i] = i;
+            size[i] = 1;
+        }
+    }
+
+    /**
+     * Joins the sets of the two values, the smaller tree is hung under the larger one
+     */
+    public void union(int one, int two){
+        int oneRoot = findSlot(slot(one));
+        int twoRoot = findSlot(slot(two));
+        if (oneRoot == twoRoot){
+            return;
+        }
+        if (size[oneRoot] < size[twoRoot]){
+            int tmp = oneRoot;
+            oneRoot = twoRoot;
+            twoRoot = tmp;
+        }
+        link(oneRoot, twoRoot);
+    }
+
+    /**
+     * Hangs the root child under the root bigRoot
+     */
+    protected void link(int bigRoot, int child){
+        parent[child] = bigRoot;
+        size[bigRoot] += size[child];
+    }
+
+    /**
+     * @return the identifier of the set val is in, two values are in the same set if they have the same root
+     */
+    public int find(int val){
+        return value(findSlot(slot(val)));
+    }
+
+    /**
+     * @return true if the two values are in the same set
+     */
+    public boolean connected(int one, int two){
+        return findSlot(slot(one)) == findSlot(slot(two));
+    }
+
+    /**
+     * Finds the root slot, halving the path as it goes
+     */
+    protected int findSlot(int slot){
+        while (parent[slot] != slot){
+            parent[slot] = parent[parent[slot]];
+            slot = parent[slot];
+        }
+        return slot;
+    }
+
+    private int slot(int val){
+        if (val == FIRST_BORDER) return cells;
+        if (val == SECOND_BORDER) return cells + 1;
+        return val;
+    }
+
+    private int value(int slot){
+        if (slot == cells) return FIRST_BORDER;
+        if (slot == cells + 1) return SECOND_BORDER;
+        return slot;
+    }
+}
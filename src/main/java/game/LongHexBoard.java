@@ -0,0 +1,94 @@
+package game; /**
+ * A Hex board that fits in one long per player, for boards with up to 64 cells such as 8x8.
+ * Bit loc-1 of blue or red is set if that player has a piece on loc.
+ *
+ * Nothing is kept about groups, a win is found with a bit parallel flood fill from the piece that was just placed.
+ */
+class LongHexBoard extends AbstractHexBoard {
+
+    private long blue;
+    private long red;
+
+    private final long notLeftColumn;
+    private final long notRightColumn;
+    private final long leftColumn;
+    private final long rightColumn;
+    private final long topRow;
+    private final long lowRow;
+
+    public LongHexBoard(int rows, int columns, int punishRate){
+        this(HexGeometry.of(rows, columns), punishRate);
+    }
+
+    public LongHexBoard(HexGeometry geometry, int punishRate){
+        super(geometry, punishRate);
+        if (geometry.getCells() > 64){
+            throw new IllegalArgumentException("A LongHexBoard holds at most 64 cells, not " + geometry.getCells());
+        }
+        notLeftColumn = geometry.notLeftColumn[0];
+        notRightColumn = geometry.notRightColumn[0];
+        leftColumn = geometry.leftColumn[0];
+        rightColumn = geometry.rightColumn[0];
+        topRow = geometry.topRow[0];
+        lowRow = geometry.lowRow[0];
+    }
+
+    @Override
+    public int getCell(int loc){
+        long bit = 1L << (loc - 1);
+        if ((blue & bit) != 0) return 1;
+        if ((red & bit) != 0) return -1;
+        return 0;
+    }
+
+    @Override
+    protected boolean place(int loc, int player){
+        long bit = 1L << (loc - 1);
+        if (player == 1){
+            blue |= bit;
+            return isConnected(blue, bit, leftColumn, rightColumn);
+        }
+        red |= bit;
+        return isConnected(red, bit, topRow, lowRow);
+    }
+
+    @Override
+    protected void remove(int loc, int player){
+        long bit = 1L << (loc - 1);
+        if (player == 1){
+            blue &= ~bit;
+        } else {
+            red &= ~bit;
+        }
+    }
+
+    /**
+     * Floods from seed through the pieces, and checks if the flooded group touches both borders
+     */
+    private boolean isConnected(long pieces, long seed, long firstBorder, long secondBorder){
+        if ((pieces & firstBorder) == 0 || (pieces & secondBorder) == 0){
+            return false;
+        }
+        long flood = seed;
+        while (true){
+            long next = (flood | neighbors(flood)) & pieces;
+            if (next == flood){
+                break;
+            }
+            flood = next;
+        }
+        return (flood & firstBorder) != 0 && (flood & secondBorder) != 0;
+    }
+
+    /**
+     * @return every cell next to one of the cells in bits, this can include cells in bits
+     */
+    private long neighbors(long bits){
+        return ((bits << 1) & notLeftColumn)                // right
+                | ((bits >>> 1) & notRightColumn)           // left
+                | (bits << columns)                         // down right
+                | (bits >>> columns)                        // up left
+                | ((bits >>> (columns - 1)) & notLeftColumn)   // up right
+                | ((bits << (columns - 1)) & notRightColumn);  // down left
+    }
+}
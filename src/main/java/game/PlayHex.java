@@ -16,17 +16,36 @@ public class PlayHex {
     static final boolean DEBUG = false;
     static final String RESOURCE_PATH = "src/main/resources/";
     static boolean isVisible = false;                                                           // this controls whether the board is printed out
-    private final HexBoard HexBoard;
+    private final AbstractHexBoard HexBoard;
     public int maxMoves;
     private final int rewardRate = 1;
 
     public PlayHex(int rows, int columns){
-        maxMoves = rows*columns;
+        this(HexGeometry.of(rows, columns));
+    }
+
+    /**
+     * @param geometry the shared geometry of the board size, boards of any size can be played at the same time
+     */
+    public PlayHex(HexGeometry geometry){
+        maxMoves = geometry.getCells();
         // the punishment rate for picking an occupied location, same punishment as loosing. Setting this to 0 will break stuff
         int punishRate = 0;
-        int rewardRate = 0;
-        int winGameReward = 1;
-        HexBoard = new HexBoard(rows, columns, punishRate, rewardRate, winGameReward);
+        HexBoard = newBoard(geometry, punishRate);
+    }
+
+    /**
+     * Picks the fastest board backend for the size: a single long per player up to 64 cells, and the int array with
+     * union find forests for anything bigger. A flood over an array of longs measured slower than the union find once
+     * a board takes more than one word, see benchmarks/HexBoardBenchmark.
+     */
+    static AbstractHexBoard newBoard(HexGeometry geometry, int punishRate){
+        int rows = geometry.getRows();
+        int columns = geometry.getColumns();
+        if (rows > 1 && columns > 1 && rows * columns <= 64){       // the bit shifts need at least two columns
+            return new LongHexBoard(geometry, punishRate);
+        }
+        return new HexBoard(geometry, punishRate);
     }
 
     /**
@@ -43,13 +62,103 @@ public class PlayHex {
         return HexBoard.wasValid;
     }
 
+    /**
+     * Takes back the last valid move, so that search can try a move and retract it without copying the board.
+     * @return the location of the move that was taken back
+     * @throws IllegalStateException if no move has been made
+     */
+    public int undoMove(){
+        return HexBoard.undo() - 1;
+    }
+
+    public HexGeometry getGeometry(){
+        return HexBoard.getGeometry();
+    }
+
+    /**
+     * @return a 64 bit zobrist hash of the pieces on the board. It does not say whose turn it is, xor in
+     * getGeometry().getTurnKey() when it is red's turn if that matters.
+     */
+    public long getHash(){
+        return HexBoard.getHash();
+    }
+
+    /**
+     * @return the same hash for a position and the position turned 180 degrees, the smaller of the two hashes
+     */
+    public long getCanonicalHash(){
+        return Math.min(HexBoard.getHash(), HexBoard.getRotatedHash());
+    }
+
+    /**
+     * @return true if getCanonicalHash is the hash of the turned board, so locations stored under it are turned too
+     */
+    public boolean isCanonicalRotated(){
+        return HexBoard.getRotatedHash() < HexBoard.getHash();
+    }
+
+    /**
+     * @return the number of valid moves on the board
+     */
+    public int getMoveCount(){
+        return HexBoard.getMoveCount();
+    }
+
+    /**
+     * @return the location of valid move number i, counting from 0
+     */
+    public int getMove(int i){
+        return HexBoard.getMove(i) - 1;
+    }
+
+    /**
+     * @return 0 if the location is empty, 1 if it is blue and -1 if it is red. Unlike getBoardList this doesn't copy.
+     */
+    public int getCell(int location){
+        return HexBoard.getCell(location + 1);
+    }
+
+    /**
+     * Keeps the bridges and edge templates of both players up to date from now on, which costs a little on every
+     * move and undo. Copies of the game track them too.
+     * @return the tracker, the same one if they were already tracked
+     */
+    public VirtualConnections trackVirtualConnections(){
+        if (HexBoard.getConnections() == null){
+            HexBoard.setConnections(new VirtualConnections(getGeometry()));
+        }
+        return HexBoard.getConnections();
+    }
+
+    /**
+     * @return the virtual connections of the game, or null if trackVirtualConnections was never called
+     */
+    public VirtualConnections getVirtualConnections(){
+        return HexBoard.getConnections();
+    }
+
+    /**
+     * @return a new game with the same moves played, so that it can be changed without touching this one
+     */
+    public PlayHex copy(){
+        PlayHex copy = new PlayHex(getGeometry());
+        for (int i = 0; i < getMoveCount(); i++){
+            int location = getMove(i);
+            copy.setMove(location, getCell(location));
+        }
+        if (getVirtualConnections() != null){
+            copy.trackVirtualConnections();
+        }
+        return copy;
+    }
+
     /**
      * returns a comprehensive list representation of the board. It would also be useful to know which player's turn it is.
      */
     public int[] getBoardList(){
-        if (DEBUG) System.out.println("getting board: " +
-                Arrays.toString(Arrays.copyOfRange(HexBoard.board, 1, HexBoard.board.length)));
-        return Arrays.copyOfRange(HexBoard.board, 1, HexBoard.board.length);          // index 0 is never used so it is removed.
+        int[] board = HexBoard.getBoardList();
+        if (DEBUG) System.out.println("getting board: " + Arrays.toString(board));
+        return board;
     }
 
     /**
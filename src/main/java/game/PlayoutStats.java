@@ -0,0 +1,72 @@
+package game; /**
+ * What a batch of FillPlayout playouts found out about a position: how often blue won, and for every empty location
+ * how often blue ended up owning it and how often blue won when it did.
+ */
+public class PlayoutStats {
+    private final int[] board;          // the position the playouts started from
+    private long playouts;
+    private long blueWins;
+    private final long[] blueOwned;     // playouts in which blue got the location
+    private final long[] blueOwnedWins; // playouts in which blue got the location and won
+
+    PlayoutStats(int[] board){
+        this.board = board;
+        blueOwned = new long[board.length];
+        blueOwnedWins = new long[board.length];
+    }
+
+    void record(int[] blueLocations, int count, boolean blueWon){
+        playouts++;
+        if (blueWon){
+            blueWins++;
+        }
+        for (int i = 0; i < count; i++){
+            blueOwned[blueLocations[i]]++;
+            if (blueWon){
+                blueOwnedWins[blueLocations[i]]++;
+            }
+        }
+    }
+
+    void add(PlayoutStats other){
+        playouts += other.playouts;
+        blueWins += other.blueWins;
+        for (int i = 0; i < blueOwned.length; i++){
+            blueOwned[i] += other.blueOwned[i];
+            blueOwnedWins[i] += other.blueOwnedWins[i];
+        }
+    }
+
+    public long getPlayouts(){ return playouts; }
+
+    /**
+     * @return the share of the playouts that player won
+     */
+    public float getWinRate(int player){
+        if (playouts == 0) return 0.5f;
+        float blueRate = blueWins / (float) playouts;
+        return player == 1 ? blueRate : 1 - blueRate;
+    }
+
+    /**
+     * @return how often player ended up owning the location, 1 or 0 for locations that were already taken
+     */
+    public float getOwnership(int location, int player){
+        float blue;
+        if (board[location] != 0){
+            blue = board[location] == 1 ? 1 : 0;
+        } else {
+            blue = playouts == 0 ? 0.5f : blueOwned[location] / (float) playouts;
+        }
+        return player == 1 ? blue : 1 - blue;
+    }
+
+    /**
+     * @return the share of the playouts player won when they got the empty location, 0 if they never got it
+     */
+    public float getWinRateWhenOwned(int location, int player){
+        long owned = player == 1 ? blueOwned[location] : playouts - blueOwned[location];
+        long wins = player == 1 ? blueOwnedWins[location] : (playouts - blueWins) - (blueOwned[location] - blueOwnedWins[location]);
+        return owned == 0 ? 0 : wins / (float) owned;
+    }
+}
@@ -0,0 +1,58 @@
+package game; /**
+ * An IntUnionFind that can take back its unions. Every link is written to a trail, and rollback unlinks them again
+ * in reverse order.
+ *
+ * Path compression would change parents behind the trail's back, so this only uses union by size. That keeps every
+ * tree O(log n) deep, so find and rollback both stay cheap.
+ */
+public class RollbackUnionFind extends IntUnionFind {
+    private final int[] trail;          // the child root of every link, in the order they were made
+    private int trailSize;
+
+    public RollbackUnionFind(int cells){
+        super(cells);
+        trail = new int[cells + 2];     // every link joins two sets, and there are only cells+2 sets to begin with
+    }
+
+    @Override
+    public void reset(){
+        super.reset();
+        trailSize = 0;
+    }
+
+    /**
+     * @return a mark that rollback can return to
+     */
+    public int mark(){
+        return trailSize;
+    }
+
+    /**
+     * Undoes every union made since mark was taken
+     */
+    public void rollback(int mark){
+        while (trailSize > mark){
+            int child = trail[--trailSize];
+            int root = parent[child];
+            size[root] -= size[child];
+            parent[child] = child;
+        }
+    }
+
+    @Override
+    protected void link(int bigRoot, int child){
+        super.link(bigRoot, child);
+        trail[trailSize++] = child;
+    }
+
+    /**
+     * Walks up to the root without touching the path
+     */
+    @Override
+    protected int findSlot(int slot){
+        while (parent[slot] != slot){
+            slot = parent[slot];
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,155 @@
+package game; /**
+ * A fixed size table of search and evaluation results, keyed by the zobrist hash of a PlayHex position.
+ *
+ * Entries live in buckets of two. The first slot of a bucket keeps the deepest result of the current search, the
+ * second slot takes whatever is left over. Results from older searches (see newSearch) are always replaced first.
+ *
+ * The table never locks. Each entry is two longs, the data and the key xor the data. A reader that sees half of a
+ * write gets a key that doesn't match and treats it as a miss, so threads can share one table freely.
+ *
+ * With useSymmetry a position and the same position turned 180 degrees share one entry, and the stored best move
+ * is turned to match whichever way round the probing board is.
+ */
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class TranspositionTable {
+    // bounds of a stored value
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+
+    // layout of the data long
+    private static final int MOVE_SHIFT = 32;       // move+1 in 14 bits, 0 for no move
+    private static final int DEPTH_SHIFT = 46;      // 8 bits
+    private static final int BOUND_SHIFT = 54;      // 2 bits
+    private static final int AGE_SHIFT = 56;        // 7 bits
+    private static final long USED = 1L << 63;      // so that stored data is never 0, which means a miss
+
+    private final AtomicLongArray table;            // table[2i] = key ^ data, table[2i+1] = data
+    private final int bucketMask;
+    private final boolean useSymmetry;
+    private volatile int age;
+
+    /**
+     * @param capacity the number of entries, rounded up to a power of two
+     * @param useSymmetry if a position and its 180 degree turn should share an entry
+     */
+    public TranspositionTable(int capacity, boolean useSymmetry){
+        int entries = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        table = new AtomicLongArray(entries * 2);
+        bucketMask = entries / 2 - 1;
+        this.useSymmetry = useSymmetry;
+    }
+
+    /**
+     * Starts a new search, entries of earlier searches are replaced before entries of this one
+     */
+    public void newSearch(){
+        age = (age + 1) & 0x7F;
+    }
+
+    /**
+     * @param player the player to move
+     * @return the stored data for the position, or 0 if there is none. Read it with value, move, depth and bound.
+     */
+    public long probe(PlayHex game, int player){
+        long data = probe(keyOf(game, player));
+        if (data != 0 && turned(game)){
+            data = withMove(data, rotate(game, move(data)));
+        }
+        return data;
+    }
+
+    /**
+     * @param player the player to move
+     * @param bestMove the best location found for the position, -1 if there is none
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(PlayHex game, int player, float value, int bestMove, int depth, int bound){
+        if (turned(game)){
+            bestMove = rotate(game, bestMove);
+        }
+        store(keyOf(game, player), value, bestMove, depth, bound);
+    }
+
+    /**
+     * @return the stored data for key, or 0 if there is none
+     */
+    public long probe(long key){
+        int slot = (int) (key & bucketMask) * 2;
+        for (int i = slot; i < slot + 2; i++){
+            long data = table.get(2 * i + 1);
+            if (data != 0 && (table.get(2 * i) ^ data) == key){
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    public void store(long key, float value, int bestMove, int depth, int bound){
+        long data = USED
+                | ((long) age << AGE_SHIFT)
+                | ((long) (bound & 0x3) << BOUND_SHIFT)
+                | ((long) Math.min(Math.max(depth, 0), 0xFF) << DEPTH_SHIFT)
+                | ((long) ((bestMove + 1) & 0x3FFF) << MOVE_SHIFT)
+                | (Float.floatToRawIntBits(value) & 0xFFFFFFFFL);
+
+        int slot = (int) (key & bucketMask) * 2;
+        int victim = slot + 1;
+        boolean found = false;
+        for (int i = slot; i < slot + 2; i++){
+            long old = table.get(2 * i + 1);
+            if (old != 0 && (table.get(2 * i) ^ old) == key){
+                if (age(old) == age && depth(old) > depth){
+                    return;             // keep the deeper result for this position
+                }
+                victim = i;
+                found = true;
+                break;
+            }
+        }
+        if (!found){
+            long first = table.get(2 * slot + 1);
+            if (first == 0 || age(first) != age || depth(first) <= depth){
+                victim = slot;          // the first slot only gives way to something at least as deep, or if stale
+            }
+        }
+        table.set(2 * victim + 1, data);
+        table.set(2 * victim, key ^ data);
+    }
+
+    /**
+     * Empties the table
+     */
+    public void clear(){
+        for (int i = 0; i < table.length(); i++){
+            table.set(i, 0);
+        }
+    }
+
+    public static float value(long data){ return Float.intBitsToFloat((int) data); }
+    public static int move(long data){ return (int) ((data >>> MOVE_SHIFT) & 0x3FFF) - 1; }
+    public static int depth(long data){ return (int) ((data >>> DEPTH_SHIFT) & 0xFF); }
+    public static int bound(long data){ return (int) ((data >>> BOUND_SHIFT) & 0x3); }
+    private static int age(long data){ return (int) ((data >>> AGE_SHIFT) & 0x7F); }
+
+    private static long withMove(long data, int move){
+        return (data & ~(0x3FFFL << MOVE_SHIFT)) | ((long) ((move + 1) & 0x3FFF) << MOVE_SHIFT);
+    }
+
+    private long keyOf(PlayHex game, int player){
+        long key = useSymmetry ? game.getCanonicalHash() : game.getHash();
+        return player == -1 ? key ^ game.getGeometry().getTurnKey() : key;
+    }
+
+    private boolean turned(PlayHex game){
+        return useSymmetry && game.isCanonicalRotated();
+    }
+
+    /**
+     * Turns a 0 based PlayHex location 180 degrees
+     */
+    private static int rotate(PlayHex game, int move){
+        return move < 0 ? move : game.getGeometry().rotate(move + 1) - 1;
+    }
+}
@@ -0,0 +1,358 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the virtual connections of both players: two stones that form a bridge, and a stone that reaches
+ * its own border through an edge template. The other player can't cut either of them, an intrusion into the carrier
+ * (the empty cells the connection needs) is answered in the same carrier.
+ *
+ * Chained together, with no empty cell in the carrier of two links, they tell when a player is already joined from
+ * border to border whatever the opponent does, so the game is decided long before the last stone is placed. The
+ * same chains tell which empty cells matter for the player to move: getCandidates.
+ *
+ * The board copy is kept up to date by every setBoard and undo of the board it is attached to, see
+ * PlayHex.trackVirtualConnections. The chains are worked out the first time they are asked for in a position.
+ *
+ * Locations are numbered from 1 to rows*columns like in HexBoard, except for getCandidates.
+ */
+public final class VirtualConnections {
+    private static final int[][] NO_LINKS = new int[0][];
+    private static final ConcurrentHashMap<HexGeometry, Links> cache = new ConcurrentHashMap<>();
+
+    // the edge templates as seen from the top border, {distance from the border, position along it}: the stone
+    // first and then the carrier. Template II is a bridge to the border, template IIIa is the ziggurat, twice since
+    // it isn't symmetric.
+    private static final int[][][] TEMPLATES = {
+            {{1, 0}, {0, 0}, {0, 1}},
+            {{2, 0}, {2, -1}, {1, -1}, {1, 0}, {1, 1}, {0, -1}, {0, 0}, {0, 1}, {0, 2}},
+            {{2, 0}, {2, 1}, {1, 0}, {1, 1}, {1, 2}, {0, 0}, {0, 1}, {0, 2}, {0, 3}},
+    };
+
+    private final HexGeometry geometry;
+    private final int cells;
+    private final int first;                // the node of the first border of the player in the flood
+    private final int second;
+    private final int[] board;              // 0 is empty, 1 is blue and -1 is red
+    private final int[][][] bridges;        // bridges[loc] is {partner, carrier, carrier} for every bridge of loc
+    private final int[][][][] templates;    // templates[player][loc] is {border node, carrier...} for every template
+
+    private final int[] queue;
+    private final int[] visited;            // stamped with the flood that reached the node
+    private final int[] reserved;           // stamped with the flood whose carrier holds the cell
+    private int stamp;
+    private boolean known;                  // false after a move, until the winner is worked out again
+    private int winner;
+
+    public VirtualConnections(HexGeometry geometry){
+        this.geometry = geometry;
+        cells = geometry.getCells();
+        first = 0;
+        second = cells + 1;
+        board = new int[cells + 1];
+        queue = new int[cells + 2];
+        visited = new int[cells + 2];
+        reserved = new int[cells + 1];
+
+        Links links = cache.computeIfAbsent(geometry, Links::new);
+        bridges = links.bridges;
+        templates = links.templates;
+    }
+
+    /**
+     * Called by the board after it placed a stone
+     */
+    void place(int loc, int player){
+        board[loc] = player;
+        known = false;
+    }
+
+    /**
+     * Called by the board after it took a stone back
+     */
+    void remove(int loc){
+        board[loc] = 0;
+        known = false;
+    }
+
+    /**
+     * @return 1 if blue is virtually joined from border to border, -1 if red is, 0 if neither is known to be. The
+     * player it returns wins whoever is to move.
+     */
+    public int getWinner(){
+        if (!known){
+            winner = connects(1) ? 1 : connects(-1) ? -1 : 0;
+            known = true;
+        }
+        return winner;
+    }
+
+    /**
+     * Narrows down the moves worth looking at for the player to move. If one move joins the player up it is the
+     * only candidate. Otherwise a move of the opponent that would join the opponent up has to be stopped, by
+     * taking that cell or a cell of the carrier it would use, so the candidates are the cells that stop every
+     * such move. When nothing stops all of them, or the game is already decided, every empty cell is returned,
+     * they all lose or win alike.
+     * @param out gets the 0 based locations, it needs room for every empty cell
+     * @return the number of candidates
+     */
+    public int getCandidates(int player, int[] out){
+        int count = 0;
+        boolean[] keep = null;
+        if (getWinner() == 0){
+            for (int loc = 1; loc <= cells; loc++){
+                if (board[loc] != 0){
+                    continue;
+                }
+                board[loc] = player;
+                boolean wins = connects(player);
+                board[loc] = -player;
+                boolean threat = !wins && connects(-player);
+                board[loc] = 0;
+                if (wins){
+                    out[0] = loc - 1;
+                    return 1;
+                }
+                if (threat){
+                    // connects left the carrier of the winning chain in reserved
+                    if (keep == null){
+                        keep = new boolean[cells + 1];
+                        for (int cell = 1; cell <= cells; cell++){
+                            keep[cell] = board[cell] == 0;
+                        }
+                    }
+                    boolean any = false;
+                    for (int cell = 1; cell <= cells; cell++){
+                        keep[cell] &= cell == loc || reserved[cell] == stamp;
+                        any |= keep[cell];
+                    }
+                    if (!any){
+                        keep = null;        // lost anyway
+                        break;
+                    }
+                }
+            }
+        }
+        for (int loc = 1; loc <= cells; loc++){
+            if (board[loc] == 0 && (keep == null || keep[loc])){
+                out[count++] = loc - 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true if a chain of stones, bridges and edge templates joins the borders of the player, trying from
+     * both ends since a chain is built greedily. The carrier of the chain found is left stamped in reserved.
+     */
+    private boolean connects(int player){
+        return flood(player, first, second) || flood(player, second, first);
+    }
+
+    /**
+     * A breadth first search from one border. Every link it follows to a node it hasn't reached yet claims the
+     * carrier of the link, and a link whose carrier holds a claimed or taken cell isn't followed, so the carriers
+     * of the links it follows never overlap and the opponent can't break two of them with one stone.
+     */
+    private boolean flood(int player, int from, int to){
+        int mark = ++stamp;
+        int[][][] playerTemplates = templates[player == 1 ? 0 : 1];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = from;
+        visited[from] = mark;
+        while (head < tail){
+            int node = queue[head++];
+            if (node == to){
+                return true;
+            }
+            if (node == first || node == second){
+                int border = borderFlag(player, node);
+                for (int loc = 1; loc <= cells; loc++){
+                    if (board[loc] == player && visited[loc] != mark && geometry.isOnBorder(loc, border)){
+                        visited[loc] = mark;
+                        queue[tail++] = loc;
+                    }
+                }
+                for (int loc = 1; loc <= cells; loc++){
+                    if (board[loc] == player && visited[loc] != mark){
+                        tail = follow(playerTemplates[loc], node, loc, mark, tail);
+                    }
+                }
+                continue;
+            }
+            for (int direction = 0; direction < 6; direction++){
+                int next = geometry.neighbor(node, direction);
+                if (next != 0 && board[next] == player && visited[next] != mark){
+                    visited[next] = mark;
+                    queue[tail++] = next;
+                }
+            }
+            if (visited[to] != mark && geometry.isOnBorder(node, borderFlag(player, to))){
+                visited[to] = mark;
+                queue[tail++] = to;
+            }
+            for (int[] bridge : bridges[node]){
+                int partner = bridge[0];
+                if (board[partner] == player && visited[partner] != mark && claim(bridge, mark)){
+                    visited[partner] = mark;
+                    queue[tail++] = partner;
+                }
+            }
+            if (visited[to] != mark){
+                tail = follow(playerTemplates[node], to, to, mark, tail);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Follows the first template of links that leads to border and whose carrier is free, and queues target
+     * @return the new tail of the queue
+     */
+    private int follow(int[][] links, int border, int target, int mark, int tail){
+        for (int[] link : links){
+            if (link[0] == border && claim(link, mark)){
+                visited[target] = mark;
+                queue[tail++] = target;
+                return tail;
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Claims the carrier of a link, its cells from index 1 on, if every one of them is empty and unclaimed
+     */
+    private boolean claim(int[] link, int mark){
+        for (int i = 1; i < link.length; i++){
+            int cell = link[i];
+            if (board[cell] != 0 || reserved[cell] == mark){
+                return false;
+            }
+        }
+        for (int i = 1; i < link.length; i++){
+            reserved[link[i]] = mark;
+        }
+        return true;
+    }
+
+    private int borderFlag(int player, int node){
+        if (player == 1){
+            return node == first ? HexGeometry.LEFT_BORDER : HexGeometry.RIGHT_BORDER;
+        }
+        return node == first ? HexGeometry.TOP_BORDER : HexGeometry.LOW_BORDER;
+    }
+
+    /**
+     * The bridges and edge templates of one board size, they only depend on the geometry so every VirtualConnections
+     * of that size shares them
+     */
+    private static final class Links {
+        private final HexGeometry geometry;
+        private final int cells;
+        private final int[][][] bridges;
+        private final int[][][][] templates;
+
+        private Links(HexGeometry geometry){
+            this.geometry = geometry;
+            cells = geometry.getCells();
+            bridges = new int[cells + 1][][];
+            for (int loc = 1; loc <= cells; loc++){
+                bridges[loc] = findBridges(loc);
+            }
+            templates = new int[2][][][];
+            templates[0] = findTemplates(1);
+            templates[1] = findTemplates(-1);
+        }
+
+        /**
+         * @return {partner, carrier, carrier} for every cell two steps away from loc that shares exactly two
+         * neighbors with it
+         */
+        private int[][] findBridges(int loc){
+            int[][] found = new int[6][];
+            int count = 0;
+            for (int i = 0; i < 6; i++){
+                for (int j = i + 1; j < 6; j++){
+                    int a = geometry.neighbor(loc, i);
+                    int b = geometry.neighbor(loc, j);
+                    if (a == 0 || b == 0 || !isNeighbor(a, b)){
+                        continue;
+                    }
+                    // the other cell next to both a and b, on the far side from loc
+                    for (int direction = 0; direction < 6; direction++){
+                        int partner = geometry.neighbor(a, direction);
+                        if (partner != 0 && partner != loc && isNeighbor(partner, b)){
+                            found[count++] = new int[]{partner, a, b};
+                        }
+                    }
+                }
+            }
+            return count == 0 ? NO_LINKS : Arrays.copyOf(found, count);
+        }
+
+        /**
+         * The neighbor directions are not in turning order, so this asks the geometry which cells touch
+         */
+        private boolean isNeighbor(int a, int b){
+            for (int direction = 0; direction < 6; direction++){
+                if (geometry.neighbor(a, direction) == b){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Turns the templates of the top border onto both borders of the player, and keeps the ones that fit the board
+         */
+        private int[][][] findTemplates(int player){
+            int rows = geometry.getRows();
+            int columns = geometry.getColumns();
+            List<List<int[]>> found = new ArrayList<>();
+            for (int loc = 0; loc <= cells; loc++){
+                found.add(new ArrayList<>());
+            }
+            for (int border = 0; border < 2; border++){
+                for (int[][] template : TEMPLATES){
+                    for (int along = 0; along < Math.max(rows, columns); along++){
+                        int[] link = new int[template.length];
+                        link[0] = border == 0 ? 0 : cells + 1;     // the border nodes of the flood
+                        int stone = 0;
+                        for (int i = 0; i < template.length && link[0] >= 0; i++){
+                            int distance = template[i][0];
+                            int position = along + template[i][1];
+                            // red's top border is the template as it is, blue's left border is it mirrored along the
+                            // diagonal, and the second borders are the first ones turned 180 degrees
+                            int row = player == -1 ? distance : position;
+                            int column = player == -1 ? position : distance;
+                            if (border == 1){
+                                row = rows - 1 - row;
+                                column = columns - 1 - column;
+                            }
+                            if (row < 0 || row >= rows || column < 0 || column >= columns){
+                                link[0] = -1;
+                            } else if (i == 0){
+                                stone = geometry.location(row, column);
+                            } else {
+                                link[i] = geometry.location(row, column);
+                            }
+                        }
+                        if (link[0] >= 0){
+                            found.get(stone).add(link);
+                        }
+                    }
+                }
+            }
+            int[][][] byStone = new int[cells + 1][][];
+            for (int loc = 0; loc <= cells; loc++){
+                byStone[loc] = found.get(loc).isEmpty() ? NO_LINKS : found.get(loc).toArray(new int[0][]);
+            }
+            return byStone;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package search;
+
+import game.PlayHex;
+
+/**
+ * Gives a value to the leaf positions of a search. Many search threads call it at once, each with its own game,
+ * so implementations have to be thread safe.
+ */
+public interface Evaluator {
+
+	/**
+	 * @param game the position to evaluate, it has to be left the way it was found
+	 * @param player the player to move, 1 for blue and -1 for red
+	 * @return how good the position is for player, from -1 for a certain loss to 1 for a certain win
+	 */
+	float evaluate(PlayHex game, int player);
+}
@@ -0,0 +1,21 @@
+package search;
+
+import game.FillPlayout;
+import game.PlayHex;
+
+/**
+ * A rollout that fills the rest of the board at random in one go, see FillPlayout. It runs on the calling search
+ * thread, so the FillPlayout can be made with a single thread of its own.
+ */
+public class FillRollout implements Evaluator {
+	private final FillPlayout playout;
+
+	public FillRollout(FillPlayout playout) {
+		this.playout = playout;
+	}
+
+	@Override
+	public float evaluate(PlayHex game, int player) {
+		return playout.playout(game, player) == player ? 1 : -1;
+	}
+}
@@ -0,0 +1,235 @@
+package search;
+
+import game.PlayHex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tree parallel Monte Carlo Tree Search on PlayHex.
+ *
+ * Every thread walks the one shared tree with its own copy of the game, playing the moves on the way down and
+ * undoing them on the way back, so no board is ever cloned during a search. A thread puts a virtual loss on every
+ * node it passes, which steers the other threads to different parts of the tree until the playout is backed up.
+ *
+ * Leaves are valued by an Evaluator, a RandomRollout by default. Moves are picked with UCT.
+ */
+public class MonteCarloTreeSearch implements AutoCloseable {
+	private static final Logger logger = LoggerFactory.getLogger(MonteCarloTreeSearch.class);
+
+	private final Evaluator evaluator;
+	private final int threads;
+	private final float exploration;		// the UCT exploration constant
+	private final int virtualLoss;			// how many lost visits a thread in flight counts as
+	private final ExecutorService pool;
+
+	public MonteCarloTreeSearch(Evaluator evaluator, int threads) {
+		this(evaluator, threads, 1.0f, 3);
+	}
+
+	/**
+	 * @param evaluator values the leaves, rollouts or a network
+	 * @param threads the number of threads walking the tree
+	 * @param exploration the UCT exploration constant, higher tries more moves
+	 * @param virtualLoss how many lost visits a thread counts as while it is in a node
+	 */
+	public MonteCarloTreeSearch(Evaluator evaluator, int threads, float exploration, int virtualLoss) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Need at least one search thread");
+		}
+		this.evaluator = evaluator;
+		this.threads = threads;
+		this.exploration = exploration;
+		this.virtualLoss = virtualLoss;
+		AtomicInteger count = new AtomicInteger();
+		this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "mcts-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Searches the position until either budget runs out
+	 * @param game the position to search, it is not changed
+	 * @param player the player to move
+	 * @param maxPlayouts the most playouts to run, 0 for no limit
+	 * @param maxMillis the most time to take, 0 for no limit
+	 */
+	public SearchResult search(PlayHex game, int player, int maxPlayouts, long maxMillis) {
+		if (maxPlayouts <= 0 && maxMillis <= 0) {
+			throw new IllegalArgumentException("A search needs a playout or a time budget");
+		}
+		long start = System.currentTimeMillis();
+		long deadline = maxMillis > 0 ? System.nanoTime() + maxMillis * 1_000_000 : Long.MAX_VALUE;
+		int playoutBudget = maxPlayouts > 0 ? maxPlayouts : Integer.MAX_VALUE;
+		AtomicInteger playouts = new AtomicInteger();
+		Node root = new Node(-1);
+
+		List<Future<?>> workers = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			PlayHex copy = game.copy();
+			workers.add(pool.submit(() -> {
+				Node[] path = new Node[copy.maxMoves + 1];
+				while (System.nanoTime() < deadline && playouts.getAndIncrement() < playoutBudget) {
+					playout(root, copy, player, path);
+				}
+			}));
+		}
+		for (Future<?> worker : workers) {
+			try {
+				worker.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Search was interrupted", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Search thread failed", e.getCause());
+			}
+		}
+		return toResult(root, game.maxMoves, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Walks down from the root to a leaf, values it and backs the value up the path
+	 */
+	private void playout(Node root, PlayHex game, int player, Node[] path) {
+		Node node = root;
+		int turn = player;			// the player to move at node
+		int depth = 0;
+		path[0] = root;
+		double value;				// the value of node for the player who moved into it
+
+		while (true) {
+			if (node.winner != 0) {
+				value = 1;			// whoever moved into a won node won
+				break;
+			}
+			Node[] children = node.getChildren();
+			if (children == null) {
+				if (node != root && node.getVisits() == 0) {
+					value = -evaluator.evaluate(game, turn);
+					break;
+				}
+				children = node.expand(newChildren(game, turn));
+			}
+			if (children.length == 0) {
+				value = 0;			// only a full root board gets here, and that game is already over
+				break;
+			}
+			Node child = select(node, children);
+			child.addVirtualLoss();
+			if (game.setMove(child.move, turn) != 0) {
+				child.winner = turn;
+			} else if (game.getVirtualConnections() != null && game.getVirtualConnections().getWinner() == turn) {
+				child.winner = turn;		// the opponent can't cut the chain any more
+			}
+			path[++depth] = child;
+			node = child;
+			turn = -turn;
+		}
+
+		for (int i = depth; i >= 0; i--) {
+			path[i].update(value, i > 0);
+			value = -value;
+		}
+		for (int i = 0; i < depth; i++) {
+			game.undoMove();
+		}
+	}
+
+	/**
+	 * @return the child with the best UCT score, counting the virtual losses of the other threads
+	 */
+	private Node select(Node parent, Node[] children) {
+		double logParent = Math.log(parent.getVisits() + 1);
+		Node best = null;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (Node child : children) {
+			int n = child.getVisits();
+			double score;
+			if (n == 0) {
+				score = 1e9 + child.getValue(virtualLoss);		// unvisited first, the ones no thread is in before the rest
+			} else {
+				score = child.getValue(virtualLoss) + exploration * Math.sqrt(logParent / n);
+			}
+			if (score > bestScore) {
+				bestScore = score;
+				best = child;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return a child for every empty location, in random order so that ties are broken fairly. If the game tracks
+	 * its virtual connections, only for the locations that don't lose to them.
+	 */
+	private static Node[] newChildren(PlayHex game, int player) {
+		Node[] children;
+		if (game.getVirtualConnections() != null) {
+			int[] candidates = new int[game.maxMoves - game.getMoveCount()];
+			int count = game.getVirtualConnections().getCandidates(player, candidates);
+			children = new Node[count];
+			for (int i = 0; i < count; i++) {
+				children[i] = new Node(candidates[i]);
+			}
+		} else {
+			children = new Node[game.maxMoves - game.getMoveCount()];
+			int count = 0;
+			for (int location = 0; location < game.maxMoves; location++) {
+				if (game.getCell(location) == 0) {
+					children[count++] = new Node(location);
+				}
+			}
+		}
+		ThreadLocalRandom rnd = ThreadLocalRandom.current();
+		for (int i = children.length - 1; i > 0; i--) {
+			int j = rnd.nextInt(i + 1);
+			Node tmp = children[i];
+			children[i] = children[j];
+			children[j] = tmp;
+		}
+		return children;
+	}
+
+	private static SearchResult toResult(Node root, int cells, long millis) {
+		int[] visits = new int[cells];
+		Node best = null;
+		Node[] children = root.getChildren();
+		if (children != null) {
+			for (Node child : children) {
+				visits[child.move] = child.getVisits();
+				if (best == null || child.getVisits() > best.getVisits()) {
+					best = child;
+				}
+			}
+		}
+		int bestMove = best == null ? -1 : best.move;
+		float value = best == null ? 0 : (float) best.getValue();
+		return new SearchResult(bestMove, value, visits, root.getVisits(), millis);
+	}
+
+	@Override
+	public void close() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Searches an empty 8x8 board with every core, to see how many playouts per second this machine gets.
+	 */
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		try (MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(new RandomRollout(), threads)) {
+			SearchResult result = mcts.search(new PlayHex(8, 8), 1, 0, 2000);
+			logger.info("{} threads: {}, {} playouts per second", threads, result, result.getPlayoutsPerSecond());
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package search;
+
+import ai.djl.Model;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.nn.Block;
+import ai.djl.training.ParameterStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gathers positions from any number of threads into one batch, and runs the network on the whole batch at once.
+ *
+ * A forward pass of a small network costs about the same for one position as for hundreds, most of it is the call
+ * into the engine. So rather than every search thread calling the network on its own, they submit here and wait on
+ * a future. One thread takes the requests off the queue and flushes a batch when it is full or when the oldest
+ * request has waited maxWaitMicros.
+ *
+ * The inputs are the same as the ones TrainHexGame.getBlock() is trained on: the board (N, rows*columns),
+ * the turn (N) and the action (N). A network that doesn't use the action just ignores it.
+ */
+public class NeuralEvaluationQueue implements AutoCloseable {
+	private static final Logger logger = LoggerFactory.getLogger(NeuralEvaluationQueue.class);
+
+	private final Block block;
+	private final NDManager manager;
+	private final int cells;
+	private final int maxBatch;
+	private final long maxWaitNanos;
+	private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+	private final Thread worker;
+	private volatile boolean running = true;
+
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong positions = new AtomicLong();
+
+	/**
+	 * @param model an initialized or loaded model, it is only read from
+	 * @param cells the number of cells of the board, rows*columns
+	 * @param maxBatch the most positions to put in one forward pass
+	 * @param maxWaitMicros how long the first position of a batch waits for others to join it
+	 */
+	public NeuralEvaluationQueue(Model model, int cells, int maxBatch, long maxWaitMicros) {
+		this.block = model.getBlock();
+		this.manager = model.getNDManager();
+		this.cells = cells;
+		this.maxBatch = maxBatch;
+		this.maxWaitNanos = maxWaitMicros * 1000;
+		worker = new Thread(this::run, "neural-evaluation");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * @param board the board list, as given by PlayHex.getBoardList
+	 * @param turn the turn, like in the observation of HexGame
+	 * @param action the location to evaluate, for networks that take one
+	 * @return the future output row of the network for this position
+	 */
+	public CompletableFuture<float[]> submit(int[] board, int turn, int action) {
+		if (board.length != cells) {
+			throw new IllegalArgumentException("Expected a board of " + cells + " cells, not " + board.length);
+		}
+		Request request = new Request(board, turn, action);
+		if (!running) {
+			request.result.completeExceptionally(new IllegalStateException("The evaluation queue is closed"));
+			return request.result;
+		}
+		queue.add(request);
+		if (!running) {
+			// close may have drained the queue between the check and the add, the request would wait forever
+			failPending(new IllegalStateException("The evaluation queue is closed"));
+		}
+		return request.result;
+	}
+
+	/**
+	 * Submits the position and waits for its output row
+	 */
+	public float[] evaluate(int[] board, int turn, int action) {
+		return submit(board, turn, action).join();
+	}
+
+	/**
+	 * @return the mean number of positions per forward pass so far
+	 */
+	public float getAverageBatchSize() {
+		long count = batches.get();
+		return count == 0 ? 0 : positions.get() / (float) count;
+	}
+
+	private void run() {
+		List<Request> batch = new ArrayList<>(maxBatch);
+		while (running) {
+			try {
+				Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				long deadline = System.nanoTime() + maxWaitNanos;
+				while (batch.size() < maxBatch) {
+					queue.drainTo(batch, maxBatch - batch.size());
+					long wait = deadline - System.nanoTime();
+					if (batch.size() >= maxBatch || wait <= 0) {
+						break;
+					}
+					Request next = queue.poll(wait, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+				flush(batch);
+			} catch (InterruptedException e) {
+				// the requests already taken off the queue are in no queue for failPending to find
+				for (Request request : batch) {
+					request.result.completeExceptionally(new IllegalStateException("The evaluation queue is closed"));
+				}
+				break;
+			} finally {
+				batch.clear();
+			}
+		}
+		failPending(new IllegalStateException("The evaluation queue is closed"));
+	}
+
+	/**
+	 * Runs one forward pass over the batch and hands every request its row of the output
+	 */
+	private void flush(List<Request> batch) {
+		int n = batch.size();
+		int[] boards = new int[n * cells];
+		int[] turns = new int[n];
+		int[] actions = new int[n];
+		for (int i = 0; i < n; i++) {
+			Request request = batch.get(i);
+			System.arraycopy(request.board, 0, boards, i * cells, cells);
+			turns[i] = request.turn;
+			actions[i] = request.action;
+		}
+
+		try (NDManager batchManager = manager.newSubManager()) {
+			NDList inputs = new NDList(
+					batchManager.create(boards, new Shape(n, cells)),
+					batchManager.create(turns),
+					batchManager.create(actions));
+			NDList output = block.forward(new ParameterStore(batchManager, false), inputs, false);
+			float[] values = output.singletonOrThrow().toFloatArray();
+			int width = values.length / n;
+			for (int i = 0; i < n; i++) {
+				batch.get(i).result.complete(Arrays.copyOfRange(values, i * width, (i + 1) * width));
+			}
+			batches.incrementAndGet();
+			positions.addAndGet(n);
+		} catch (RuntimeException e) {
+			logger.error("Forward pass of {} positions failed", n, e);
+			for (Request request : batch) {
+				request.result.completeExceptionally(e);
+			}
+		}
+	}
+
+	private void failPending(Exception e) {
+		Request request;
+		while ((request = queue.poll()) != null) {
+			request.result.completeExceptionally(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		running = false;
+		worker.interrupt();
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		failPending(new IllegalStateException("The evaluation queue is closed"));
+	}
+
+	private static final class Request {
+		private final int[] board;
+		private final int turn;
+		private final int action;
+		private final CompletableFuture<float[]> result = new CompletableFuture<>();
+
+		private Request(int[] board, int turn, int action) {
+			this.board = board;
+			this.turn = turn;
+			this.action = action;
+		}
+	}
+}
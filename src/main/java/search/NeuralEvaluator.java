@@ -0,0 +1,41 @@
+package search;
+
+import game.PlayHex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Values a leaf with a Q network through a NeuralEvaluationQueue, so that leaves of every search thread share
+ * forward passes.
+ *
+ * The network takes a board, a turn and an action like TrainHexGame.getBlock(), and gives the Q value of playing the
+ * action. Its rewards follow HexGame: 1 when blue wins and -1 when red wins. All legal actions of the leaf are
+ * submitted at once, and the leaf is worth the best of them for the player to move.
+ */
+public class NeuralEvaluator implements Evaluator {
+	private final NeuralEvaluationQueue queue;
+
+	public NeuralEvaluator(NeuralEvaluationQueue queue) {
+		this.queue = queue;
+	}
+
+	@Override
+	public float evaluate(PlayHex game, int player) {
+		int[] board = game.getBoardList();
+		int turn = -player;			// HexGame observations hold the player who moved last
+		List<CompletableFuture<float[]>> results = new ArrayList<>(board.length - game.getMoveCount());
+		for (int location = 0; location < board.length; location++) {
+			if (board[location] == 0) {
+				results.add(queue.submit(board, turn, location));
+			}
+		}
+
+		float best = -1;
+		for (CompletableFuture<float[]> result : results) {
+			best = Math.max(best, player * result.join()[0]);
+		}
+		return Math.max(-1, Math.min(1, best));
+	}
+}
@@ -0,0 +1,91 @@
+package search;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A node of the search tree, reached by playing move. Its statistics are from the view of the player who made move.
+ *
+ * Many threads walk the tree at once without locking. The counters are updated with atomic adds, the value sum is
+ * kept in fixed point so that it can be added atomically too, and children are published with a single compare and
+ * set. Virtual losses are counted apart from real visits so that a finished playout can take back exactly its own.
+ */
+final class Node {
+	private static final double VALUE_SCALE = 1 << 20;		// fixed point scale of valueSum
+
+	private static final AtomicIntegerFieldUpdater<Node> VISITS =
+			AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+	private static final AtomicIntegerFieldUpdater<Node> VIRTUAL_LOSSES =
+			AtomicIntegerFieldUpdater.newUpdater(Node.class, "virtualLosses");
+	private static final AtomicLongFieldUpdater<Node> VALUE_SUM =
+			AtomicLongFieldUpdater.newUpdater(Node.class, "valueSum");
+	private static final AtomicReferenceFieldUpdater<Node, Node[]> CHILDREN =
+			AtomicReferenceFieldUpdater.newUpdater(Node.class, Node[].class, "children");
+
+	final int move;					// the location played to reach this node, -1 for the root
+
+	private volatile int visits;
+	private volatile int virtualLosses;
+	private volatile long valueSum;
+	private volatile Node[] children;
+	volatile int winner;			// set when move wins the game, so this node never has to be expanded
+
+	Node(int move) {
+		this.move = move;
+	}
+
+	int getVisits() {
+		return visits;
+	}
+
+	/**
+	 * @return the mean value of the node, counting every virtual loss as a lost visit
+	 */
+	double getValue(int virtualLoss) {
+		int pending = virtualLosses * virtualLoss;
+		int n = visits + pending;
+		if (n == 0) {
+			return 0;
+		}
+		return (valueSum / VALUE_SCALE - pending) / n;
+	}
+
+	/**
+	 * @return the mean value of the real visits
+	 */
+	double getValue() {
+		int n = visits;
+		return n == 0 ? 0 : valueSum / VALUE_SCALE / n;
+	}
+
+	void addVirtualLoss() {
+		VIRTUAL_LOSSES.incrementAndGet(this);
+	}
+
+	/**
+	 * Records a finished playout through this node and takes back its virtual loss
+	 */
+	void update(double value, boolean hadVirtualLoss) {
+		VALUE_SUM.addAndGet(this, Math.round(value * VALUE_SCALE));
+		VISITS.incrementAndGet(this);
+		if (hadVirtualLoss) {
+			VIRTUAL_LOSSES.decrementAndGet(this);
+		}
+	}
+
+	Node[] getChildren() {
+		return children;
+	}
+
+	/**
+	 * Publishes the children, if another thread got there first its children are kept
+	 * @return the children of this node
+	 */
+	Node[] expand(Node[] newChildren) {
+		if (CHILDREN.compareAndSet(this, null, newChildren)) {
+			return newChildren;
+		}
+		return children;
+	}
+}
@@ -0,0 +1,46 @@
+package search;
+
+import game.PlayHex;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Plays random moves for both players until somebody wins, and then takes them all back.
+ */
+public class RandomRollout implements Evaluator {
+
+	@Override
+	public float evaluate(PlayHex game, int player) {
+		int[] empty = emptyCells(game);
+		ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+		int moves = 0;
+		int winner = 0;
+		int turn = player;
+		while (winner == 0 && moves < empty.length) {
+			int pick = moves + rnd.nextInt(empty.length - moves);		// a shuffle that stops when the game does
+			int location = empty[pick];
+			empty[pick] = empty[moves];
+			empty[moves] = location;
+
+			winner = game.setMove(location, turn);
+			moves++;
+			turn = -turn;
+		}
+		for (int i = 0; i < moves; i++) {
+			game.undoMove();
+		}
+		return winner == player ? 1 : -1;
+	}
+
+	private static int[] emptyCells(PlayHex game) {
+		int[] empty = new int[game.maxMoves - game.getMoveCount()];
+		int count = 0;
+		for (int location = 0; location < game.maxMoves; location++) {
+			if (game.getCell(location) == 0) {
+				empty[count++] = location;
+			}
+		}
+		return empty;
+	}
+}
@@ -0,0 +1,62 @@
+package search;
+
+/**
+ * What a search found out about the root position.
+ */
+public class SearchResult {
+	private final int bestMove;
+	private final float value;
+	private final int[] visits;
+	private final int playouts;
+	private final long millis;
+
+	SearchResult(int bestMove, float value, int[] visits, int playouts, long millis) {
+		this.bestMove = bestMove;
+		this.value = value;
+		this.visits = visits;
+		this.playouts = playouts;
+		this.millis = millis;
+	}
+
+	/**
+	 * @return the most visited location, or -1 if the game was already over
+	 */
+	public int getBestMove() { return bestMove; }
+
+	/**
+	 * @return the expected outcome for the player to move, from -1 to 1
+	 */
+	public float getValue() { return value; }
+
+	/**
+	 * @return the number of visits of every location, 0 for occupied locations
+	 */
+	public int[] getVisits() { return visits.clone(); }
+
+	/**
+	 * @return the share of the root's visits every location got, this makes a good training target for a policy
+	 */
+	public float[] getPolicy() {
+		float[] policy = new float[visits.length];
+		long total = 0;
+		for (int v : visits) {
+			total += v;
+		}
+		for (int i = 0; i < visits.length && total > 0; i++) {
+			policy[i] = visits[i] / (float) total;
+		}
+		return policy;
+	}
+
+	public int getPlayouts() { return playouts; }
+	public long getMillis() { return millis; }
+
+	public float getPlayoutsPerSecond() {
+		return millis == 0 ? 0 : playouts * 1000f / millis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("best move %d, value %.3f, %d playouts in %d ms", bestMove, value, playouts, millis);
+	}
+}
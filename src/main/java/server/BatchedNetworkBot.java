@@ -0,0 +1,50 @@
+package server;
+
+import agent.MaskedQAgent;
+import arena.Bot;
+import game.PlayHex;
+import search.NeuralEvaluationQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Plays the network greedily like NetworkBot, but through a NeuralEvaluationQueue that every session of the server
+ * shares. The positions of all the sessions asking for a move at the same time go through the network in one forward
+ * pass, and one copy of the parameters serves them all.
+ *
+ * The one action network has a request per empty cell, the all actions network one request per move.
+ */
+public class BatchedNetworkBot implements Bot {
+	private final NeuralEvaluationQueue queue;
+	private final boolean allActions;
+
+	public BatchedNetworkBot(NeuralEvaluationQueue queue, boolean allActions) {
+		this.queue = queue;
+		this.allActions = allActions;
+	}
+
+	@Override
+	public int chooseMove(PlayHex game, int player) {
+		int[] board = game.getBoardList();
+		int turn = -player;			// the networks are given the player who moved last
+		if (allActions) {
+			return MaskedQAgent.bestEmpty(queue.evaluate(board, turn, 0), board);
+		}
+		List<CompletableFuture<float[]>> results = new ArrayList<>(board.length - game.getMoveCount());
+		for (int location = 0; location < board.length; location++) {
+			if (board[location] == 0) {
+				results.add(queue.submit(board, turn, location));
+			}
+		}
+		float[] q = new float[board.length];
+		int next = 0;		// the results are in the order of the empty cells
+		for (int location = 0; location < board.length; location++) {
+			if (board[location] == 0) {
+				q[location] = results.get(next++).join()[0];
+			}
+		}
+		return MaskedQAgent.bestEmpty(q, board);
+	}
+}
@@ -0,0 +1,119 @@
+package server;
+
+import arena.Bot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Hosts any number of HtpSessions at once, one per TCP connection on the loopback interface, or a single one on
+ * standard input and output. Every session runs on a thread of its own and gets its bots from the same factory, so
+ * the sessions can share one model through a BatchedNetworkBot.
+ */
+public class HtpServer implements AutoCloseable {
+	private static final Logger logger = LoggerFactory.getLogger(HtpServer.class);
+
+	private final BiFunction<Integer, Integer, Bot> bots;
+	private final ExecutorService sessions;
+	private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger count = new AtomicInteger();
+	private ServerSocket serverSocket;
+
+	/**
+	 * @param bots makes the bot of a session for a board of the given rows and columns
+	 */
+	public HtpServer(BiFunction<Integer, Integer, Bot> bots) {
+		this.bots = bots;
+		sessions = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "htp-session-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Starts accepting connections on a background thread
+	 * @param port the port to listen on, 0 for any free one
+	 * @return the port listened on
+	 */
+	public synchronized int listen(int port) throws IOException {
+		serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		ServerSocket listening = serverSocket;
+		sessions.execute(() -> accept(listening));
+		logger.info("Listening for HTP controllers on port {}", listening.getLocalPort());
+		return listening.getLocalPort();
+	}
+
+	private void accept(ServerSocket listening) {
+		while (!listening.isClosed()) {
+			try {
+				Socket socket = listening.accept();
+				socket.setTcpNoDelay(true);
+				connections.add(socket);
+				sessions.execute(() -> {
+					try (Socket connection = socket) {
+						serve(connection.getInputStream(), connection.getOutputStream());
+					} catch (IOException e) {
+						logger.debug("Connection {} ended: {}", socket.getRemoteSocketAddress(), e.getMessage());
+					} finally {
+						connections.remove(socket);
+					}
+				});
+			} catch (SocketException e) {
+				return;				// closed
+			} catch (IOException e) {
+				logger.error("Could not accept a connection", e);
+			}
+		}
+	}
+
+	/**
+	 * Runs one session on the calling thread until the controller quits or closes the stream
+	 */
+	public void serve(InputStream in, OutputStream out) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+		try (HtpSession session = new HtpSession(bots)) {
+			session.serve(reader, writer);
+		}
+	}
+
+	/**
+	 * @return the number of controllers connected right now
+	 */
+	public int getConnections() {
+		return connections.size();
+	}
+
+	/**
+	 * Stops listening and drops every connection
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (serverSocket != null) {
+			serverSocket.close();
+		}
+		for (Socket socket : connections) {
+			socket.close();
+		}
+		sessions.shutdownNow();
+	}
+}
@@ -0,0 +1,262 @@
+package server;
+
+import arena.Bot;
+import game.PlayHex;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.BiFunction;
+
+/**
+ * One game driven by a controller over the Hex Text Protocol, the GTP dialect HexGUI and the Hex tournament tools
+ * speak. A command is a line with an optional number in front, the answer starts with = or ? followed by the same
+ * number and ends with an empty line.
+ *
+ * Cells are a column letter and a row number, a1 is the top left corner. Black is this repo's blue: it moves first
+ * and joins the left and right edges, white is red and joins the top and bottom. Nothing checks whose turn it is,
+ * controllers often set up positions with several moves of one color.
+ */
+public class HtpSession implements AutoCloseable {
+	static final String[] COMMANDS = {"boardsize", "clear_board", "genmove", "known_command", "list_commands", "name",
+			"play", "protocol_version", "quit", "showboard", "undo", "version"};
+	private static final int DEFAULT_SIZE = 8;
+	private static final int MAX_SIZE = 26;
+
+	private final BiFunction<Integer, Integer, Bot> bots;
+	private PlayHex game;
+	private Bot bot;
+	private int rows;
+	private int columns;
+	private int winner;
+	private boolean quit;
+
+	/**
+	 * @param bots makes the bot genmove asks for a board of the given rows and columns
+	 */
+	public HtpSession(BiFunction<Integer, Integer, Bot> bots) {
+		this.bots = bots;
+		newGame(DEFAULT_SIZE, DEFAULT_SIZE);
+	}
+
+	/**
+	 * Answers commands until the controller says quit or closes the stream
+	 */
+	public void serve(BufferedReader in, Writer out) throws IOException {
+		String line;
+		while (!quit && (line = in.readLine()) != null) {
+			String response = execute(line);
+			if (response != null) {
+				out.write(response);
+				out.flush();
+			}
+		}
+	}
+
+	/**
+	 * @param line one line of the controller
+	 * @return the whole answer to it, or null for an empty line or a comment
+	 */
+	public String execute(String line) {
+		int comment = line.indexOf('#');
+		String[] words = (comment < 0 ? line : line.substring(0, comment)).trim().split("\\s+");
+		if (words[0].isEmpty()) {
+			return null;
+		}
+		String id = "";
+		int first = 0;
+		if (Character.isDigit(words[0].charAt(0))) {
+			id = words[0];
+			first = 1;
+		}
+		if (first >= words.length) {
+			return "?" + id + " no command\n\n";
+		}
+		String command = words[first].toLowerCase(Locale.ROOT);
+		String[] arguments = new String[words.length - first - 1];
+		System.arraycopy(words, first + 1, arguments, 0, arguments.length);
+		try {
+			return "=" + id + " " + run(command, arguments) + "\n\n";
+		} catch (RuntimeException e) {
+			// a failed genmove answers with an error like a bad command, the session goes on
+			String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+			return "?" + id + " " + message.replaceAll("\\s+", " ") + "\n\n";
+		}
+	}
+
+	private String run(String command, String[] arguments) {
+		switch (command) {
+			case "protocol_version":
+				return "2";
+			case "name":
+				return "HexGame-DeepNeuralNet";
+			case "version":
+				return "1.0";
+			case "known_command":
+				expect(arguments, 1);
+				return Boolean.toString(Arrays.asList(COMMANDS).contains(arguments[0]));
+			case "list_commands":
+				return String.join("\n", COMMANDS);
+			case "quit":
+				quit = true;
+				return "";
+			case "boardsize":
+				return boardsize(arguments);
+			case "clear_board":
+				newGame(rows, columns);
+				return "";
+			case "play":
+				expect(arguments, 2);
+				play(color(arguments[0]), cell(arguments[1]));
+				return "";
+			case "genmove":
+				expect(arguments, 1);
+				return genmove(color(arguments[0]));
+			case "undo":
+				if (game.getMoveCount() == 0) {
+					throw new IllegalArgumentException("cannot undo");
+				}
+				game.undoMove();
+				winner = 0;			// no move is allowed after a win, so the position before it had no winner
+				return "";
+			case "showboard":
+				String board = showboard();
+				return "\n" + board.substring(0, board.length() - 1);		// an empty line would end the answer
+			default:
+				throw new IllegalArgumentException("unknown command");
+		}
+	}
+
+	private String boardsize(String[] arguments) {
+		if (arguments.length != 1 && arguments.length != 2) {
+			throw new IllegalArgumentException("boardsize takes a size or columns and rows");
+		}
+		int newColumns = number(arguments[0]);
+		int newRows = arguments.length == 2 ? number(arguments[1]) : newColumns;
+		if (newColumns < 1 || newRows < 1 || newColumns > MAX_SIZE || newRows > MAX_SIZE) {
+			throw new IllegalArgumentException("unacceptable size");
+		}
+		newGame(newRows, newColumns);
+		return "";
+	}
+
+	private void play(int player, int location) {
+		if (winner != 0) {
+			throw new IllegalArgumentException("the game is over");
+		}
+		if (game.getCell(location) != 0) {
+			throw new IllegalArgumentException("cell is occupied");
+		}
+		winner = game.setMove(location, player);
+	}
+
+	private String genmove(int player) {
+		if (winner != 0) {
+			return "resign";
+		}
+		int location = bot.chooseMove(game, player);
+		if (location < 0 || location >= game.maxMoves || game.getCell(location) != 0) {
+			throw new IllegalArgumentException("the engine found no legal move");
+		}
+		winner = game.setMove(location, player);
+		return cellName(location);
+	}
+
+	private void newGame(int newRows, int newColumns) {
+		if (bot == null || newRows != rows || newColumns != columns) {
+			if (bot != null) {
+				bot.close();
+			}
+			bot = bots.apply(newRows, newColumns);
+		}
+		rows = newRows;
+		columns = newColumns;
+		game = new PlayHex(rows, columns);
+		winner = 0;
+	}
+
+	/**
+	 * @return the board without colors, with the column letters above and the row numbers on the left
+	 */
+	String showboard() {
+		StringBuilder board = new StringBuilder("  ");
+		for (int column = 0; column < columns; column++) {
+			board.append(' ').append((char) ('a' + column));
+		}
+		board.append('\n');
+		for (int row = 0; row < rows; row++) {
+			for (int indent = 0; indent < row; indent++) {
+				board.append(' ');
+			}
+			board.append(String.format(Locale.ROOT, "%2d", row + 1));
+			for (int column = 0; column < columns; column++) {
+				int cell = game.getCell(row * columns + column);
+				board.append(' ').append(cell == 1 ? 'B' : cell == -1 ? 'W' : '.');
+			}
+			board.append('\n');
+		}
+		return board.toString();
+	}
+
+	private static int color(String color) {
+		switch (color.toLowerCase(Locale.ROOT)) {
+			case "b": case "black": case "blue":
+				return 1;
+			case "w": case "white": case "red":
+				return -1;
+			default:
+				throw new IllegalArgumentException("invalid color");
+		}
+	}
+
+	/**
+	 * @return the 0 based location of a cell like c4
+	 */
+	int cell(String name) {
+		String lower = name.toLowerCase(Locale.ROOT);
+		if (lower.length() < 2 || lower.charAt(0) < 'a' || lower.charAt(0) > 'z') {
+			throw new IllegalArgumentException("invalid cell");
+		}
+		int column = lower.charAt(0) - 'a';
+		int row;
+		try {
+			row = Integer.parseInt(lower.substring(1)) - 1;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid cell");
+		}
+		if (column >= columns || row < 0 || row >= rows) {
+			throw new IllegalArgumentException("cell is off the board");
+		}
+		return row * columns + column;
+	}
+
+	String cellName(int location) {
+		return (char) ('a' + location % columns) + Integer.toString(location / columns + 1);
+	}
+
+	private static void expect(String[] arguments, int count) {
+		if (arguments.length != count) {
+			throw new IllegalArgumentException("wrong number of arguments");
+		}
+	}
+
+	private static int number(String argument) {
+		try {
+			return Integer.parseInt(argument);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("not a number: " + argument);
+		}
+	}
+
+	public boolean hasQuit() { return quit; }
+
+	@Override
+	public void close() {
+		if (bot != null) {
+			bot.close();
+			bot = null;
+		}
+	}
+}
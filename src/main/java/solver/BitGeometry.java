@@ -0,0 +1,132 @@
+package solver;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The masks and bit tricks the solver plays with, for boards of at most 64 cells. A side is one long, bit i is the 0
+ * based location i like in PlayHex, so every neighbor of a whole set of cells is a handful of shifts.
+ *
+ * Blue joins the left and right columns, red the top and bottom rows. There is one instance per size, get it with of.
+ */
+final class BitGeometry {
+	private static final ConcurrentHashMap<Integer, BitGeometry> cache = new ConcurrentHashMap<>();
+
+	final int rows;
+	final int columns;
+	final int cells;
+	final long all;
+	private final long leftColumn;
+	private final long rightColumn;
+	private final long topRow;
+	private final long lowRow;
+	private final long notLeft;
+	private final long notRight;
+	private final long[] neighbors;		// the neighbors of every cell
+
+	private BitGeometry(int rows, int columns) {
+		if (rows < 1 || columns < 1 || rows * columns > 64) {
+			throw new IllegalArgumentException("The solver takes boards of at most 64 cells, not " + rows + "x" + columns);
+		}
+		this.rows = rows;
+		this.columns = columns;
+		cells = rows * columns;
+		all = cells == 64 ? -1L : (1L << cells) - 1;
+		long left = 0;
+		long right = 0;
+		for (int row = 0; row < rows; row++) {
+			left |= 1L << (row * columns);
+			right |= 1L << (row * columns + columns - 1);
+		}
+		leftColumn = left;
+		rightColumn = right;
+		topRow = columns == 64 ? -1L : (1L << columns) - 1;
+		lowRow = topRow << ((rows - 1) * columns);
+		notLeft = all & ~leftColumn;
+		notRight = all & ~rightColumn;
+		neighbors = new long[cells];
+		for (int cell = 0; cell < cells; cell++) {
+			neighbors[cell] = neighbors(1L << cell);
+		}
+	}
+
+	static BitGeometry of(int rows, int columns) {
+		return cache.computeIfAbsent(rows * 1000 + columns, key -> new BitGeometry(rows, columns));
+	}
+
+	/**
+	 * @return every cell next to one of the cells in bits, which may include some of bits themselves
+	 */
+	long neighbors(long bits) {
+		return (((bits << 1) & notLeft)
+				| ((bits >>> 1) & notRight)
+				| (bits << columns)								// down right
+				| ((bits << (columns - 1)) & notRight)			// down left
+				| (bits >>> columns)							// up left
+				| ((bits >>> (columns - 1)) & notLeft))		// up right
+				& all;
+	}
+
+	long neighbors(int cell) {
+		return neighbors[cell];
+	}
+
+	long firstBorder(int player) {
+		return player == 1 ? leftColumn : topRow;
+	}
+
+	long secondBorder(int player) {
+		return player == 1 ? rightColumn : lowRow;
+	}
+
+	/**
+	 * @return the stones joined to the seeds through other stones
+	 */
+	long reach(long stones, long seeds) {
+		long flood = seeds & stones;
+		while (true) {
+			long next = (flood | neighbors(flood)) & stones;
+			if (next == flood) {
+				return flood;
+			}
+			flood = next;
+		}
+	}
+
+	/**
+	 * @return true if the stones of the player join its two borders
+	 */
+	boolean connects(long stones, int player) {
+		return (reach(stones, stones & firstBorder(player)) & secondBorder(player)) != 0;
+	}
+
+	/**
+	 * @return the empty cells that win the game for the player right away
+	 */
+	long winningCells(long stones, long empty, int player) {
+		long first = firstBorder(player);
+		long second = secondBorder(player);
+		long fromFirst = reach(stones, stones & first);
+		long fromSecond = reach(stones, stones & second);
+		return (neighbors(fromFirst) | first) & (neighbors(fromSecond) | second) & empty;
+	}
+
+	/**
+	 * A cell is dead if filling it with either color can't change who wins: all of its neighbors are stones of one
+	 * player, which are already joined to each other around it, and it isn't on a border of that player. A stone of
+	 * the other player in it would touch nothing of its own.
+	 * @return the dead empty cells
+	 */
+	long deadCells(long blue, long red, long empty) {
+		long dead = 0;
+		for (long rest = empty; rest != 0; rest &= rest - 1) {
+			int cell = Long.numberOfTrailingZeros(rest);
+			long around = neighbors[cell];
+			long bit = 1L << cell;
+			if ((around & ~blue) == 0 && ((firstBorder(1) | secondBorder(1)) & bit) == 0
+					|| (around & ~red) == 0 && ((firstBorder(-1) | secondBorder(-1)) & bit) == 0) {
+				dead |= bit;
+			}
+		}
+		return dead;
+	}
+}
@@ -0,0 +1,271 @@
+package solver;
+
+import game.HexGeometry;
+import game.PlayHex;
+
+import java.util.Arrays;
+
+/**
+ * Proves who wins a Hex position with perfect play, for boards of at most 64 cells.
+ *
+ * Hex can't be drawn, so the search only asks whether the player to move wins: it does if one of its moves leaves a
+ * position the opponent loses. The position is two longs, one per color, see BitGeometry. The search is cut down by
+ * the rules that keep it small enough for 5x5 from the empty board and for the last dozen or two moves of 8x8:
+ * <ul>
+ *     <li>a cell that wins right away ends the search, and an opponent with two of them has won</li>
+ *     <li>an opponent with one such cell forces the move onto it</li>
+ *     <li>dead cells, see BitGeometry.deadCells, are never tried, a stone there is as good as passing</li>
+ *     <li>the moves are tried best first: the move that won the position before, then by the history heuristic,
+ *     then from the middle of the board out</li>
+ *     <li>every proven position goes into a transposition table, which is kept across solves of the same size
+ *     since a proof never goes stale</li>
+ * </ul>
+ *
+ * A solver isn't thread safe, use one per thread.
+ */
+public class HexSolver {
+	private static final int WIN = 1;
+	private static final int LOSS = 2;
+	private static final int TIME_CHECK = 4095;		// look at the clock every 4096 nodes
+
+	private final BitGeometry bits;
+	private final HexGeometry geometry;
+	private final long[] blueKeys;
+	private final long[] redKeys;
+	private final long[] tableKeys;
+	private final int[] tableData;			// WIN or LOSS, and the winning move + 1 shifted by 2
+	private final long[] tableProofs;
+	private final int tableMask;
+	private final int[] history;
+	private final int[] killers;			// the move that last won at every ply
+	private final int[] centrality;			// higher for cells nearer the middle
+	private final int[][] moves;			// the candidates of every ply, to not allocate while searching
+	private final int[][] scores;
+
+	private long nodes;
+	private long deadline;
+	private int rootMove;
+	private long proof;					// the proof of the last answer of wins
+
+	/**
+	 * @param tableBits the transposition table holds 2^tableBits positions
+	 */
+	public HexSolver(int rows, int columns, int tableBits) {
+		bits = BitGeometry.of(rows, columns);
+		geometry = HexGeometry.of(rows, columns);
+		int cells = bits.cells;
+		blueKeys = new long[cells];
+		redKeys = new long[cells];
+		centrality = new int[cells];
+		for (int cell = 0; cell < cells; cell++) {
+			blueKeys[cell] = geometry.key(cell + 1, 1);
+			redKeys[cell] = geometry.key(cell + 1, -1);
+			int row = cell / columns;
+			int column = cell % columns;
+			// twice the distance to the middle, so boards of an even size don't tie
+			centrality[cell] = -(Math.abs(2 * row - (rows - 1)) + Math.abs(2 * column - (columns - 1)));
+		}
+		tableKeys = new long[1 << tableBits];
+		tableData = new int[1 << tableBits];
+		tableProofs = new long[1 << tableBits];
+		tableMask = (1 << tableBits) - 1;
+		history = new int[cells];
+		killers = new int[cells + 1];
+		Arrays.fill(killers, -1);
+		moves = new int[cells + 1][cells];
+		scores = new int[cells + 1][cells];
+	}
+
+	/**
+	 * @param player the player to move
+	 * @param maxMillis how long to search at most, 0 for as long as it takes
+	 */
+	public Proof solve(PlayHex game, int player, long maxMillis) {
+		long blue = 0;
+		long red = 0;
+		for (int location = 0; location < game.maxMoves; location++) {
+			int cell = game.getCell(location);
+			if (cell == 1) {
+				blue |= 1L << location;
+			} else if (cell == -1) {
+				red |= 1L << location;
+			}
+		}
+		return solve(blue, red, player, maxMillis);
+	}
+
+	/**
+	 * @param blue the cells of blue, bit i for the 0 based location i
+	 * @param red the cells of red
+	 * @param player the player to move
+	 * @param maxMillis how long to search at most, 0 for as long as it takes
+	 */
+	public Proof solve(long blue, long red, int player, long maxMillis) {
+		long start = System.nanoTime();
+		if ((blue & red) != 0 || ((blue | red) & ~bits.all) != 0) {
+			throw new IllegalArgumentException("Not a position of a " + bits.rows + "x" + bits.columns + " board");
+		}
+		nodes = 0;
+		deadline = maxMillis > 0 ? start + maxMillis * 1000000 : Long.MAX_VALUE;
+		rootMove = -1;
+		if (bits.connects(blue, 1)) {
+			return new Proof(1, -1, 0, System.nanoTime() - start);
+		}
+		if (bits.connects(red, -1)) {
+			return new Proof(-1, -1, 0, System.nanoTime() - start);
+		}
+		long hash = player == -1 ? geometry.getTurnKey() : 0;
+		for (long rest = blue; rest != 0; rest &= rest - 1) {
+			hash ^= blueKeys[Long.numberOfTrailingZeros(rest)];
+		}
+		for (long rest = red; rest != 0; rest &= rest - 1) {
+			hash ^= redKeys[Long.numberOfTrailingZeros(rest)];
+		}
+		try {
+			boolean wins = player == 1 ? wins(blue, red, 1, hash, 0) : wins(red, blue, -1, hash, 0);
+			return new Proof(wins ? player : -player, wins ? rootMove : -1, nodes, System.nanoTime() - start);
+		} catch (OutOfTime e) {
+			return new Proof(0, -1, nodes, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Leaves the proof of the answer in proof: the empty cells the winner needs, it wins however the loser fills
+	 * the others.
+	 * @param mine the stones of the player to move
+	 * @param theirs the stones of the opponent
+	 * @param hash the zobrist key of the position and the turn
+	 * @return true if the player to move wins
+	 */
+	private boolean wins(long mine, long theirs, int player, long hash, int ply) {
+		if ((++nodes & TIME_CHECK) == 0 && System.nanoTime() > deadline) {
+			throw OutOfTime.INSTANCE;
+		}
+		int slot = (int) hash & tableMask;
+		if (tableKeys[slot] == hash && tableData[slot] != 0) {
+			int data = tableData[slot];
+			proof = tableProofs[slot];
+			if (ply == 0) {
+				rootMove = (data >>> 2) - 1;
+			}
+			return (data & 3) == WIN;
+		}
+
+		long empty = bits.all & ~(mine | theirs);
+		long winning = bits.winningCells(mine, empty, player);
+		if (winning != 0) {
+			long cell = winning & -winning;
+			return store(slot, hash, ply, Long.numberOfTrailingZeros(cell), cell);
+		}
+		long threats = bits.winningCells(theirs, empty, -player);
+		if (Long.bitCount(threats) > 1) {
+			return store(slot, hash, ply, -1, threats);		// only one of them can be blocked
+		}
+
+		long mustPlay;
+		if (threats != 0) {
+			mustPlay = threats;
+		} else {
+			long blue = player == 1 ? mine : theirs;
+			long red = player == 1 ? theirs : mine;
+			mustPlay = empty & ~bits.deadCells(blue, red, empty);
+			if (mustPlay == 0) {
+				mustPlay = empty & -empty;		// only dead cells left, any of them is as good as another
+			}
+		}
+
+		int count = order(mustPlay, ply);
+		int[] plyMoves = moves[ply];
+		long[] keys = player == 1 ? blueKeys : redKeys;
+		long turn = geometry.getTurnKey();
+		long losingProof = threats;
+		for (int i = 0; i < count; i++) {
+			int move = plyMoves[i];
+			long bit = 1L << move;
+			if ((mustPlay & bit) == 0) {
+				continue;
+			}
+			if (!wins(theirs, mine | bit, -player, hash ^ keys[move] ^ turn, ply + 1)) {
+				reward(move, Long.bitCount(empty));
+				killers[ply] = move;
+				return store(slot, hash, ply, move, proof | bit);
+			}
+			losingProof |= proof;
+			if ((proof & bit) == 0) {
+				// the opponent won without caring about the move, so it would have won after a pass, and after
+				// any other move outside the proof too
+				mustPlay &= proof;
+			}
+		}
+		return store(slot, hash, ply, -1, losingProof);
+	}
+
+	/**
+	 * Counts a move that won, more for the ones high up the tree, and halves every count before they overflow
+	 */
+	private void reward(int move, int empty) {
+		history[move] += empty * empty;
+		if (history[move] > 1 << 24) {
+			for (int i = 0; i < history.length; i++) {
+				history[i] >>= 1;
+			}
+		}
+	}
+
+	/**
+	 * Writes the candidates into moves[ply] best first
+	 * @return the number of candidates
+	 */
+	private int order(long candidates, int ply) {
+		int[] plyMoves = moves[ply];
+		int[] plyScores = scores[ply];
+		int count = 0;
+		for (long rest = candidates; rest != 0; rest &= rest - 1) {
+			int move = Long.numberOfTrailingZeros(rest);
+			int score = move == killers[ply] ? Integer.MAX_VALUE : history[move] * 64 + centrality[move];
+			int i = count++;
+			while (i > 0 && plyScores[i - 1] < score) {
+				plyMoves[i] = plyMoves[i - 1];
+				plyScores[i] = plyScores[i - 1];
+				i--;
+			}
+			plyMoves[i] = move;
+			plyScores[i] = score;
+		}
+		return count;
+	}
+
+	/**
+	 * @param move the winning move, or -1 for a loss
+	 * @param proof the cells the winner needs
+	 * @return true for a win
+	 */
+	private boolean store(int slot, long hash, int ply, int move, long proof) {
+		this.proof = proof;
+		tableKeys[slot] = hash;
+		tableData[slot] = move >= 0 ? WIN | (move + 1) << 2 : LOSS;
+		tableProofs[slot] = proof;
+		if (ply == 0) {
+			rootMove = move;
+		}
+		return move >= 0;
+	}
+
+	/**
+	 * Forgets the proven positions and the move history
+	 */
+	public void clear() {
+		Arrays.fill(tableKeys, 0);
+		Arrays.fill(tableData, 0);
+		Arrays.fill(history, 0);
+	}
+
+	private static final class OutOfTime extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		private static final OutOfTime INSTANCE = new OutOfTime();
+
+		private OutOfTime() {
+			super("The solver ran out of time", null, false, false);
+		}
+	}
+}
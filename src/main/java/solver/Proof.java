@@ -0,0 +1,47 @@
+package solver;
+
+/**
+ * What a solve found out about a position
+ */
+public final class Proof {
+	private final int winner;
+	private final int move;
+	private final long nodes;
+	private final long nanos;
+
+	Proof(int winner, int move, long nodes, long nanos) {
+		this.winner = winner;
+		this.move = move;
+		this.nodes = nodes;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * @return true if the winner is known, false if the solver ran out of time
+	 */
+	public boolean isProven() { return winner != 0; }
+
+	/**
+	 * @return 1 if blue wins with perfect play, -1 if red does, 0 if it isn't known
+	 */
+	public int getWinner() { return winner; }
+
+	/**
+	 * @return a 0 based location that keeps the win for the player to move, or -1 if that player loses or the
+	 * position wasn't solved or was already over
+	 */
+	public int getMove() { return move; }
+
+	/**
+	 * @return the positions searched
+	 */
+	public long getNodes() { return nodes; }
+
+	public long getNanos() { return nanos; }
+
+	@Override
+	public String toString() {
+		String result = winner == 0 ? "unknown" : (winner == 1 ? "blue" : "red") + " wins";
+		return result + (move >= 0 ? " with " + move : "") + " after " + nodes + " nodes in " + nanos / 1000000 + " ms";
+	}
+}
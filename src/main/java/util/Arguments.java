@@ -16,6 +16,27 @@ public class Arguments {
     protected int gamesPerEpoch;
     protected boolean debugTrain;
     protected String modelPath;
+    protected int replayCapacity;
+    protected float priorityAlpha;
+    protected float priorityBeta;
+    protected boolean allActions;
+    protected int actors;
+    protected int queueDepth;
+    protected int publishEveryX;
+    protected int cacheSize;
+    protected String archivePath;
+    protected String metricsPath;
+    protected int keepLast;
+    protected int metricsEveryX;
+    protected int arenaThreads;
+    protected int arenaPairs;
+    protected int arenaPlayouts;
+    protected int port;
+    protected int playouts;
+    protected String player;
+    protected String opponent;
+    protected int solveBelow;
+    protected boolean connections;
 
     protected void initialize() {
         epoch = 1000;
@@ -25,6 +46,27 @@ public class Arguments {
         batchSize = 20;
         saveEveryX = 10;
         closeEveryX = 3;
+        replayCapacity = 0;
+        priorityAlpha = 0.6f;
+        priorityBeta = 0.4f;
+        allActions = false;
+        actors = 0;
+        queueDepth = 4096;
+        publishEveryX = 50;
+        cacheSize = 20000;
+        archivePath = null;
+        metricsPath = null;
+        keepLast = 5;
+        metricsEveryX = 10;
+        arenaThreads = 0;
+        arenaPairs = 100;
+        arenaPlayouts = 200;
+        port = 0;
+        playouts = 1000;
+        player = "latest";
+        opponent = "random";
+        solveBelow = 0;
+        connections = false;
     }
 
     public Arguments parseArgs(String[] args){
@@ -64,6 +106,69 @@ public class Arguments {
         if (cmd.hasOption("close")){
             closeEveryX = Integer.parseInt(cmd.getOptionValue("close"));
         }
+        if (cmd.hasOption("replay")){
+            replayCapacity = Integer.parseInt(cmd.getOptionValue("replay"));
+        }
+        if (cmd.hasOption("alpha")){
+            priorityAlpha = Float.parseFloat(cmd.getOptionValue("alpha"));
+        }
+        if (cmd.hasOption("beta")){
+            priorityBeta = Float.parseFloat(cmd.getOptionValue("beta"));
+        }
+        if (cmd.hasOption("allActions")){
+            allActions = true;
+        }
+        if (cmd.hasOption("actors")){
+            actors = Integer.parseInt(cmd.getOptionValue("actors"));
+        }
+        if (cmd.hasOption("queue")){
+            queueDepth = Integer.parseInt(cmd.getOptionValue("queue"));
+        }
+        if (cmd.hasOption("publish")){
+            publishEveryX = Integer.parseInt(cmd.getOptionValue("publish"));
+        }
+        if (cmd.hasOption("cache")){
+            cacheSize = Integer.parseInt(cmd.getOptionValue("cache"));
+        }
+        if (cmd.hasOption("archive")){
+            archivePath = cmd.getOptionValue("archive");
+        }
+        if (cmd.hasOption("keep")){
+            keepLast = Integer.parseInt(cmd.getOptionValue("keep"));
+        }
+        if (cmd.hasOption("metrics")){
+            metricsPath = cmd.getOptionValue("metrics");
+        }
+        if (cmd.hasOption("metricsEvery")){
+            metricsEveryX = Integer.parseInt(cmd.getOptionValue("metricsEvery"));
+        }
+        if (cmd.hasOption("arena")){
+            arenaThreads = Integer.parseInt(cmd.getOptionValue("arena"));
+        }
+        if (cmd.hasOption("arenaPairs")){
+            arenaPairs = Integer.parseInt(cmd.getOptionValue("arenaPairs"));
+        }
+        if (cmd.hasOption("arenaPlayouts")){
+            arenaPlayouts = Integer.parseInt(cmd.getOptionValue("arenaPlayouts"));
+        }
+        if (cmd.hasOption("port")){
+            port = Integer.parseInt(cmd.getOptionValue("port"));
+        }
+        if (cmd.hasOption("playouts")){
+            playouts = Integer.parseInt(cmd.getOptionValue("playouts"));
+        }
+        if (cmd.hasOption("player")){
+            player = cmd.getOptionValue("player");
+        }
+        if (cmd.hasOption("opponent")){
+            opponent = cmd.getOptionValue("opponent");
+        }
+        if (cmd.hasOption("solve")){
+            solveBelow = Integer.parseInt(cmd.getOptionValue("solve"));
+        }
+        if (cmd.hasOption("vc")){
+            connections = true;
+        }
         if (cmd.hasOption("path")){
             modelPath = cmd.getOptionValue("epoch");
         }
@@ -115,7 +220,8 @@ public class Arguments {
                         .longOpt("close")
                         .hasArg()
                         .argName("CLOSE_EVERY_X")
-                        .desc("Number of epochs before the program refreshes the memory heap")
+                        .desc("Number of epochs before the program refreshes the memory heap," +
+                                " 0 keeps one model and trainer for the whole run")
                         .build());
         options.addOption(
                 Option.builder("p")
@@ -124,6 +230,153 @@ public class Arguments {
                         .argName("MODEL_PATH")
                         .desc("Path to load the model from")
                         .build());
+        options.addOption(
+                Option.builder("r")
+                        .longOpt("replay")
+                        .hasArg()
+                        .argName("REPLAY_CAPACITY")
+                        .desc("Number of moves the prioritized replay buffer keeps across games," +
+                                " 0 (the default) trains on every game's own moves only")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("alpha")
+                        .hasArg()
+                        .argName("PRIORITY_ALPHA")
+                        .desc("How much the TD error priorities count when sampling moves, 0 samples uniformly")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("beta")
+                        .hasArg()
+                        .argName("PRIORITY_BETA")
+                        .desc("Starting importance sampling exponent, raised to 1 over the epochs")
+                        .build());
+        options.addOption(
+                Option.builder("a")
+                        .longOpt("allActions")
+                        .hasArg(false)
+                        .desc("Train the network that scores every cell in one pass instead of one action at a time")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("actors")
+                        .hasArg()
+                        .argName("ACTOR_THREADS")
+                        .desc("Number of threads playing self play games while one learner thread trains," +
+                                " 0 plays and trains in turns on one thread")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("queue")
+                        .hasArg()
+                        .argName("QUEUE_DEPTH")
+                        .desc("Number of moves the actors can get ahead of the learner")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("publish")
+                        .hasArg()
+                        .argName("PUBLISH_EVERY_X")
+                        .desc("Number of batches the learner trains before the actors get the new parameters")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("cache")
+                        .hasArg()
+                        .argName("CACHE_SIZE")
+                        .desc("Number of positions every actor keeps the Q-values of, 0 turns the cache off")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("archive")
+                        .hasArg()
+                        .argName("ARCHIVE_PATH")
+                        .desc("File to append every finished self play game to, or to read the games from for pretraining")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("keep")
+                        .hasArg()
+                        .argName("KEEP_LAST")
+                        .desc("Number of newest checkpoints to keep, the best one by validation is kept as well")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("metrics")
+                        .hasArg()
+                        .argName("METRICS_CSV")
+                        .desc("CSV file to append the training metrics to, they are always shown over JMX")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("metricsEvery")
+                        .hasArg()
+                        .argName("SECONDS")
+                        .desc("Number of seconds between two lines of training metrics")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("arena")
+                        .hasArg()
+                        .argName("ARENA_THREADS")
+                        .desc("Number of threads rating the checkpoints next to training, 0 leaves it to RunArena")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("arenaPairs")
+                        .hasArg()
+                        .argName("PAIRS")
+                        .desc("Number of color swapped pairs of games a checkpoint plays against every opponent")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("arenaPlayouts")
+                        .hasArg()
+                        .argName("PLAYOUTS")
+                        .desc("Number of playouts of the tree search bot the checkpoints are rated against")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("port")
+                        .hasArg()
+                        .argName("PORT")
+                        .desc("Local TCP port the engine server listens on, 0 serves one game on standard input")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("playouts")
+                        .hasArg()
+                        .argName("PLAYOUTS")
+                        .desc("Number of playouts the engine server searches with on boards the network doesn't fit")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("player")
+                        .hasArg()
+                        .argName("PLAYER")
+                        .desc("Who plays a headless match: latest, a checkpoint number, random, heuristic, mcts or mcts-vc")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("opponent")
+                        .hasArg()
+                        .argName("PLAYER")
+                        .desc("Who the player of a headless match plays against, the same choices as --player")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("solve")
+                        .hasArg()
+                        .argName("EMPTY_CELLS")
+                        .desc("End self play games once the solver proves the winner, trying from this many empty cells, 0 never")
+                        .build());
+        options.addOption(
+                Option.builder()
+                        .longOpt("vc")
+                        .hasArg(false)
+                        .desc("End self play games once a player is joined up by bridges and edge templates")
+                        .build());
         return options;
     }
 
@@ -141,5 +394,26 @@ public class Arguments {
     public int getGamesPerEpoch(){ return gamesPerEpoch; }
     public boolean isDebugTrain(){ return debugTrain; }
     public String getModelPath(){ return modelPath; }
+    public int getReplayCapacity(){ return replayCapacity; }
+    public float getPriorityAlpha(){ return priorityAlpha; }
+    public float getPriorityBeta(){ return priorityBeta; }
+    public boolean isAllActions(){ return allActions; }
+    public int getActors(){ return actors; }
+    public int getQueueDepth(){ return queueDepth; }
+    public int getPublishEveryX(){ return publishEveryX; }
+    public int getCacheSize(){ return cacheSize; }
+    public String getArchivePath(){ return archivePath; }
+    public String getMetricsPath(){ return metricsPath; }
+    public int getKeepLast(){ return keepLast; }
+    public int getMetricsEveryX(){ return metricsEveryX; }
+    public int getArenaThreads(){ return arenaThreads; }
+    public int getArenaPairs(){ return arenaPairs; }
+    public int getArenaPlayouts(){ return arenaPlayouts; }
+    public int getPort(){ return port; }
+    public int getPlayouts(){ return playouts; }
+    public String getPlayer(){ return player; }
+    public String getOpponent(){ return opponent; }
+    public int getSolveBelow(){ return solveBelow; }
+    public boolean isConnections(){ return connections; }
 
 }
@@ -0,0 +1,330 @@
+package util;
+
+import ai.djl.MalformedModelException;
+import ai.djl.Model;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.util.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Saves the parameters of a model without making training wait for the disk, and without ever leaving half a file
+ * where Model.load would find it.
+ *
+ * A checkpoint is snapshotted on the training thread into memory, the header of a DJL params file followed by
+ * Block.saveParameters, which only copies the parameter arrays. A background thread writes the bytes to a temporary
+ * file, forces them to disk and renames the file to name-NNNN.params in one atomic step. The numbering is DJL's, so
+ * Model.load(directory, name) picks up the newest checkpoint as before.
+ *
+ * Only the newest keepLast checkpoints are kept, plus the one with the best validation score, which is remembered in
+ * name-best.properties across runs. epochEnd saves every saveEveryX epochs, save saves right away.
+ */
+public class CheckpointManager implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(CheckpointManager.class);
+
+    private final Path directory;
+    private final String name;
+    private final int saveEveryX;
+    private final int keepLast;
+    private final Pattern fileName;
+    private final ExecutorService writer;
+    private final List<Future<?>> pending = new ArrayList<>();
+
+    private int next;               // the number of the next checkpoint
+    private int epochs;
+    private int savedAtEpoch = -1;
+    private int best = -1;
+    private float bestScore = Float.NEGATIVE_INFINITY;
+
+    /**
+     * @param directory where the checkpoints go, the model path
+     * @param name the name of the model, the files are name-NNNN.params like Model.save makes them
+     * @param saveEveryX the number of epochs between two checkpoints in epochEnd
+     * @param keepLast the number of newest checkpoints to keep, the best one is kept on top of them
+     */
+    public CheckpointManager(Path directory, String name, int saveEveryX, int keepLast) throws IOException {
+        if (saveEveryX < 1 || keepLast < 1) {
+            throw new IllegalArgumentException("Checkpoints need saveEveryX and keepLast of at least 1");
+        }
+        this.directory = directory;
+        this.name = name;
+        this.saveEveryX = saveEveryX;
+        this.keepLast = keepLast;
+        this.fileName = Pattern.compile(Pattern.quote(name) + "-(\\d{4,})\\.params");
+        Files.createDirectories(directory);
+        List<Integer> existing = checkpoints(directory, fileName);
+        next = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+        readBest();
+        writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Counts an epoch and saves a checkpoint if it is the saveEveryX-th one
+     * @param score the validation score of the model, higher is better, NaN if there is none
+     * @return true if a checkpoint was taken
+     */
+    public boolean epochEnd(Model model, float score) throws IOException {
+        epochs++;
+        if (epochs % saveEveryX != 0) {
+            return false;
+        }
+        save(model, score);
+        return true;
+    }
+
+    /**
+     * Takes a checkpoint now, unless one was already taken at the end of this epoch. Only the snapshot happens on
+     * the calling thread, the write is queued.
+     * @param score the validation score of the model, higher is better, NaN if there is none
+     */
+    public synchronized void save(Model model, float score) throws IOException {
+        if (savedAtEpoch == epochs) {
+            return;
+        }
+        savedAtEpoch = epochs;
+        int number = next++;
+        long start = System.nanoTime();
+        byte[] snapshot = snapshot(model);
+        TrainingMetrics.get().record(TrainingMetrics.Phase.SAVE_MODEL, start);
+        boolean isBest = !Float.isNaN(score) && score > bestScore;
+        if (isBest) {
+            best = number;
+            bestScore = score;
+        }
+        float bestScoreNow = bestScore;
+        int bestNow = best;
+        pending.removeIf(Future::isDone);
+        pending.add(writer.submit(() -> {
+            try {
+                write(number, snapshot);
+                if (isBest) {
+                    writeBest(bestNow, bestScoreNow);
+                }
+                prune(bestNow);
+            } catch (IOException e) {
+                logger.error("Could not write checkpoint {} of {}", number, name, e);
+            }
+        }));
+        logger.info("Saving checkpoint {} of {}{}", number, name, isBest ? ", the best so far" : "");
+    }
+
+    /**
+     * @return the parameters of the model as the bytes of a DJL params file
+     */
+    private static byte[] snapshot(Model model) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream os = new DataOutputStream(bytes)) {
+            // the same header as BaseModel.save writes, without any properties
+            os.writeBytes("DJL@");
+            os.writeInt(1);
+            os.writeUTF(model.getName());
+            os.writeUTF(model.getDataType().name());
+            List<Pair<String, Shape>> inputs = new ArrayList<>();
+            model.getBlock().describeInput().forEach(inputs::add);
+            os.writeInt(inputs.size());
+            for (Pair<String, Shape> input : inputs) {
+                os.writeUTF(input.getKey() == null ? "" : input.getKey());
+                os.write(input.getValue().getEncoded());
+            }
+            os.writeInt(0);
+            model.getBlock().saveParameters(os);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Path checkpoint(int number) {
+        return directory.resolve(String.format(Locale.ENGLISH, "%s-%04d.params", name, number));
+    }
+
+    private void write(int number, byte[] snapshot) throws IOException {
+        Path target = checkpoint(number);
+        writeAtomically(target, snapshot);
+    }
+
+    /**
+     * Writes to a temporary file next to the target, forces it to disk and renames it over the target
+     */
+    private static void writeAtomically(Path target, byte[] bytes) throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path bestFile() {
+        return directory.resolve(name + "-best.properties");
+    }
+
+    private void readBest() throws IOException {
+        if (!Files.exists(bestFile())) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(bestFile())) {
+            properties.load(is);
+        }
+        try {
+            best = Integer.parseInt(properties.getProperty("checkpoint", "-1"));
+            bestScore = Float.parseFloat(properties.getProperty("score", "-Infinity"));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring the unreadable {}", bestFile());
+        }
+        if (!Files.exists(checkpoint(best))) {
+            best = -1;
+            bestScore = Float.NEGATIVE_INFINITY;
+        }
+    }
+
+    private void writeBest(int checkpoint, float score) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("checkpoint", Integer.toString(checkpoint));
+        properties.setProperty("score", Float.toString(score));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream os = bytes) {
+            properties.store(os, "The checkpoint of " + name + " with the best validation score");
+        }
+        writeAtomically(bestFile(), bytes.toByteArray());
+    }
+
+    /**
+     * Deletes every checkpoint but the newest keepLast and the best one
+     */
+    private void prune(int keep) throws IOException {
+        List<Integer> numbers = checkpoints(directory, fileName);
+        for (int i = 0; i < numbers.size() - keepLast; i++) {
+            if (numbers.get(i) != keep) {
+                Files.deleteIfExists(checkpoint(numbers.get(i)));
+            }
+        }
+    }
+
+    /**
+     * @return the numbers of the checkpoints in the directory, in increasing order
+     */
+    private static List<Integer> checkpoints(Path directory, Pattern fileName) throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return numbers;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = fileName.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    numbers.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    /**
+     * @return the numbers of the checkpoints of the model name in the directory, in increasing order
+     */
+    public static List<Integer> list(Path directory, String name) throws IOException {
+        return checkpoints(directory, Pattern.compile(Pattern.quote(name) + "-(\\d{4,})\\.params"));
+    }
+
+    /**
+     * Waits for the checkpoints that are still being written
+     */
+    public void flush() {
+        List<Future<?>> waiting;
+        synchronized (this) {
+            waiting = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (Future<?> write : waiting) {
+            try {
+                write.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                logger.error("Checkpoint write failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Waits for the writes and loads the newest checkpoint into the model
+     */
+    public void load(Model model) throws IOException, MalformedModelException {
+        flush();
+        loadLatest(model, directory);
+    }
+
+    /**
+     * Loads the newest checkpoint of the model that loads, falling back to older ones if the newest is damaged
+     * @throws IOException if there is no checkpoint at all, or the last one tried failed
+     */
+    public static void loadLatest(Model model, Path directory) throws IOException, MalformedModelException {
+        Pattern fileName = Pattern.compile(Pattern.quote(model.getName()) + "-(\\d{4,})\\.params");
+        List<Integer> numbers = checkpoints(directory, fileName);
+        if (numbers.isEmpty()) {
+            throw new IOException("No checkpoint of " + model.getName() + " in " + directory);
+        }
+        for (int i = numbers.size() - 1; ; i--) {
+            try {
+                model.load(directory, model.getName(), Collections.singletonMap("epoch", numbers.get(i)));
+                return;
+            } catch (IOException | MalformedModelException | RuntimeException e) {
+                if (i == 0) {
+                    throw e;
+                }
+                logger.warn("Checkpoint {} of {} doesn't load, trying the one before: {}", numbers.get(i),
+                        model.getName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the number of the best checkpoint so far, or -1 if no checkpoint had a score
+     */
+    public synchronized int getBest() {
+        return best;
+    }
+
+    /**
+     * Finishes the queued writes
+     */
+    @Override
+    public void close() {
+        flush();
+        writer.shutdown();
+    }
+}
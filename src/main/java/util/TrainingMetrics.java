@@ -0,0 +1,383 @@
+package util;
+
+import ai.djl.ndarray.BaseNDManager;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Where the time of training goes, and how much memory it holds on to. There is one instance for the whole JVM,
+ * HexGame and the trainers record into it:
+ * <pre>
+ *     long start = System.nanoTime();
+ *     agent.trainBatch(batch);
+ *     TrainingMetrics.get().record(TrainingMetrics.Phase.TRAIN_BATCH, start);
+ * </pre>
+ * Recording is two nanoTime calls and an atomic add, cheap next to anything that touches the network.
+ *
+ * Besides the latency of every phase it counts moves and games, reads the heap, garbage collection and allocation
+ * numbers of the JVM, and counts the NDManagers and NDArrays that are still open. The engine's system manager doesn't
+ * keep track of the base managers made under it, so the code that makes one passes it to watch, and the counts walk
+ * down from every watched base manager that is still open. That is what finds native leaks: a count that keeps going
+ * up between games is a leak.
+ *
+ * Everything is shown over JMX once start is called, and every interval a line goes into a CSV file if one is given.
+ */
+public final class TrainingMetrics implements TrainingMetricsMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(TrainingMetrics.class);
+    private static final TrainingMetrics INSTANCE = new TrainingMetrics();
+
+    public enum Phase { CHOOSE_ACTION, ENV_STEP, GET_BATCH, TRAIN_BATCH, TRAINER_STEP, SAVE_MODEL }
+
+    private final Map<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicLong games = new AtomicLong();
+    private final Set<NDManager> watched = ConcurrentHashMap.newKeySet();
+    private volatile boolean started;
+
+    // the last interval, for the rates
+    private final Map<Phase, LatencyHistogram.Snapshot> lastSnapshots = new EnumMap<>(Phase.class);
+    private long lastTime = System.nanoTime();
+    private long lastMoves;
+    private long lastGames;
+    private long lastAllocated = allocatedBytes();
+    private volatile double movesPerSecond;
+    private volatile double gamesPerSecond;
+    private volatile double allocationPerSecond;
+
+    private ScheduledExecutorService reporter;
+    private BufferedWriter csv;
+
+    private TrainingMetrics() {
+        for (Phase phase : Phase.values()) {
+            latencies.put(phase, new LatencyHistogram());
+            lastSnapshots.put(phase, latencies.get(phase).snapshot());
+        }
+    }
+
+    public static TrainingMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param start the System.nanoTime() the phase started at
+     */
+    public void record(Phase phase, long start) {
+        latencies.get(phase).record(System.nanoTime() - start);
+    }
+
+    public void countMove() {
+        moves.incrementAndGet();
+    }
+
+    public void countGame() {
+        games.incrementAndGet();
+    }
+
+    /**
+     * @param manager a manager whose arrays should be counted, it is counted with its base manager and all the
+     *                other managers under that
+     */
+    public void watch(NDManager manager) {
+        if (!started) {
+            return;
+        }
+        NDManager base = manager;
+        while (base.getParentManager() != null && base.getParentManager().getParentManager() != null) {
+            base = base.getParentManager();
+        }
+        watched.add(base);
+    }
+
+    /**
+     * Registers the JMX bean and reports every interval, to the CSV file if there is one
+     * @param csvPath the file to append a line to every interval, or null to only have JMX
+     */
+    public synchronized void start(Path csvPath, long intervalSeconds) throws IOException {
+        if (reporter != null) {
+            return;
+        }
+        started = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("hexgame:type=TrainingMetrics"));
+        } catch (JMException e) {
+            logger.warn("Could not register the training metrics with JMX", e);
+        }
+        if (csvPath != null) {
+            boolean header = !Files.exists(csvPath) || Files.size(csvPath) == 0;
+            csv = Files.newBufferedWriter(csvPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (header) {
+                csv.write(csvHeader());
+                csv.newLine();
+                csv.flush();
+            }
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "training-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes a last line and stops reporting
+     */
+    public synchronized void stop() {
+        if (reporter == null) {
+            return;
+        }
+        reporter.shutdownNow();
+        report();
+        reporter = null;
+        started = false;
+        watched.clear();
+        if (csv != null) {
+            try {
+                csv.close();
+            } catch (IOException e) {
+                logger.warn("Could not close the metrics file", e);
+            }
+            csv = null;
+        }
+    }
+
+    private String csvHeader() {
+        StringBuilder line = new StringBuilder("time,moves_per_s,games_per_s,heap_used_mb,gc_count,gc_ms,alloc_mb_per_s,"
+                + "live_managers,live_arrays");
+        for (Phase phase : Phase.values()) {
+            String name = phase.name().toLowerCase();
+            line.append(',').append(name).append("_count,").append(name).append("_mean_ms,")
+                    .append(name).append("_p50_ms,").append(name).append("_p99_ms,").append(name).append("_max_ms");
+        }
+        return line.toString();
+    }
+
+    /**
+     * Works out the rates of the interval that just ended and writes its line
+     */
+    private synchronized void report() {
+        long now = System.nanoTime();
+        double seconds = (now - lastTime) / 1e9;
+        if (seconds <= 0) {
+            return;
+        }
+        long movesNow = moves.get();
+        long gamesNow = games.get();
+        long allocatedNow = allocatedBytes();
+        movesPerSecond = (movesNow - lastMoves) / seconds;
+        gamesPerSecond = (gamesNow - lastGames) / seconds;
+        // threads that ended take their bytes out of the total, so an interval can come out below 0
+        allocationPerSecond = allocatedNow < 0 ? -1 : Math.max(0, allocatedNow - lastAllocated) / seconds;
+        lastTime = now;
+        lastMoves = movesNow;
+        lastGames = gamesNow;
+        lastAllocated = allocatedNow;
+
+        int[] live = countLive();
+        StringBuilder line = new StringBuilder();
+        line.append(System.currentTimeMillis()).append(',').append(format(movesPerSecond)).append(',')
+                .append(format(gamesPerSecond)).append(',').append(getHeapUsedBytes() >> 20).append(',')
+                .append(getGcCount()).append(',').append(getGcTimeMillis()).append(',')
+                .append(format(allocationPerSecond / (1 << 20))).append(',').append(live[0]).append(',').append(live[1]);
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram.Snapshot snapshot = latencies.get(phase).snapshot();
+            LatencyHistogram.Snapshot interval = snapshot.minus(lastSnapshots.get(phase));
+            lastSnapshots.put(phase, snapshot);
+            line.append(',').append(interval.getCount())
+                    .append(',').append(format(interval.getMeanNanos() / 1e6))
+                    .append(',').append(format(interval.getPercentileNanos(0.5) / 1e6))
+                    .append(',').append(format(interval.getPercentileNanos(0.99) / 1e6))
+                    .append(',').append(format(interval.getMaxNanos() / 1e6));
+        }
+        if (csv != null) {
+            try {
+                csv.write(line.toString());
+                csv.newLine();
+                csv.flush();
+            } catch (IOException e) {
+                logger.warn("Could not write the metrics file", e);
+            }
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * @return the open managers and arrays under the watched base managers, or -1 for both if they can't be counted
+     */
+    private int[] countLive() {
+        int[] live = {-1, -1};
+        if (RESOURCES == null) {
+            return live;
+        }
+        live[0] = 0;
+        live[1] = 0;
+        for (NDManager manager : watched) {
+            if (!manager.isOpen()) {
+                watched.remove(manager);
+                continue;
+            }
+            live[0]++;
+            count(manager, live);
+        }
+        return live;
+    }
+
+    private static void count(NDManager manager, int[] live) {
+        if (!(manager instanceof BaseNDManager)) {
+            return;
+        }
+        Map<?, ?> resources;
+        try {
+            resources = (Map<?, ?>) RESOURCES.get(manager);
+        } catch (IllegalAccessException e) {
+            return;
+        }
+        for (Object resource : resources.values()) {
+            if (resource instanceof NDManager) {
+                live[0]++;
+                count((NDManager) resource, live);
+            } else if (resource instanceof NDArray) {
+                live[1]++;
+            }
+        }
+    }
+
+    // BaseNDManager keeps what it owns in a protected map, there is no other way to count it
+    private static final Field RESOURCES = resourcesField();
+
+    private static Field resourcesField() {
+        try {
+            Field field = BaseNDManager.class.getDeclaredField("resources");
+            field.setAccessible(true);
+            return field;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("Can't count the live NDManagers and NDArrays of this DJL version", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the bytes allocated by every live thread so far, or -1 if the JVM doesn't say
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!sunThreads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long allocated : sunThreads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+    private Map<String, Double> byPhase(ToDoubleFunction<LatencyHistogram.Snapshot> value) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            values.put(phase.name(), value.applyAsDouble(latencies.get(phase).snapshot()));
+        }
+        return values;
+    }
+
+    @Override
+    public long getMoves() { return moves.get(); }
+
+    @Override
+    public long getGames() { return games.get(); }
+
+    @Override
+    public double getMovesPerSecond() { return movesPerSecond; }
+
+    @Override
+    public double getGamesPerSecond() { return gamesPerSecond; }
+
+    @Override
+    public Map<String, Long> getPhaseCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            counts.put(phase.name(), latencies.get(phase).snapshot().getCount());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getPhaseMeanMillis() {
+        return byPhase(snapshot -> snapshot.getMeanNanos() / 1e6);
+    }
+
+    @Override
+    public Map<String, Double> getPhaseP50Millis() {
+        return byPhase(snapshot -> snapshot.getPercentileNanos(0.5) / 1e6);
+    }
+
+    @Override
+    public Map<String, Double> getPhaseP99Millis() {
+        return byPhase(snapshot -> snapshot.getPercentileNanos(0.99) / 1e6);
+    }
+
+    @Override
+    public long getHeapUsedBytes() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Override
+    public long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    @Override
+    public long getGcTimeMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    @Override
+    public double getAllocationBytesPerSecond() { return allocationPerSecond; }
+
+    @Override
+    public int getLiveManagers() { return countLive()[0]; }
+
+    @Override
+    public int getLiveArrays() { return countLive()[1]; }
+}
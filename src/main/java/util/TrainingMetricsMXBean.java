@@ -0,0 +1,27 @@
+package util;
+
+import java.util.Map;
+
+/**
+ * What TrainingMetrics shows over JMX, under hexgame:type=TrainingMetrics. The rates are over the last reporting
+ * interval, the latencies since the start, by phase name.
+ */
+public interface TrainingMetricsMXBean {
+    long getMoves();
+    long getGames();
+    double getMovesPerSecond();
+    double getGamesPerSecond();
+
+    Map<String, Long> getPhaseCounts();
+    Map<String, Double> getPhaseMeanMillis();
+    Map<String, Double> getPhaseP50Millis();
+    Map<String, Double> getPhaseP99Millis();
+
+    long getHeapUsedBytes();
+    long getGcCount();
+    long getGcTimeMillis();
+    double getAllocationBytesPerSecond();
+
+    int getLiveManagers();
+    int getLiveArrays();
+}
@@ -0,0 +1,30 @@
+import game.IntUnionFind;
+
+/**
+ * Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class IntUnionFindTest {
+    public static void main(String[] args) {
+        IntUnionFind forest = new IntUnionFind(30);
+        for (int i =0; i <= 20; i++){
+            forest.union(0,i);
+        }
+        for (int i = 0; i <= 20; i++){
+            assert forest.find(i)==forest.find(0) : "Find Failure";
+        }
+        for (int i = 21; i < 30; i++){
+            assert forest.find(i)==i : "Should be its own set!";
+        }
+
+        assert !forest.connected(IntUnionFind.FIRST_BORDER, IntUnionFind.SECOND_BORDER) : "Borders start apart";
+        forest.union(IntUnionFind.FIRST_BORDER, 25);
+        forest.union(26, IntUnionFind.SECOND_BORDER);
+        forest.union(25, 3);
+        assert !forest.connected(IntUnionFind.FIRST_BORDER, IntUnionFind.SECOND_BORDER) : "Borders should not be joined yet";
+        forest.union(26, 7);
+        assert forest.connected(IntUnionFind.FIRST_BORDER, IntUnionFind.SECOND_BORDER) : "Borders should be joined";
+
+        forest.reset();
+        assert !forest.connected(0, 20) : "Reset should split every set";
+    }
+}
@@ -0,0 +1,39 @@
+package agent;
+
+/**
+ * Checks that the Q-value cache serves a position both ways round, evicts with the clock, and forgets everything
+ * when invalidated. Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class QValueCacheTest {
+	public static void main(String[] args) {
+		QValueCache cache = new QValueCache(2);
+		float[] q = {1, 2, 3, 4};
+		assert cache.get(1, false) == null : "An empty cache should miss";
+		cache.put(1, false, q);
+		assert cache.get(1, false)[0] == 1 : "A stored vector should come back the way it went in";
+		assert cache.get(1, true)[0] == 4 : "The turned position should get the vector reversed";
+
+		// a vector stored from the turned position comes back the right way round for the canonical one
+		cache.put(2, true, q);
+		assert cache.get(2, false)[0] == 4 : "A vector of a turned position should be stored reversed";
+		assert cache.get(2, true)[3] == 4 : "And reversed again for the turned position";
+
+		// both entries are marked, the clock clears both marks and takes the entry under the hand
+		cache.put(3, false, q);
+		assert cache.size() == 2 : "The cache should stay within its capacity";
+		assert cache.get(1, false) == null : "The clock should evict the entry under the hand";
+
+		// only 3 is hit since, so the hand passes it and takes 2
+		cache.get(3, false);
+		cache.put(4, false, q);
+		assert cache.get(3, false) != null : "A recently hit entry should get a second chance";
+		assert cache.get(2, false) == null : "An entry without a hit should go first";
+
+		q[0] = 100;
+		assert cache.get(3, false)[0] == 1 : "The cache should keep its own copy";
+		assert cache.getHits() > 0 && cache.getMisses() > 0 && cache.getHitRate() < 1 : "Hits and misses should count";
+
+		cache.invalidate();
+		assert cache.size() == 0 && cache.get(3, false) == null : "Invalidate should drop every entry";
+	}
+}
@@ -0,0 +1,68 @@
+package arena;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Checks that the Elo table fits the ratings the wins imply and survives a save, and that the arena plays fair pairs.
+ * Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class ArenaTest {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		// a player that wins 3 of 4 games is about 191 points better, the prior pulls it in a little
+		EloTable table = new EloTable("random");
+		table.add("strong", "random", 750, 250);
+		Map<String, Double> ratings = table.ratings();
+		assert ratings.get("random") == 0 : "The anchor should be rated 0";
+		double strong = ratings.get("strong");
+		assert strong > 180 && strong < 192 : "3 wins in 4 should be about 191 points, not " + strong;
+
+		// ratings chain: beating a player that beat the anchor puts you above both
+		table.add("stronger", "strong", 750, 250);
+		ratings = table.ratings();
+		assert ratings.get("stronger") > ratings.get("strong") + 150 : "The chain should add up";
+		assert table.getGames("strong") == 2000 : "Both pairings of strong should be counted";
+
+		// a player that never lost still gets a finite rating
+		table.add("perfect", "random", 10, 0);
+		assert Double.isFinite(table.ratings().get("perfect")) : "The prior should keep ratings finite";
+
+		Path path = Files.createTempFile("elo", ".tsv");
+		try {
+			table.save(path);
+			EloTable loaded = EloTable.load(path, "random");
+			assert loaded.getWins("stronger", "strong") == 750 && loaded.getWins("strong", "stronger") == 250
+					: "The wins should survive a save";
+			assert Math.abs(loaded.ratings().get("stronger") - table.ratings().get("stronger")) < 1e-6
+					: "The ratings should survive a save";
+		} finally {
+			Files.deleteIfExists(path);
+		}
+
+		// every game of the pairs is played and counted, a bot stuck on one cell loses them all, and the search bot
+		// beats the random bot
+		EloTable results = new EloTable("random");
+		try (Arena arena = new Arena(5, 5, results, 4, 1)) {
+			MatchStats mirror = arena.playMatch(RandomBot.contestant(), new Contestant("random-2", RandomBot::new), 20);
+			assert mirror.getWinsOfA() + mirror.getWinsOfB() == 40 : "Every game of the pairs should be played";
+
+			Contestant illegal = new Contestant("illegal", () -> (game, player) -> 0);
+			MatchStats forfeits = arena.playMatch(RandomBot.contestant(), illegal, 5);
+			assert forfeits.getWinsOfA() == 10 : "Taking an occupied cell should lose every game";
+
+			MatchStats search = arena.playMatch(SearchBot.contestant(200), RandomBot.contestant(), 10);
+			assert search.getWinsOfA() > search.getWinsOfB() : "The search bot should beat random, not " + search;
+
+			// the shortest path bot beats random, and the stats add up
+			MatchStats heuristic = arena.playMatch(HeuristicBot.contestant(), RandomBot.contestant(), 20);
+			assert heuristic.getWinsOfA() >= 36 : "The shortest path bot should nearly always win:\n" + heuristic;
+			assert heuristic.getGames() == 40 && heuristic.getAverageLength() >= 5 && heuristic.getAverageLength() <= 25
+					: "Every 5x5 game takes 5 to 25 moves:\n" + heuristic;
+			assert heuristic.getLatencyOfA().getCount() + heuristic.getLatencyOfB().getCount()
+					== Math.round(heuristic.getAverageLength() * 40) - 40 : "Every move but the openings should be timed";
+		}
+		assert results.ratings().get("mcts-200") > 0 : "The search bot should be rated above random";
+	}
+}
@@ -0,0 +1,95 @@
+package env;
+
+import game.GameArchiveWriter;
+import game.PlayHex;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes random games, and a few without moves, to an archive and checks every sample of the dataset against a replay
+ * of its game, for the whole archive and split into shards, without making any NDArrays.
+ * Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class ArchiveDatasetTest {
+    public static void main(String[] args) throws IOException {
+        Random rnd = new Random(5);
+        Path path = Files.createTempFile("games", ".hexa");
+        Files.delete(path);
+        try {
+            // the turn, move, winner and board of every move, in the order the games were written
+            List<int[]> expected = new ArrayList<>();
+            List<int[]> boards = new ArrayList<>();
+            try (GameArchiveWriter writer = new GameArchiveWriter(path)) {
+                for (int i = 0; i < 40; i++){
+                    if (i == 0 || i == 17 || i == 18 || i == 39){
+                        writer.append(5, 5, 1, new int[0], 0, 0);       // empty games first, twice in a row and last
+                        continue;
+                    }
+                    int rows = i % 3 == 0 ? 4 : 5;
+                    int columns = i % 3 == 0 ? 6 : 5;
+                    playGame(writer, rnd, rows, columns, expected, boards);
+                }
+            }
+
+            for (int shards : new int[]{1, 2, 3, 7, 40}){
+                int sample = 0;
+                for (int shard = 0; shard < shards; shard++){
+                    try (ArchiveDataset dataset = ArchiveDataset.builder().setArchive(path).optShard(shard, shards)
+                            .setSampling(1, false).build()){
+                        dataset.prepare(null);
+                        for (long index = 0; index < dataset.availableSize(); index++, sample++){
+                            ArchiveDataset.Sample actual = dataset.getSample(index);
+                            int[] want = expected.get(sample);
+                            String where = "sample " + index + " of shard " + shard + " of " + shards;
+                            assert actual.turn == want[0] : "Wrong turn for " + where;
+                            assert actual.move == want[1] : "Wrong move for " + where;
+                            assert actual.winner == want[2] : "Wrong label for " + where;
+                            assert Arrays.equals(actual.board, boards.get(sample)) : "Wrong board for " + where;
+                        }
+                    }
+                }
+                assert sample == expected.size() : "The shards of " + shards + " should hold every move once, not "
+                        + sample + " of " + expected.size();
+            }
+        } finally {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(path.resolveSibling(path.getFileName() + ".idx"));
+        }
+    }
+
+    /**
+     * Plays a random game with the turns of HexGame, where the turn of the observation is the player who moved last,
+     * and writes it to the archive
+     */
+    private static void playGame(GameArchiveWriter writer, Random rnd, int rows, int columns, List<int[]> expected,
+                                 List<int[]> boards){
+        PlayHex game = new PlayHex(rows, columns);
+        int turn = rnd.nextBoolean() ? 1 : -1;
+        int firstPlayer = -turn;
+        int[] moves = new int[rows * columns];
+        int count = 0;
+        int first = expected.size();
+        int winner = 0;
+        while (winner == 0){
+            int move = rnd.nextInt(rows * columns);
+            if (game.getCell(move) != 0){
+                continue;
+            }
+            expected.add(new int[]{turn, move, 0});
+            boards.add(game.getBoardList());
+            turn = -turn;
+            winner = game.setMove(move, turn);
+            moves[count++] = move;
+        }
+        for (int i = first; i < expected.size(); i++){
+            expected.get(i)[2] = winner;
+        }
+        writer.append(rows, columns, firstPlayer, moves, count, winner);
+    }
+}
@@ -0,0 +1,59 @@
+package env;
+
+import game.PlayHex;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Packs the steps of random games and checks that they come back out as they went in, without making any NDArrays.
+ * Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class PackedReplayBufferTest {
+    public static void main(String[] args) {
+        Random rnd = new Random(11);
+        for (int[] size : new int[][]{{8, 8}, {11, 11}, {5, 7}}){
+            int cells = size[0] * size[1];
+            int capacity = cells + 10;
+            PackedReplayBuffer buffer = new PackedReplayBuffer(cells, 4, capacity);
+            assert buffer.getBytesPerStep() == (cells + 3) / 4 + 8 : "A step should take 2 bits per cell and 8 more bytes";
+
+            // two games, so that the ring wraps around and drops the oldest steps
+            int[][] boards = new int[2 * cells][];
+            int[] turns = new int[2 * cells];
+            int[] actions = new int[2 * cells];
+            int[] winners = new int[2 * cells];
+            int count = 0;
+            for (int g = 0; g < 2; g++){
+                PlayHex game = new PlayHex(size[0], size[1]);
+                int turn = g == 0 ? 1 : -1;
+                int winner = 0;
+                while (winner == 0){
+                    int move = rnd.nextInt(cells);
+                    if (game.getCell(move) != 0) continue;
+                    boards[count] = game.getBoardList();
+                    turns[count] = turn;
+                    actions[count] = move;
+                    turn = -turn;
+                    winner = game.setMove(move, turn);
+                    winners[count] = winner;
+                    buffer.addStep(boards[count], turns[count], move, winner, winner != 0);
+                    count++;
+                }
+            }
+
+            assert buffer.size() == Math.min(count, capacity) : "The buffer should hold at most its capacity";
+            int first = count - buffer.size();
+            for (int i = 0; i < buffer.size(); i++){
+                PackedReplayBuffer.PackedStep step = buffer.readRecord(buffer.record(i), null);
+                int k = first + i;
+                assert Arrays.equals(step.preBoard, boards[k]) : "The board should unpack to what was packed";
+                assert step.preTurn == turns[k] && step.action == actions[k] : "Turn and action should be kept";
+                assert step.reward == winners[k] && step.done == (winners[k] != 0) : "Reward and done should be kept";
+            }
+
+            buffer.clear();
+            assert buffer.size() == 0 : "clear should drop every step";
+        }
+    }
+}
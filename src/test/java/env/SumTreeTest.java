@@ -0,0 +1,51 @@
+package env;
+
+import java.util.Random;
+
+/**
+ * Checks the sums and the lookups of the sum tree the prioritized replay buffer samples with, and that TD errors
+ * end up as priorities. Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class SumTreeTest {
+    public static void main(String[] args) {
+        Random rnd = new Random(5);
+        for (int size : new int[]{1, 7, 64, 100}){
+            SumTree tree = new SumTree(size);
+            double[] priorities = new double[size];
+            for (int round = 0; round < 3 * size; round++){
+                int i = rnd.nextInt(size);
+                priorities[i] = rnd.nextInt(10);
+                tree.set(i, priorities[i]);
+            }
+            double total = 0;
+            for (int i = 0; i < size; i++){
+                assert tree.get(i) == priorities[i] : "get should return what was set";
+                // every running sum inside the priority of i should find i
+                if (priorities[i] > 0){
+                    assert tree.find(total) == i : "The start of a priority should find its index";
+                    assert tree.find(total + priorities[i] - 0.5) == i : "The end of a priority should find its index";
+                }
+                total += priorities[i];
+            }
+            assert tree.total() == total : "The root should hold the sum of every priority";
+        }
+
+        // a step with a large TD error gets a larger priority, and a step written over is left alone
+        PrioritizedReplayBuffer buffer = new PrioritizedReplayBuffer(4, 2, 2, 1, 1);
+        int[] board = new int[4];
+        buffer.addStep(board, 1, 0, 0, false);
+        buffer.addStep(board, -1, 1, 0, false);
+        PackedReplayBuffer.PackedStep first = buffer.readRecord(0, null);
+        PackedReplayBuffer.PackedStep second = buffer.readRecord(1, null);
+        buffer.updatePriorities(new PackedReplayBuffer.PackedStep[]{first, second}, new float[]{2, 0});
+        assert buffer.getPriority(0) > buffer.getPriority(1) : "A larger TD error should give a larger priority";
+
+        // a third step goes over the first one with the highest priority so far, the stale update is skipped
+        buffer.addStep(board, 1, 2, 1, true);
+        double fresh = buffer.getPriority(0);
+        assert fresh >= 2 : "A new step should get the highest priority seen";
+        buffer.updatePriorities(new PackedReplayBuffer.PackedStep[]{first}, new float[]{0});
+        assert buffer.getPriority(0) == fresh : "An update for an overwritten step should be skipped";
+        assert buffer.readRecord(0, null).action == 2 : "The third step should be in the first record";
+    }
+}
@@ -0,0 +1,96 @@
+package env;
+
+import game.PlayHex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Steps many random games in lockstep next to games played one by one, and checks that every game keeps its own
+ * board and turn, that won games start over, and that their steps reach the replay buffer as one game, without
+ * making any NDArrays.
+ * Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class VectorizedHexGameTest {
+    public static void main(String[] args) {
+        Random rnd = new Random(3);
+        int games = 16;
+        int cells = 25;
+        VectorizedHexGame env = new VectorizedHexGame(null, games, 8, 100000, 5, 5);     // stepping needs no manager
+        PlayHex[] shadows = new PlayHex[games];
+        List<List<int[]>> running = new ArrayList<>();      // the steps of the game of every slot: turn, move, board
+        for (int i = 0; i < games; i++){
+            shadows[i] = new PlayHex(5, 5);
+            running.add(new ArrayList<>());
+        }
+        List<int[]> finished = new ArrayList<>();       // the steps of finished games in the order they were added
+        List<Integer> rewards = new ArrayList<>();
+        int finishedGames = 0;
+        int blueWins = 0;
+
+        for (int step = 0; step < 400; step++){
+            boolean training = step < 300;
+            int[] boards = env.getBoards();
+            int[] turns = env.getTurns();
+            int[] actions = new int[games];
+            for (int i = 0; i < games; i++){
+                int[] legal = env.getLegalMoves(i);
+                assert legal.length == cells - shadows[i].getMoveCount() : "Game " + i + " should have its own moves";
+                actions[i] = legal[rnd.nextInt(legal.length)];
+            }
+            int[] winners = env.step(actions, training);
+
+            int[] after = env.getBoards();
+            int[] turnsAfter = env.getTurns();
+            for (int i = 0; i < games; i++){
+                int[] board = Arrays.copyOfRange(boards, i * cells, (i + 1) * cells);
+                assert Arrays.equals(board, shadows[i].getBoardList()) : "Game " + i + " has another game's board";
+                running.get(i).add(new int[]{turns[i], actions[i]});
+                int winner = shadows[i].setMove(actions[i], -turns[i]);
+                assert winners[i] == winner : "Game " + i + " should end when its own board is won";
+                int[] now = Arrays.copyOfRange(after, i * cells, (i + 1) * cells);
+                if (winner == 0){
+                    assert Arrays.equals(now, shadows[i].getBoardList()) : "Game " + i + " lost its move";
+                    assert turnsAfter[i] == -turns[i] : "The turn of game " + i + " should pass to the mover";
+                    continue;
+                }
+                assert Arrays.stream(now).allMatch(cell -> cell == 0) : "A won game should start over";
+                finishedGames++;
+                blueWins += winner == 1 ? 1 : 0;
+                if (training){
+                    PlayHex replay = new PlayHex(5, 5);
+                    for (int[] move : running.get(i)){
+                        finished.add(new int[]{move[0], move[1]});
+                        finished.add(replay.getBoardList());
+                        rewards.add(replay.setMove(move[1], -move[0]));
+                    }
+                }
+                running.get(i).clear();
+                shadows[i] = new PlayHex(5, 5);
+            }
+        }
+
+        assert env.getStepCount() == 400L * games : "Every step of every game should be counted";
+        assert env.getFinishedGames() == finishedGames && finishedGames > games : "Too few games finished to test";
+        assert env.getBlueWinRate() == blueWins / (float) finishedGames;
+
+        // the buffer holds the finished games of the training steps, each game's moves one after the other
+        PackedReplayBuffer buffer = env.getReplayBuffer();
+        assert buffer.size() == rewards.size() : "Only the games that finished while training go to the buffer";
+        for (int i = 0; i < buffer.size(); i++){
+            PackedReplayBuffer.PackedStep step = buffer.readRecord(buffer.record(i), null);
+            int[] move = finished.get(2 * i);
+            assert step.preTurn == move[0] && step.action == move[1] : "Step " + i + " belongs to another game";
+            assert Arrays.equals(step.preBoard, finished.get(2 * i + 1)) : "Step " + i + " has the wrong board";
+            assert step.reward == rewards.get(i) && step.done == (rewards.get(i) != 0)
+                    : "Only the last step of a game should have the reward";
+        }
+
+        // a reset drops the unfinished games
+        env.reset();
+        assert Arrays.stream(env.getBoards()).allMatch(cell -> cell == 0) : "reset should empty every board";
+        env.close();
+    }
+}
@@ -0,0 +1,42 @@
+package game;
+
+/**
+ * Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class FillPlayoutTest {
+    public static void main(String[] args) {
+        try (FillPlayout playout = new FillPlayout(3)) {
+            // blue owns a whole row, so blue wins every filled board
+            PlayHex game = new PlayHex(5, 5);
+            for (int location = 10; location < 15; location++){
+                game.setMove(location, 1);
+            }
+            PlayoutStats stats = playout.run(game, -1, 3000);
+            assert stats.getPlayouts() == 3000 : "Every playout should be counted";
+            assert stats.getWinRate(1) == 1 : "Blue already connected";
+            assert playout.playout(game, -1) == 1 : "Blue already connected";
+
+            // each player gets half of the empty locations, the player to move the odd one out
+            game = new PlayHex(11, 11);
+            game.setMove(60, 1);
+            stats = playout.run(game, -1, 10000);
+            float redOwned = 0;
+            for (int location = 0; location < game.maxMoves; location++){
+                redOwned += stats.getOwnership(location, -1);
+            }
+            assert Math.abs(redOwned - 60) < 0.01 : "Red should own 60 of the 120 empty locations, not " + redOwned;
+            assert stats.getOwnership(60, 1) == 1 : "Taken locations belong to their owner";
+            assert stats.getWinRate(1) > 0.5f : "The center stone should help blue";
+
+            // the playouts of a 8x8 game agree with playing random moves to the end
+            game = new PlayHex(8, 8);
+            float fill = playout.run(game, 1, 40000).getWinRate(1);
+            int rolloutWins = 0;
+            search.RandomRollout rollout = new search.RandomRollout();
+            for (int i = 0; i < 40000; i++){
+                rolloutWins += rollout.evaluate(game, 1) > 0 ? 1 : 0;
+            }
+            assert Math.abs(fill - rolloutWins / 40000f) < 0.02 : "Fill " + fill + " and rollouts " + rolloutWins / 40000f;
+        }
+    }
+}
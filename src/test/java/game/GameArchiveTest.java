@@ -0,0 +1,94 @@
+package game;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes random games of a few sizes to an archive and reads them back, also after losing the index and after a
+ * torn last record. Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class GameArchiveTest {
+    public static void main(String[] args) throws IOException {
+        Random rnd = new Random(11);
+        Path path = Files.createTempFile("games", ".hexa");
+        Files.delete(path);
+        try {
+            List<GameArchive.Game> games = new ArrayList<>();
+            try (GameArchiveWriter writer = new GameArchiveWriter(path)) {
+                for (int i = 0; i < 500; i++){
+                    GameArchive.Game game = randomGame(rnd, i % 5 == 0 ? 17 : 8, i % 5 == 0 ? 19 : 8);
+                    games.add(game);
+                    long number = writer.append(game.getRows(), game.getColumns(), game.getFirstPlayer(),
+                            game.getMoves(), game.getMoves().length, game.getWinner());
+                    assert number == i : "Games should be numbered in the order they are appended";
+                }
+            }
+            check(path, games);
+
+            // a lost index is rebuilt from the data
+            Files.delete(GameArchive.indexPath(path));
+            check(path, games);
+            assert Files.size(GameArchive.indexPath(path)) == games.size() * 8L : "The index should be written again";
+
+            // a torn record at the end is dropped, and the next writer carries on where the last whole record ended
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 3);
+            }
+            games.remove(games.size() - 1);
+            check(path, games);
+            try (GameArchiveWriter writer = new GameArchiveWriter(path)) {
+                assert writer.size() == games.size() : "A writer should count the games already there";
+                GameArchive.Game game = randomGame(rnd, 8, 8);
+                games.add(game);
+                writer.append(8, 8, game.getFirstPlayer(), game.getMoves(), game.getMoves().length, game.getWinner());
+                writer.flush();
+                check(path, games);
+            }
+            check(path, games);
+        } finally {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(GameArchive.indexPath(path));
+        }
+    }
+
+    private static GameArchive.Game randomGame(Random rnd, int rows, int columns) {
+        int cells = rows * columns;
+        int[] order = new int[cells];
+        for (int i = 0; i < cells; i++){
+            order[i] = i;
+        }
+        for (int i = cells - 1; i > 0; i--){
+            int j = rnd.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return new GameArchive.Game(rows, columns, rnd.nextBoolean() ? 1 : -1,
+                Arrays.copyOf(order, rnd.nextInt(cells + 1)), rnd.nextInt(3) - 1);
+    }
+
+    private static void check(Path path, List<GameArchive.Game> games) throws IOException {
+        try (GameArchive archive = GameArchive.open(path)) {
+            assert archive.size() == games.size() : "Expected " + games.size() + " games, got " + archive.size();
+            for (int i = games.size() - 1; i >= 0; i--){
+                GameArchive.Game expected = games.get(i);
+                GameArchive.Game actual = archive.get(i);
+                assert actual.getRows() == expected.getRows() && actual.getColumns() == expected.getColumns()
+                        : "The board size should come back";
+                assert actual.getFirstPlayer() == expected.getFirstPlayer() : "The first player should come back";
+                assert actual.getWinner() == expected.getWinner() : "The winner should come back";
+                assert Arrays.equals(actual.getMoves(), expected.getMoves()) : "The moves of game " + i + " differ";
+            }
+            int[] count = {0};
+            archive.forEach(game -> count[0]++);
+            assert count[0] == games.size() : "forEach should visit every game";
+        }
+    }
+}
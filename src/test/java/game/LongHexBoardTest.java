@@ -0,0 +1,42 @@
+package game;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Plays random games on the bitboard and on the original HexBoard side by side, they have to agree on every move.
+ * Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class LongHexBoardTest {
+    public static void main(String[] args) {
+        Random rnd = new Random(42);
+        int[][] sizes = {{2, 2}, {3, 5}, {5, 3}, {8, 8}, {7, 9}, {9, 7}, {2, 32}, {32, 2}};
+        for (int[] size : sizes){
+            for (int game = 0; game < 200; game++){
+                playRandomGame(size[0], size[1], rnd);
+            }
+        }
+    }
+
+    private static void playRandomGame(int rows, int columns, Random rnd){
+        HexBoard reference = new HexBoard(rows, columns, 0, 0, 1);
+        AbstractHexBoard bits = new LongHexBoard(rows, columns, 0);
+
+        int player = 1;
+        for (int move = 0; move < rows * columns * 100; move++){
+            int loc = 1 + rnd.nextInt(rows * columns);            // occupied locations are tried too
+            int expected = reference.setBoard(loc, player);
+            int actual = bits.setBoard(loc, player);
+            assert expected == actual : rows + "x" + columns + " result " + actual + " should be " + expected;
+            assert reference.wasValid == bits.wasValid : "Validity differs on " + loc;
+            assert Arrays.equals(reference.getBoardList(), bits.getBoardList()) : "Boards differ";
+            if (expected == 1 || expected == -1){
+                return;
+            }
+            if (bits.wasValid){
+                player = -player;
+            }
+        }
+        assert false : "The board should have filled up with a winner long ago";
+    }
+}
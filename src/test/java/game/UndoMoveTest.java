@@ -0,0 +1,75 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Plays random games with random undos on every backend, and checks each position against a fresh board that only
+ * got the moves that were never taken back.
+ * Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class UndoMoveTest {
+    public static void main(String[] args) {
+        Random rnd = new Random(7);
+        int[][] sizes = {{3, 3}, {8, 8}, {11, 11}, {19, 19}, {21, 20}};
+        for (int[] size : sizes){
+            for (int game = 0; game < 50; game++){
+                playWithUndos(new HexBoard(size[0], size[1], 0, 0, 1), size, rnd);
+                if (size[0] * size[1] <= 64){
+                    playWithUndos(new LongHexBoard(size[0], size[1], 0), size, rnd);
+                }
+            }
+        }
+
+        PlayHex game = new PlayHex(8, 8);
+        game.setMove(10, 1);
+        assert game.undoMove() == 10 : "undoMove should return the location that was taken back";
+        assert game.getMoveCount() == 0 : "The board should be empty again";
+        try {
+            game.undoMove();
+            assert false : "Undoing an empty board should throw";
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private static void playWithUndos(AbstractHexBoard board, int[] size, Random rnd){
+        List<Integer> moves = new ArrayList<>();
+        int player = 1;
+        while (true){
+            if (!moves.isEmpty() && rnd.nextInt(3) == 0){
+                int undone = board.undo();
+                assert undone == moves.remove(moves.size() - 1) : "Undid the wrong move";
+                player = -player;
+            } else {
+                int loc = 1 + rnd.nextInt(size[0] * size[1]);
+                while (board.getCell(loc) != 0){
+                    loc = 1 + rnd.nextInt(size[0] * size[1]);
+                }
+                int result = board.setBoard(loc, player);
+                moves.add(loc);
+                assert result == replay(moves, size) : "Connectivity after undo differs from a fresh board";
+                if (result != 0){
+                    return;
+                }
+                player = -player;
+            }
+            assert board.getMoveCount() == moves.size() : "Move count is off";
+        }
+    }
+
+    /**
+     * @return the result of the last move when the moves are played on a fresh board
+     */
+    private static int replay(List<Integer> moves, int[] size){
+        HexBoard fresh = new HexBoard(size[0], size[1], 0, 0, 1);
+        int player = 1;
+        int result = 0;
+        for (int loc : moves){
+            result = fresh.setBoard(loc, player);
+            player = -player;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,113 @@
+package game;
+
+import solver.HexSolver;
+import solver.Proof;
+
+import java.util.Random;
+
+/**
+ * Checks the bridges and edge templates on hand made positions, and every claim they make on random small positions
+ * against the solver.
+ * Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class VirtualConnectionsTest {
+    public static void main(String[] args) {
+        // blue on the left border, bridged to the middle and bridged on to the right border
+        PlayHex game = new PlayHex(5, 5);
+        VirtualConnections connections = game.trackVirtualConnections();
+        game.setMove(10, 1);
+        game.setMove(7, 1);
+        assert connections.getWinner() == 0 : "Blue can still be cut off from the right";
+        game.setMove(4, 1);
+        assert connections.getWinner() == 1 : "Two bridges join blue up";
+        game.setMove(6, -1);
+        assert connections.getWinner() == 0 : "Red broke into a bridge";
+        game.setMove(11, 1);
+        assert connections.getWinner() == 1 : "Blue answered in the bridge";
+        game.undoMove();
+        game.undoMove();
+        assert connections.getWinner() == 1 : "The undos take the intrusion back too";
+        assert game.copy().getVirtualConnections().getWinner() == 1 : "A copy should track the connections too";
+
+        // a red stone in the middle of 5x5 reaches both borders through a ziggurat
+        game = new PlayHex(5, 5);
+        connections = game.trackVirtualConnections();
+        game.setMove(12, -1);
+        assert connections.getWinner() == -1 : "The middle of 5x5 wins for red";
+
+        // a board that was played on before tracking starts
+        game = new PlayHex(5, 5);
+        game.setMove(10, 1);
+        game.setMove(7, 1);
+        connections = game.trackVirtualConnections();
+        int[] candidates = new int[25];
+        int count = connections.getCandidates(1, candidates);
+        assert count == 1 && game.getCell(candidates[0]) == 0 : "Blue has a move that joins it up";
+        count = connections.getCandidates(-1, candidates);
+        assert count > 0 && count < 23 : "Red has to stop blue from joining up, not " + count + " candidates";
+        for (int i = 0; i < count; i++) {
+            assert game.getCell(candidates[i]) == 0 : "Only empty cells are candidates";
+        }
+
+        // random positions: the solver agrees with every winner, and the moves left out lose
+        Random rnd = new Random(11);
+        HexSolver[][] solvers = new HexSolver[6][6];
+        int claims = 0;
+        for (int position = 0; position < 300; position++) {
+            int rows = 3 + rnd.nextInt(3);
+            int columns = 3 + rnd.nextInt(3);
+            if (solvers[rows][columns] == null) {
+                solvers[rows][columns] = new HexSolver(rows, columns, 16);
+            }
+            HexSolver solver = solvers[rows][columns];
+            game = new PlayHex(rows, columns);
+            connections = game.trackVirtualConnections();
+            int winner = 0;
+            int player = 1;
+            while (winner == 0 && rows * columns - game.getMoveCount() > 10) {
+                int location = rnd.nextInt(rows * columns);
+                if (game.getCell(location) == 0) {
+                    winner = game.setMove(location, player);
+                    player = -player;
+                }
+            }
+            if (winner != 0) {
+                continue;
+            }
+            for (int mover = -1; mover <= 1; mover += 2) {
+                int proven = solver.solve(game, mover, 0).getWinner();
+                if (connections.getWinner() != 0) {
+                    claims++;
+                    assert connections.getWinner() == proven : "The solver disagrees with the connections:\n" + game;
+                    continue;
+                }
+                count = connections.getCandidates(mover, candidates);
+                int empty = rows * columns - game.getMoveCount();
+                if (proven != mover || count == empty) {
+                    continue;
+                }
+                boolean[] candidate = new boolean[rows * columns];
+                for (int i = 0; i < count; i++) {
+                    candidate[candidates[i]] = true;
+                }
+                boolean winning = false;
+                for (int location = 0; location < rows * columns; location++) {
+                    if (game.getCell(location) != 0 || count == 1 && !candidate[location]) {
+                        continue;
+                    }
+                    boolean wins = game.setMove(location, mover) != 0 || winsAfter(solver, game, mover);
+                    game.undoMove();
+                    winning |= candidate[location] && wins;
+                    assert candidate[location] || !wins : "A winning move was left out:\n" + game;
+                }
+                assert winning : "None of the candidates wins:\n" + game;
+            }
+        }
+        assert claims > 20 : "Too few positions were decided by the connections to test them, " + claims;
+    }
+
+    private static boolean winsAfter(HexSolver solver, PlayHex game, int player) {
+        Proof proof = solver.solve(game, -player, 0);
+        return proof.getWinner() == player;
+    }
+}
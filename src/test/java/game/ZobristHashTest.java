@@ -0,0 +1,80 @@
+package game;
+
+import java.util.Random;
+
+/**
+ * Checks the incremental zobrist hash against the moves that made it, and the transposition table on top of it.
+ * Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class ZobristHashTest {
+    public static void main(String[] args) {
+        Random rnd = new Random(3);
+        for (int[] size : new int[][]{{8, 8}, {11, 11}, {21, 20}}){
+            PlayHex game = new PlayHex(size[0], size[1]);
+            int cells = size[0] * size[1];
+            assert game.getHash() == 0 : "An empty board hashes to 0";
+
+            // the same pieces in a different order give the same hash
+            int[] locs = {0, cells - 1, 5, cells / 2};
+            for (int i = 0; i < locs.length; i++){
+                game.setMove(locs[i], i % 2 == 0 ? 1 : -1);
+            }
+            long hash = game.getHash();
+            PlayHex other = new PlayHex(size[0], size[1]);
+            other.setMove(5, 1);
+            other.setMove(cells / 2, -1);
+            other.setMove(0, 1);
+            other.setMove(cells - 1, -1);
+            assert other.getHash() == hash : "Transpositions should hash the same";
+
+            // undo brings the hash back
+            game.setMove(7, 1);
+            game.undoMove();
+            assert game.getHash() == hash : "Undo should restore the hash";
+
+            // the board turned 180 degrees has the same canonical hash
+            PlayHex turned = new PlayHex(size[0], size[1]);
+            for (int i = 0; i < locs.length; i++){
+                turned.setMove(cells - 1 - locs[i], i % 2 == 0 ? 1 : -1);
+            }
+            assert turned.getCanonicalHash() == game.getCanonicalHash() : "Turned boards should share a canonical hash";
+            assert turned.isCanonicalRotated() != game.isCanonicalRotated() : "Exactly one of them is turned";
+
+            // a best move stored from one side comes back turned on the other
+            TranspositionTable table = new TranspositionTable(1 << 10, true);
+            table.store(game, 1, 0.25f, 9, 3, TranspositionTable.EXACT);
+            long data = table.probe(turned, 1);
+            assert data != 0 : "The turned board should hit the entry";
+            assert TranspositionTable.move(data) == cells - 1 - 9 : "The move should be turned";
+            assert TranspositionTable.value(data) == 0.25f : "Value lost";
+            assert TranspositionTable.depth(data) == 3 : "Depth lost";
+            assert table.probe(game, -1) == 0 : "The other player to move is a different position";
+
+            // a shallower result of the same search doesn't replace a deeper one
+            table.store(game, 1, -1f, 2, 1, TranspositionTable.LOWER);
+            assert TranspositionTable.depth(table.probe(game, 1)) == 3 : "Shallower result replaced a deeper one";
+            table.newSearch();
+            table.store(game, 1, -1f, 2, 1, TranspositionTable.LOWER);
+            assert TranspositionTable.depth(table.probe(game, 1)) == 1 : "Old searches should be replaced";
+        }
+
+        // random positions fill a small table without ever returning a wrong entry
+        TranspositionTable table = new TranspositionTable(64, false);
+        for (int i = 0; i < 10000; i++){
+            long key = rnd.nextLong();
+            table.store(key, i, i % 100, 1, TranspositionTable.EXACT);
+            long data = table.probe(key);
+            assert TranspositionTable.value(data) == i : "Probe right after store should hit";
+        }
+
+        // a deeper result for the position in the second slot stays there, and doesn't push out the first slot
+        table = new TranspositionTable(64, false);
+        long first = 5;
+        long second = 5 | (1L << 40);         // the same bucket
+        table.store(first, 1f, 1, 3, TranspositionTable.EXACT);
+        table.store(second, 2f, 2, 1, TranspositionTable.EXACT);
+        table.store(second, 3f, 3, 5, TranspositionTable.EXACT);
+        assert TranspositionTable.value(table.probe(first)) == 1f : "An update of the second slot evicted the first";
+        assert TranspositionTable.value(table.probe(second)) == 3f : "The deeper result should be kept";
+    }
+}
@@ -0,0 +1,36 @@
+package search;
+
+import game.PlayHex;
+
+/**
+ * Checks that the search finds a winning move and a forced block, and leaves the searched game alone.
+ * Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class MonteCarloTreeSearchTest {
+    public static void main(String[] args) {
+        try (MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(new RandomRollout(), 4)) {
+            // blue has 0 1 2 of the top row of a 4x4 board and wins by playing 3
+            PlayHex game = new PlayHex(4, 4);
+            game.setMove(0, 1);
+            game.setMove(4, -1);
+            game.setMove(1, 1);
+            game.setMove(8, -1);
+            game.setMove(2, 1);
+            game.setMove(12, -1);
+            int moves = game.getMoveCount();
+            long hash = game.getHash();
+
+            SearchResult result = mcts.search(game, 1, 20000, 0);
+            assert result.getBestMove() == 3 : "Blue should take the win, not " + result.getBestMove();
+            assert result.getValue() > 0.9f : "A won position should be valued as won, not " + result.getValue();
+            assert game.getMoveCount() == moves && game.getHash() == hash : "The search changed the game";
+
+            // red has to block on 3 or lose
+            result = mcts.search(game, -1, 20000, 0);
+            assert result.getBestMove() == 3 : "Red should block, not " + result.getBestMove();
+
+            result = mcts.search(new PlayHex(8, 8), 1, 0, 200);
+            assert result.getPlayouts() > 0 : "A timed search should run some playouts";
+        }
+    }
+}
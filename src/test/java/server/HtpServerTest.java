@@ -0,0 +1,108 @@
+package server;
+
+import arena.RandomBot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks the answers of an HTP session, and that many controllers can play whole games against one server at once.
+ * Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class HtpServerTest {
+	public static void main(String[] args) throws Exception {
+		HtpSession session = new HtpSession((rows, columns) -> new RandomBot());
+		assert session.execute("") == null : "An empty line gets no answer";
+		assert session.execute("7 protocol_version").equals("=7 2\n\n") : "The id should come back with the answer";
+		assert session.execute("boardsize 3").equals("= \n\n");
+		assert session.execute("play b a1").equals("= \n\n");
+		assert session.execute("play w a1").startsWith("? cell is occupied") : "An occupied cell can't be played";
+		assert session.execute("play b d1").startsWith("? cell is off the board");
+		assert session.execute("play x b1").startsWith("? invalid color");
+		assert session.execute("play w c3").equals("= \n\n");
+		assert session.execute("showboard").equals("= \n   a b c\n 1 B . .\n  2 . . .\n   3 . . W\n\n")
+				: "The board should show both moves:\n" + session.execute("showboard");
+		assert session.execute("undo").equals("= \n\n");
+		assert session.cell("c3") == 8 && session.cellName(8).equals("c3") : "c3 is the last cell of a 3x3 board";
+		assert session.execute("showboard").contains(" 3 . . .") : "Undo should take back the last move";
+		assert session.execute("frobnicate").startsWith("? unknown command");
+		assert session.execute("known_command genmove").equals("= true\n\n");
+
+		// blue takes the middle row and wins, after which genmove resigns and play is refused
+		session.execute("clear_board");
+		for (String cell : new String[]{"a2", "b2", "c2"}) {
+			session.execute("play b " + cell);
+		}
+		assert session.execute("genmove w").equals("= resign\n\n") : "A lost game should be resigned";
+		assert session.execute("play w a1").startsWith("? the game is over");
+		session.close();
+
+		// a bot that fails answers an error, and the session keeps going
+		HtpSession failing = new HtpSession((rows, columns) -> (game, player) -> {
+			throw new CompletionException(new IllegalStateException("The evaluation queue is closed"));
+		});
+		String failed = failing.execute("genmove b");
+		assert failed.startsWith("? ") && failed.endsWith("\n\n") && failed.indexOf('\n') == failed.length() - 2
+				: "A failed genmove should be a one line error, not " + failed;
+		assert failing.execute("protocol_version").equals("= 2\n\n") : "The session should still answer";
+		failing.close();
+
+		// dozens of controllers play random games against one server over TCP
+		int controllers = 32;
+		try (HtpServer server = new HtpServer((rows, columns) -> new RandomBot())) {
+			int port = server.listen(0);
+			ExecutorService pool = Executors.newFixedThreadPool(controllers);
+			List<Future<Integer>> games = new ArrayList<>();
+			for (int i = 0; i < controllers; i++) {
+				games.add(pool.submit(() -> playOverTcp(port)));
+			}
+			for (Future<Integer> game : games) {
+				int moves = game.get();
+				assert moves >= 5 && moves <= 25 : "A 5x5 game takes 5 to 25 moves, not " + moves;
+			}
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Plays a game of the engine against itself over a connection
+	 * @return the number of moves until one side resigned
+	 */
+	private static int playOverTcp(int port) throws IOException {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+			assert send(in, out, "boardsize 5").equals("=");
+			String[] colors = {"b", "w"};
+			for (int moves = 0; ; moves++) {
+				String answer = send(in, out, "genmove " + colors[moves % 2]);
+				assert answer.startsWith("= ") : "genmove should answer a cell, not " + answer;
+				if (answer.equals("= resign")) {
+					send(in, out, "quit");
+					return moves;
+				}
+			}
+		}
+	}
+
+	private static String send(BufferedReader in, Writer out, String command) throws IOException {
+		out.write(command + "\n");
+		out.flush();
+		String answer = in.readLine();
+		String empty = in.readLine();
+		assert empty != null && empty.isEmpty() : "Every answer should end with an empty line";
+		return answer.trim().equals("=") ? "=" : answer;
+	}
+}
@@ -0,0 +1,105 @@
+package solver;
+
+import game.PlayHex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the solver against a plain minimax on small boards, and that it proves late 8x8 positions.
+ * Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class HexSolverTest {
+	public static void main(String[] args) {
+		// the winning first moves of 3x3 and 4x4 are known, and the first player always wins
+		Proof three = new HexSolver(3, 3, 12).solve(0, 0, 1, 0);
+		assert three.getWinner() == 1 && three.getMove() == 4 : "Blue wins 3x3 in the middle, not " + three;
+		Proof four = new HexSolver(4, 4, 16).solve(0, 0, -1, 0);
+		assert four.getWinner() == -1 : "The first player wins 4x4, not " + four;
+
+		// random small positions agree with minimax, and the winning move really wins
+		Random rnd = new Random(7);
+		int checked = 0;
+		while (checked < 200) {
+			int rows = 2 + rnd.nextInt(3);
+			int columns = 2 + rnd.nextInt(3);
+			PlayHex game = new PlayHex(rows, columns);
+			int winner = 0;
+			while (winner == 0 && rows * columns - game.getMoveCount() > 9) {
+				int location = rnd.nextInt(rows * columns);
+				if (game.getCell(location) == 0) {
+					winner = game.setMove(location, rnd.nextBoolean() ? 1 : -1);
+				}
+			}
+			if (winner != 0) {
+				continue;
+			}
+			int player = rnd.nextBoolean() ? 1 : -1;
+			Proof proof = new HexSolver(rows, columns, 12).solve(game, player, 0);
+			assert proof.getWinner() == minimax(game, player) : "The solver disagrees with minimax:\n" + game;
+			if (proof.getWinner() == player) {
+				int reply = game.setMove(proof.getMove(), player);
+				assert reply == player || minimax(game, -player) == player : "The winning move should win:\n" + game;
+				game.undoMove();
+			}
+			checked++;
+		}
+
+		// the end of random 8x8 games is proven within the time budget, and the winning moves keep the win
+		HexSolver solver = new HexSolver(8, 8, 20);
+		int proven = 0;
+		for (int i = 0; i < 20; i++) {
+			PlayHex game = new PlayHex(8, 8);
+			List<Integer> cells = new ArrayList<>();
+			for (int location = 0; location < 64; location++) {
+				cells.add(location);
+			}
+			Collections.shuffle(cells, rnd);
+			int player = 1;
+			for (int location : cells) {
+				int winner = game.setMove(location, player);
+				player = -player;
+				if (winner != 0) {
+					break;
+				}
+			}
+			for (int back = 0; back < 8; back++) {
+				game.undoMove();
+				player = -player;
+			}
+			Proof proof = solver.solve(game, player, 2000);
+			if (proof.isProven()) {
+				proven++;
+				if (proof.getWinner() == player) {
+					game.setMove(proof.getMove(), player);
+					Proof after = solver.solve(game, -player, 0);
+					assert after.getWinner() == player : "The proven winner should still win after its move";
+				}
+			}
+		}
+		assert proven >= 18 : "8 moves from the end of an 8x8 game should nearly always be proven, not " + proven;
+
+		// a budget too small to finish leaves the winner unknown
+		Proof unknown = new HexSolver(7, 7, 16).solve(0, 0, 1, 1);
+		assert !unknown.isProven() && unknown.getMove() == -1 : "7x7 can't be solved in a millisecond";
+	}
+
+	/**
+	 * @return the winner with perfect play, the player moves first
+	 */
+	private static int minimax(PlayHex game, int player) {
+		for (int location = 0; location < game.maxMoves; location++) {
+			if (game.getCell(location) == 0) {
+				int winner = game.setMove(location, player);
+				int result = winner != 0 ? winner : minimax(game, -player);
+				game.undoMove();
+				if (result == player) {
+					return player;
+				}
+			}
+		}
+		return -player;
+	}
+}
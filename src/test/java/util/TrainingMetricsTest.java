@@ -0,0 +1,58 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Checks the buckets and percentiles of the latency histogram, and that the metrics write a CSV line per interval.
+ * Make sure to run these tests with assertions enabled in the java jvm with -ea
+ */
+public class TrainingMetricsTest {
+    public static void main(String[] args) throws IOException {
+        // every value fits in its bucket, and the bucket is at most an eighth wider than the value
+        for (long value : new long[]{0, 1, 7, 8, 9, 15, 16, 1000, 123456789, Long.MAX_VALUE / 3}){
+            int bucket = LatencyHistogram.bucket(value);
+            assert LatencyHistogram.upperBound(bucket) >= value : "The bucket of " + value + " ends below it";
+            assert bucket == 0 || LatencyHistogram.upperBound(bucket - 1) < value : "The bucket of " + value + " is too high";
+            assert LatencyHistogram.upperBound(bucket) <= value + value / 8 : "The bucket of " + value + " is too wide";
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++){
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot first = histogram.snapshot();
+        assert first.getCount() == 1000 : "Every value should be counted";
+        assert Math.abs(first.getMeanNanos() - 500500) < 1 : "The mean should be exact";
+        long median = first.getPercentileNanos(0.5);
+        assert median >= 500000 && median <= 500000 * 9 / 8 : "The median should be within a bucket, not " + median;
+        assert first.getMaxNanos() >= 1000000 : "The max should cover the largest value";
+
+        // the difference of two snapshots only has what came between them
+        histogram.record(5);
+        LatencyHistogram.Snapshot interval = histogram.snapshot().minus(first);
+        assert interval.getCount() == 1 && interval.getMaxNanos() == 5 : "An interval should only see its own values";
+
+        Path csv = Files.createTempFile("metrics", ".csv");
+        Files.delete(csv);
+        try {
+            TrainingMetrics metrics = TrainingMetrics.get();
+            metrics.start(csv, 3600);
+            metrics.countMove();
+            metrics.record(TrainingMetrics.Phase.TRAIN_BATCH, System.nanoTime() - 2000000);
+            metrics.stop();
+            List<String> lines = Files.readAllLines(csv);
+            assert lines.size() == 2 : "Stopping should write the header and one line";
+            String[] header = lines.get(0).split(",");
+            String[] values = lines.get(1).split(",");
+            assert header.length == values.length : "Every column should have a value";
+            int column = List.of(header).indexOf("train_batch_count");
+            assert values[column].equals("1") : "The batch should be counted in its column";
+            assert metrics.getMoves() == 1 : "The move should be counted";
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+    }
+}